@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.client.DefaultApi;
+import nl.knaw.dans.transfercli.command.TransferStatus;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.core.StatusCollector;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks the status report on synthetic pipeline trees. <code>stageLines</code> and <code>dataVaultBatches</code> measure the two halves of the report separately,
+ * through the same {@link StatusCollector} calls as the <code>status</code> command, with its default scan timeout and limit of scans per mount;
+ * <code>statusReport</code> runs the whole <code>status</code> command, including the formatting of the output, which is discarded.
+ * <p>
+ * The trees are generated under <code>target/jmh-trees</code>. Run with <code>mvn -Pjmh verify</code>; the profile adds the GC profiler, which reports the allocation
+ * rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class StatusBenchmark {
+    @Param({ "1000", "100000", "1000000" })
+    private int files;
+
+    @Param({ "10", "1000" })
+    private int batches;
+
+    @Param({ "8" })
+    private int parallelism;
+
+    private PipelineLayout layout;
+    private Context context;
+    private DirectoryScanner scanner;
+    private StatusCollector collector;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        var tree = new SyntheticPipelineTree(Path.of("target/jmh-trees"), files, batches);
+        layout = tree.generate();
+        var config = tree.getConfig();
+        context = new BenchmarkContext(config);
+        scanner = new DirectoryScanner(parallelism);
+        collector = new StatusCollector(config.getDirectories(), scanner, true, Duration.ofSeconds(300), 2);
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scanner.close();
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void stageLines(Blackhole blackhole) {
+        List<PipelineLayout.Stage> stages = new ArrayList<>(layout.getTransferStages());
+        stages.addAll(layout.getDataVaultStages());
+        stages.stream()
+            .map(stage -> stage.getKey().equals(PipelineLayout.ARCHIVED_LAYERS)
+                ? collector.archivedLayersAsync(layout, null)
+                : collector.scan(stage.getDir(), null))
+            .collect(Collectors.toList())
+            .forEach(future -> blackhole.consume(future.join()));
+    }
+
+    @Benchmark
+    public void dataVaultBatches(Blackhole blackhole) {
+        collector.scanBatches(layout, null)
+            .forEach(future -> blackhole.consume(future.join()));
+    }
+
+    @Benchmark
+    public int statusReport() {
+        var command = new TransferStatus(context);
+        new CommandLine(command).parseArgs("--all-batches", "--parallelism", String.valueOf(parallelism));
+        return command.call();
+    }
+
+    private static class BenchmarkContext implements Context {
+        private final DdTransferToVaultCliConfig config;
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        BenchmarkContext(DdTransferToVaultCliConfig config) {
+            this.config = config;
+        }
+
+        @Override
+        public DefaultApi getApi() {
+            throw new UnsupportedOperationException("The benchmarks do not call the service");
+        }
+
+        @Override
+        public DefaultApi getApi(String pipeline) {
+            return getApi();
+        }
+
+        @Override
+        public ObjectMapper getObjectMapper() {
+            return objectMapper;
+        }
+
+        @Override
+        public DdTransferToVaultCliConfig getConfig() {
+            return config;
+        }
+
+        @Override
+        public String getPipeline() {
+            return SyntheticPipelineTree.PIPELINE;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.benchmark;
+
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a pipeline tree with the directory layout that the status report reads. The files are spread over the stage directories and over the inbox and outbox
+ * directories of the data vault batches. Every item is a directory holding a fixed number of small files, except in the stages that only count zip files.
+ * <p>
+ * Generating a large tree takes a while, so a tree is generated only once per combination of parameters and reused by later runs.
+ */
+class SyntheticPipelineTree {
+    static final String PIPELINE = "benchmark";
+    private static final int FILES_PER_ITEM = 10;
+    private static final byte[] CONTENT = new byte[512];
+
+    private final Path root;
+    private final int files;
+    private final int batches;
+
+    SyntheticPipelineTree(Path baseDir, int files, int batches) {
+        this.root = baseDir.resolve(files + "-files-" + batches + "-batches");
+        this.files = files;
+        this.batches = batches;
+    }
+
+    DdTransferToVaultCliConfig getConfig() {
+        var directories = new DirectoriesConfig();
+        directories.setCollectInboxes(root.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(root.resolve("working-space"));
+        directories.setDataVaultBatchRoot(root.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(root.resolve("data-vault-root"));
+        var config = new DdTransferToVaultCliConfig();
+        config.setDirectories(directories);
+        config.setPipelines(Map.of(PIPELINE, new TransferToVaultConfig()));
+        return config;
+    }
+
+    PipelineLayout getLayout() {
+        return PipelineLayout.of(PIPELINE, getConfig());
+    }
+
+    /**
+     * Generates the tree, unless it was generated completely before.
+     *
+     * @return the layout of the generated pipeline
+     * @throws IOException if the tree could not be generated
+     */
+    PipelineLayout generate() throws IOException {
+        var layout = getLayout();
+        var marker = root.resolve(".complete");
+        if (Files.exists(marker)) {
+            return layout;
+        }
+
+        // Half of the files are in the batches, the other half in the stage directories
+        List<PipelineLayout.Stage> stages = new ArrayList<>(layout.getTransferStages());
+        stages.add(layout.getDataVaultStages().get(0));
+        int filesPerStage = files / 2 / stages.size();
+        for (var stage : stages) {
+            Files.createDirectories(stage.getDir());
+            if (stage.isZipsOnly()) {
+                for (int i = 0; i < filesPerStage; i++) {
+                    Files.write(stage.getDir().resolve("item-" + i + ".zip"), CONTENT);
+                }
+            }
+            else {
+                createItems(stage.getDir(), filesPerStage / FILES_PER_ITEM);
+            }
+        }
+        Files.createDirectories(layout.getArchiveDir());
+
+        int itemsPerBatchDir = Math.max(1, files / 2 / batches / 3 / FILES_PER_ITEM);
+        for (int b = 0; b < batches; b++) {
+            String batch = String.format("batch-%06d", b);
+            createItems(layout.getBatchInbox(batch), itemsPerBatchDir);
+            createItems(layout.getBatchProcessedDir(batch), itemsPerBatchDir);
+            createItems(layout.getBatchFailedDir(batch), itemsPerBatchDir);
+        }
+        Files.createFile(marker);
+        return layout;
+    }
+
+    private void createItems(Path dir, int items) throws IOException {
+        Files.createDirectories(dir);
+        for (int i = 0; i < items; i++) {
+            var item = Files.createDirectories(dir.resolve("item-" + i));
+            for (int f = 0; f < FILES_PER_ITEM; f++) {
+                Files.write(item.resolve("file-" + f), CONTENT);
+            }
+        }
+    }
+}
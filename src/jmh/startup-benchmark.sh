@@ -0,0 +1,86 @@
+#!/bin/sh
+#
+# Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+# http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+#
+# Compares the time from starting bin/transfer until it exits, with and without the class-data-sharing archive. Unpacks the bin
+# assembly, links the jar to its version-less name like the RPM does, creates the archive with bin/transfer-train-cds and then
+# alternates runs of `transfer status` on an empty pipeline with and without the archive. Every run is a new JVM.
+#
+# Usage: startup-benchmark.sh <bin assembly tar.gz> [ <runs> ]
+#
+
+ASSEMBLY=${1:?Usage: startup-benchmark.sh <bin assembly tar.gz> [ <runs> ]}
+RUNS=${2:-20}
+MODULENAME=dd-transfer-to-vault-cli
+TARGET=$(dirname "$ASSEMBLY")/startup-benchmark
+
+rm -rf "$TARGET"
+mkdir -p "$TARGET/home"
+tar -xzf "$ASSEMBLY" -C "$TARGET" || exit 1
+APPHOME=$(ls -d "$TARGET"/$MODULENAME-*/)
+APPHOME=$(cd "$APPHOME" && pwd)
+JAR=$(cd "$APPHOME/bin" && ls $MODULENAME-*.jar | grep -v -e sources -e javadoc | head -1)
+ln -sf "$JAR" "$APPHOME/bin/$MODULENAME.jar"
+"$APPHOME/bin/transfer-train-cds" || exit 1
+
+# bin/transfer reads its configuration from ~/.transfer.yml
+HOME=$TARGET/home
+export HOME
+cat > "$HOME/.transfer.yml" <<END
+pipelines:
+  benchmark:
+    url: http://localhost:20365/
+    httpClient:
+      timeout: 30s
+      connectionTimeout: 15s
+directories:
+  collectInboxes: $TARGET/tree/collect
+  workingSpaceBaseDir: $TARGET/tree/work
+  dataVaultBatchRoot: $TARGET/tree/batches
+  dataVaultRoot: $TARGET/tree/vault
+logging:
+  level: WARN
+  appenders:
+    - type: console
+      target: stderr
+END
+
+run() {
+    start=$(date +%s%N)
+    TRANSFER_NO_CDS=$1 "$APPHOME/bin/transfer" -p benchmark status > /dev/null 2>&1
+    end=$(date +%s%N)
+    echo $(((end - start) / 1000000))
+}
+
+# Warm up the page cache, so that both variants read the jars from memory
+run 1 > /dev/null
+run "" > /dev/null
+
+: > "$TARGET/without.txt"
+: > "$TARGET/with.txt"
+for i in $(seq "$RUNS"); do
+    run 1 >> "$TARGET/without.txt"
+    run "" >> "$TARGET/with.txt"
+done
+
+stats() {
+    sort -n "$1" | awk '{ v[NR] = $1; sum += $1 } END { printf "median %5d ms   mean %7.1f ms   min %5d ms   max %5d ms\n", v[int((NR + 1) / 2)], sum / NR, v[1], v[NR] }'
+}
+
+echo "startup time over $RUNS runs of 'transfer status':"
+echo "  without archive: $(stats "$TARGET/without.txt")"
+echo "  with archive:    $(stats "$TARGET/with.txt")"
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.protocol.HttpContext;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the calls to the dd-transfer-to-vault APIs, for the <code>--timings</code> diagnostic. A {@link Filter} is registered on the HTTP client of every API client
+ * that is built, so every call is timed, whichever command makes it. The time of a call runs from just before the request is sent until the response has been
+ * received, and so includes getting a connection from the pool and setting up a new connection and its TLS session. The first call to an endpoint is also
+ * reported separately, because that is usually the one that sets up the connection.
+ * <p>
+ * Retries that the HTTP connector makes on its own happen below the JAX-RS filter chain, so the filter cannot see them. They are counted by a {@link RetryCounter}
+ * instead, which wraps the retry handler of the connector. A call that was retried is still timed once, from the first attempt until the last one returned.
+ * <p>
+ * Calls that fail without a response, such as a refused connection, never reach the response filter; they are counted as the difference between the requests sent
+ * and the responses received.
+ */
+class ApiTimings {
+    private static final String START_PROPERTY = ApiTimings.class.getName() + ".start";
+
+    private final MetricRegistry registry = new MetricRegistry();
+    private final Map<String, Long> firstCalls = new ConcurrentHashMap<>();
+
+    /**
+     * Times the calls of one API client.
+     */
+    class Filter implements ClientRequestFilter, ClientResponseFilter {
+        private final String pipeline;
+
+        private Filter(String pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        public void filter(ClientRequestContext request) {
+            request.setProperty(START_PROPERTY, System.nanoTime());
+            registry.counter(MetricRegistry.name(endpoint(request), "requests")).inc();
+        }
+
+        @Override
+        public void filter(ClientRequestContext request, ClientResponseContext response) {
+            var start = request.getProperty(START_PROPERTY);
+            if (!(start instanceof Long)) {
+                return;
+            }
+            long nanos = System.nanoTime() - (Long) start;
+            String endpoint = endpoint(request);
+            registry.timer(MetricRegistry.name(endpoint, "responses")).update(nanos, TimeUnit.NANOSECONDS);
+            firstCalls.putIfAbsent(endpoint, nanos);
+            if (response.getStatus() >= 500) {
+                registry.counter(MetricRegistry.name(endpoint, "server-errors")).inc();
+            }
+        }
+
+        private String endpoint(ClientRequestContext request) {
+            return ApiTimings.endpoint(pipeline, request.getMethod(), request.getUri());
+        }
+    }
+
+    /**
+     * Counts the retries of one API client, leaving the decision whether to retry to the handler that the HTTP connector would use without it.
+     */
+    class RetryCounter implements HttpRequestRetryHandler {
+        private final String pipeline;
+        private final HttpRequestRetryHandler delegate;
+
+        private RetryCounter(String pipeline, HttpRequestRetryHandler delegate) {
+            this.pipeline = pipeline;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+            boolean retry = delegate.retryRequest(exception, executionCount, context);
+            var request = HttpClientContext.adapt(context).getRequest();
+            if (retry && request != null) {
+                var requestLine = request.getRequestLine();
+                registry.counter(MetricRegistry.name(endpoint(pipeline, requestLine.getMethod(), URI.create(requestLine.getUri())), "retries")).inc();
+            }
+            return retry;
+        }
+    }
+
+    /**
+     * @param pipeline the pipeline whose API client the filter is registered on
+     * @return a filter to register on the HTTP client
+     */
+    Filter filterFor(String pipeline) {
+        return new Filter(pipeline);
+    }
+
+    /**
+     * @param pipeline the pipeline whose HTTP client the retry handler is used by
+     * @param retries  the number of retries that the HTTP client of the pipeline is configured to make
+     * @return a retry handler that retries like the default one of the HTTP client, and counts the retries
+     */
+    RetryCounter retryHandlerFor(String pipeline, int retries) {
+        return new RetryCounter(pipeline, new DefaultHttpRequestRetryHandler(retries, false));
+    }
+
+    void print(PrintStream out) {
+        SortedSet<String> endpoints = new TreeSet<>();
+        registry.getCounters((name, metric) -> name.endsWith(".requests")).keySet()
+            .forEach(name -> endpoints.add(name.substring(0, name.length() - ".requests".length())));
+        out.println("API call timings:");
+        if (endpoints.isEmpty()) {
+            out.println("  no API calls");
+            return;
+        }
+        out.printf("  %-45s %6s %7s %7s %10s %10s %10s %10s%n", "ENDPOINT", "CALLS", "FAILED", "RETRIES", "FIRST", "P50", "P95", "MAX");
+        for (String endpoint : endpoints) {
+            long requests = registry.counter(MetricRegistry.name(endpoint, "requests")).getCount();
+            Timer timer = registry.timer(MetricRegistry.name(endpoint, "responses"));
+            Counter serverErrors = registry.counter(MetricRegistry.name(endpoint, "server-errors"));
+            var snapshot = timer.getSnapshot();
+            long failed = requests - timer.getCount() + serverErrors.getCount();
+            long retries = registry.counter(MetricRegistry.name(endpoint, "retries")).getCount();
+            out.printf("  %-45s %6d %7d %7d %10s %10s %10s %10s%n", endpoint, requests, failed, retries, millis(firstCalls.getOrDefault(endpoint, 0L)),
+                millis(snapshot.getMedian()), millis(snapshot.get95thPercentile()), millis(snapshot.getMax()));
+        }
+    }
+
+    private static String endpoint(String pipeline, String method, URI uri) {
+        return pipeline + " " + method + " " + uri.getPath();
+    }
+
+    private static String millis(double nanos) {
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+}
@@ -23,6 +23,8 @@ public interface Context {
 
     DefaultApi getApi();
 
+    DefaultApi getApi(String pipeline);
+
     ObjectMapper getObjectMapper();
 
     DdTransferToVaultCliConfig getConfig();
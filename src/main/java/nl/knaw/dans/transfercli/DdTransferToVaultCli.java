@@ -16,26 +16,39 @@
 
 package nl.knaw.dans.transfercli;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.dropwizard.client.JerseyClientBuilder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.lib.util.AbstractCommandLineApp;
-import nl.knaw.dans.lib.util.ClientProxyBuilder;
 import nl.knaw.dans.lib.util.PicocliVersionProvider;
 import nl.knaw.dans.transfercli.client.ApiClient;
 import nl.knaw.dans.transfercli.client.DefaultApi;
+import nl.knaw.dans.transfercli.command.AutoFlush;
+import nl.knaw.dans.transfercli.command.BatchDetails;
+import nl.knaw.dans.transfercli.command.Cleanup;
 import nl.knaw.dans.transfercli.command.FlushWorkToVault;
+import nl.knaw.dans.transfercli.command.Latency;
+import nl.knaw.dans.transfercli.command.RequeueFailed;
+import nl.knaw.dans.transfercli.command.ServeMetrics;
 import nl.knaw.dans.transfercli.command.TransferStatus;
+import nl.knaw.dans.transfercli.command.Trend;
+import nl.knaw.dans.transfercli.command.Verify;
 import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Command(name = "transfer",
          mixinStandardHelpOptions = true,
@@ -43,6 +56,8 @@ import java.util.stream.Collectors;
          description = "CLI for dd-transfer-to-vault")
 @Slf4j
 public class DdTransferToVaultCli extends AbstractCommandLineApp<DdTransferToVaultCliConfig> implements Context {
+    private static final long mainStarted = System.nanoTime();
+
     public static void main(String[] args) throws Exception {
         new DdTransferToVaultCli().run(args);
     }
@@ -50,7 +65,19 @@ public class DdTransferToVaultCli extends AbstractCommandLineApp<DdTransferToVau
     @Getter
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private Map<String, DefaultApi> pipelines;
+    // Clients are only built for the pipelines that a command actually calls
+    private final Map<String, DefaultApi> apis = new ConcurrentHashMap<>();
+
+    private final StartupTimings startupTimings = new StartupTimings(mainStarted);
+
+    private final ApiTimings apiTimings = new ApiTimings();
+
+    // Only used by the HTTP clients for asynchronous requests; must not keep the JVM alive
+    private final ExecutorService clientExecutor = Executors.newCachedThreadPool(r -> {
+        var thread = new Thread(r, "api-client");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private DdTransferToVaultCliConfig config;
 
@@ -59,6 +86,14 @@ public class DdTransferToVaultCli extends AbstractCommandLineApp<DdTransferToVau
     @Setter
     private String pipeline;
 
+    @Option(names = { "--startup-timings" },
+            description = "Print how long the phases of this run took to stderr when the command has finished.")
+    private boolean printStartupTimings = false;
+
+    @Option(names = { "--timings" },
+            description = "Print the number of calls to each API endpoint and how long they took to stderr when the command has finished.")
+    private boolean printApiTimings = false;
+
     @Override
     public DdTransferToVaultCliConfig getConfig() {
         return this.config;
@@ -71,19 +106,46 @@ public class DdTransferToVaultCli extends AbstractCommandLineApp<DdTransferToVau
 
     @Override
     public DefaultApi getApi() {
-        if (pipelines == null) {
+        if (this.pipeline == null) {
+            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        }
+        return getApi(this.pipeline);
+    }
+
+    @Override
+    public DefaultApi getApi(String pipeline) {
+        if (config == null) {
             throw new IllegalStateException("getApi() called before initialization.");
         }
 
-        if (this.pipeline == null) {
-            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        var pipelineConfig = config.getPipelines().get(pipeline);
+        if (pipelineConfig == null) {
+            throw new IllegalArgumentException("No pipeline found for: " + pipeline);
         }
+        return apis.computeIfAbsent(pipeline, name -> buildApi(name, pipelineConfig));
+    }
 
-        var api = pipelines.get(this.pipeline);
-        if (api == null) {
-            throw new IllegalArgumentException("No pipeline found for: " + this.pipeline);
+    private DefaultApi buildApi(String name, TransferToVaultConfig pipelineConfig) {
+        long start = System.nanoTime();
+        try {
+            var apiClient = new ApiClient();
+            var httpClientConfig = pipelineConfig.getHttpClient();
+            // Built here rather than with ClientProxyBuilder, so that the retry handler of the connector can be wrapped to count the retries
+            var httpClient = new JerseyClientBuilder(new MetricRegistry())
+                .using(httpClientConfig)
+                .using(apiTimings.retryHandlerFor(name, httpClientConfig.getRetries()))
+                .using(clientExecutor, apiClient.getJSON().getMapper())
+                .withProvider(MultiPartFeature.class)
+                .build("dd-transfer-to-vault-" + name);
+            // Registered on the HTTP client, so that every call is timed, whichever command makes it
+            httpClient.register(apiTimings.filterFor(name));
+            apiClient.setHttpClient(httpClient);
+            apiClient.setBasePath(pipelineConfig.getUrl().toString());
+            return new DefaultApi(apiClient);
+        }
+        finally {
+            startupTimings.record("API client construction", System.nanoTime() - start);
         }
-        return api;
     }
 
     public String getName() {
@@ -92,20 +154,43 @@ public class DdTransferToVaultCli extends AbstractCommandLineApp<DdTransferToVau
 
     @Override
     public void configureCommandLine(CommandLine commandLine, DdTransferToVaultCliConfig config) {
+        long start = System.nanoTime();
+        // Loading the configuration happens in the base class, between main and this call; parsing and validation can only be timed together
+        startupTimings.record("config parsing and validation", start - mainStarted);
         log.debug("Configuring command line");
         this.config = config;
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
-        this.pipelines = config.getPipelines().entrySet().stream()
-            .collect(Collectors.toMap(Map.Entry::getKey, e -> new ClientProxyBuilder<ApiClient, DefaultApi>()
-                .apiClient(new ApiClient())
-                .basePath(e.getValue().getUrl())
-                .httpClient(e.getValue().getHttpClient())
-                .defaultApiCtor(DefaultApi::new)
-                .build()));
-
         commandLine.addSubcommand(new FlushWorkToVault(this));
         commandLine.addSubcommand(new TransferStatus(this));
+        commandLine.addSubcommand(new ServeMetrics(this));
+        commandLine.addSubcommand(new AutoFlush(this));
+        commandLine.addSubcommand(new Trend(this));
+        commandLine.addSubcommand(new Latency(this));
+        commandLine.addSubcommand(new BatchDetails(this));
+        commandLine.addSubcommand(new RequeueFailed(this));
+        commandLine.addSubcommand(new Verify(this));
+        commandLine.addSubcommand(new Cleanup(this));
+        // Allows --format json instead of --format JSON
+        commandLine.setCaseInsensitiveEnumValuesAllowed(true);
+
+        var executionStrategy = commandLine.getExecutionStrategy();
+        commandLine.setExecutionStrategy(parseResult -> {
+            long executionStart = System.nanoTime();
+            try {
+                return executionStrategy.execute(parseResult);
+            }
+            finally {
+                startupTimings.record("command execution (including API clients)", System.nanoTime() - executionStart);
+                if (printStartupTimings) {
+                    startupTimings.print(System.err);
+                }
+                if (printApiTimings) {
+                    apiTimings.print(System.err);
+                }
+            }
+        });
+        startupTimings.record("command line setup", System.nanoTime() - start);
     }
 }
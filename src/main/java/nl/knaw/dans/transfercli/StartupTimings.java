@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long the phases of a CLI run take, for the <code>--startup-timings</code> diagnostic. Phases are reported in the order in which they were first recorded;
+ * recording a phase more than once adds up the durations.
+ */
+class StartupTimings {
+    private final long mainStarted;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * @param mainStarted the value of {@link System#nanoTime()} when <code>main</code> was entered
+     */
+    StartupTimings(long mainStarted) {
+        this.mainStarted = mainStarted;
+    }
+
+    synchronized void record(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    synchronized void print(PrintStream out) {
+        long sinceMain = System.nanoTime() - mainStarted;
+        // The JVM uptime covers everything since the process started; the part before main is JVM startup and class loading
+        long beforeMain = TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime()) - sinceMain;
+        out.println("startup timings:");
+        print(out, "jvm startup", beforeMain);
+        phases.forEach((phase, nanos) -> print(out, phase, nanos));
+        print(out, "total", beforeMain + sinceMain);
+    }
+
+    private static void print(PrintStream out, String phase, long nanos) {
+        out.printf("  %-40s %8.1f ms%n", phase, Math.max(0, nanos) / 1e6);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.appcds;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stand-in for the dd-transfer-to-vault API during the training run that records which classes the CLI loads, for the class-data-sharing archive made by
+ * <code>bin/transfer-train-cds</code>. Answers every request with a status message, so that the commands that call the API run their normal path. Prints the port it
+ * listens on to stdout and runs until it is killed.
+ */
+public class TrainingStub {
+    private static final byte[] RESPONSE = "{\"message\":\"training run\"}".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            try (var body = exchange.getResponseBody()) {
+                body.write(RESPONSE);
+            }
+        });
+        server.start();
+        System.out.println(server.getAddress().getPort());
+        System.out.flush();
+    }
+}
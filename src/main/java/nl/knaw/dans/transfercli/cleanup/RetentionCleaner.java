@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.cleanup;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.transfercli.config.CleanupConfig;
+import nl.knaw.dans.transfercli.config.RetentionConfig;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.latency.StageLatency;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes the entries of the output directories of a pipeline that fall outside its retention policy. Only two directories are cleaned: the processed outbox of
+ * the send-to-vault step and the outbox of the data vault, in which every batch has a directory. Inboxes and work directories are never touched; an entry that
+ * is, contains or lies inside one of them is skipped, in case the directories are configured to overlap.
+ * <p>
+ * An entry is eligible if it entered its directory longer than <code>maxAge</code> ago and is not one of the <code>keepLast</code> entries that entered it most
+ * recently. If only one of the two is set, only that one applies. The time an entry entered is taken from {@link StageLatency#entered(Path)}: a move keeps the
+ * modification time, so a zip that was built a week ago but only just moved into the processed outbox would otherwise be deleted straight away.
+ * <p>
+ * A data vault batch whose inbox directory still exists is never eligible, because the data vault is still writing its outbox. Neither is a batch with items in
+ * its failed directory: those have not been handled yet, and are what <code>requeue-failed</code> moves back into the inboxes.
+ * <p>
+ * The trees are deleted bottom-up on a fork/join pool: the subdirectories of a directory are deleted in parallel, and the directory itself once they are gone.
+ * The pool bounds the number of concurrent deletes.
+ */
+@Slf4j
+public class RetentionCleaner implements AutoCloseable {
+    public static final String SEND_TO_VAULT_PROCESSED = PipelineLayout.SEND_TO_VAULT_PROCESSED;
+    public static final String DATA_VAULT_OUTBOX = "data-vault-outbox";
+
+    /**
+     * An entry to delete.
+     */
+    @Value
+    public static class Candidate {
+        String stage;
+        Path path;
+        Instant entered;
+    }
+
+    @Value
+    public static class Progress {
+        long entries;
+        long files;
+        long directories;
+        long bytes;
+        long failed;
+        Duration elapsed;
+
+        public double getFilesPerSecond() {
+            return elapsed.toMillis() == 0 ? 0 : (files + directories) * 1000.0 / elapsed.toMillis();
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsed.toMillis() == 0 ? 0 : bytes / 1e6 / (elapsed.toMillis() / 1000.0);
+        }
+    }
+
+    private final PipelineLayout layout;
+    private final List<Path> protectedDirs;
+    private final ForkJoinPool pool;
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param layout      the pipeline
+     * @param parallelism the maximum number of concurrent deletes
+     */
+    public RetentionCleaner(PipelineLayout layout, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got: " + parallelism);
+        }
+        this.layout = layout;
+        this.protectedDirs = List.of(
+                layout.getCollectInbox(),
+                layout.getExtractMetadataInbox(),
+                layout.getSendToVaultInbox(),
+                layout.getSendToVaultWorkDir(),
+                layout.getDataVaultInbox())
+            .stream()
+            .map(dir -> dir.toAbsolutePath().normalize())
+            .collect(Collectors.toList());
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @param layout the pipeline
+     * @return per stage that can be cleaned, its directory
+     */
+    public static Map<String, Path> stageDirs(PipelineLayout layout) {
+        Map<String, Path> dirs = new LinkedHashMap<>();
+        dirs.put(SEND_TO_VAULT_PROCESSED, layout.getSendToVaultProcessedDir());
+        dirs.put(DATA_VAULT_OUTBOX, layout.getDataVaultOutbox());
+        return dirs;
+    }
+
+    /**
+     * Selects the entries that fall outside the retention policy, oldest first per stage.
+     *
+     * @param config the retention policy of the pipeline
+     * @param now    the time to compute ages from
+     * @return the entries to delete
+     * @throws IOException if a stage directory could not be read
+     */
+    public List<Candidate> select(CleanupConfig config, Instant now) throws IOException {
+        List<Candidate> candidates = new ArrayList<>();
+        var dirs = stageDirs(layout);
+        candidates.addAll(select(SEND_TO_VAULT_PROCESSED, dirs.get(SEND_TO_VAULT_PROCESSED), config.getSendToVaultProcessed(), now));
+        candidates.addAll(select(DATA_VAULT_OUTBOX, dirs.get(DATA_VAULT_OUTBOX), config.getDataVaultOutbox(), now));
+        return candidates;
+    }
+
+    private List<Candidate> select(String stage, Path dir, RetentionConfig retention, Instant now) throws IOException {
+        if (retention == null || (retention.getMaxAge() == null && retention.getKeepLast() == null) || !Files.isDirectory(dir)) {
+            return List.of();
+        }
+        List<Candidate> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                Instant entered;
+                try {
+                    entered = StageLatency.entered(path);
+                }
+                catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (isProtected(path)) {
+                    log.warn("Not cleaning {}: it overlaps with an inbox or work directory", path);
+                    continue;
+                }
+                if (DATA_VAULT_OUTBOX.equals(stage)) {
+                    var batch = path.getFileName().toString();
+                    if (Files.exists(layout.getBatchInbox(batch), LinkOption.NOFOLLOW_LINKS)) {
+                        log.debug("Not cleaning {}: the batch is still in the data vault inbox", path);
+                        continue;
+                    }
+                    if (hasEntries(layout.getBatchFailedDir(batch))) {
+                        log.info("Not cleaning {}: the batch has failed items that have not been requeued", path);
+                        continue;
+                    }
+                }
+                entries.add(new Candidate(stage, path, entered));
+            }
+        }
+        // Newest first, so that the entries to keep come first
+        entries.sort(Comparator.comparing(Candidate::getEntered).thenComparing(c -> c.getPath().getFileName().toString()).reversed());
+        int keep = retention.getKeepLast() == null ? 0 : Math.min(retention.getKeepLast(), entries.size());
+        Instant cutoff = retention.getMaxAge() == null ? Instant.MAX : now.minusMillis(retention.getMaxAge().toMilliseconds());
+        List<Candidate> eligible = new ArrayList<>();
+        for (var candidate : entries.subList(keep, entries.size())) {
+            if (candidate.getEntered().isBefore(cutoff)) {
+                eligible.add(candidate);
+            }
+        }
+        Collections.reverse(eligible);
+        return eligible;
+    }
+
+    private static boolean hasEntries(Path dir) throws IOException {
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            return stream.iterator().hasNext();
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private boolean isProtected(Path path) {
+        var normalized = path.toAbsolutePath().normalize();
+        return protectedDirs.stream().anyMatch(dir -> dir.startsWith(normalized) || normalized.startsWith(dir));
+    }
+
+    /**
+     * Deletes the entries, or with <code>dryRun</code> only counts what would be deleted, and waits until all are done.
+     *
+     * @param candidates       the entries to delete
+     * @param dryRun           whether to only count the files and bytes
+     * @param progressInterval how often to report progress
+     * @param progress         receives the progress; called from the calling thread
+     * @return the final progress
+     * @throws InterruptedException if interrupted while waiting for the deletes
+     */
+    public Progress delete(List<Candidate> candidates, boolean dryRun, Duration progressInterval, Consumer<Progress> progress) throws InterruptedException {
+        long start = System.nanoTime();
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+        for (var candidate : candidates) {
+            tasks.add(pool.submit(new DeleteTask(candidate.getPath(), dryRun, true)));
+        }
+        for (var task : tasks) {
+            while (true) {
+                try {
+                    task.get(progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    break;
+                }
+                catch (TimeoutException e) {
+                    progress.accept(progress(start));
+                }
+                catch (ExecutionException e) {
+                    // DeleteTask handles its own I/O errors; anything else is a bug
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        return progress(start);
+    }
+
+    private Progress progress(long start) {
+        return new Progress(entries.sum(), files.sum(), directories.sum(), bytes.sum(), failed.sum(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private class DeleteTask extends RecursiveAction {
+        private final Path path;
+        private final boolean dryRun;
+        private final boolean top;
+
+        private DeleteTask(Path path, boolean dryRun, boolean top) {
+            this.path = path;
+            this.dryRun = dryRun;
+            this.top = top;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                var attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    List<DeleteTask> subtasks = new ArrayList<>();
+                    try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                        for (Path child : children) {
+                            try {
+                                var childAttrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                                if (childAttrs.isDirectory()) {
+                                    subtasks.add(new DeleteTask(child, dryRun, false));
+                                }
+                                else {
+                                    deleteFile(child, childAttrs);
+                                }
+                            }
+                            catch (NoSuchFileException e) {
+                                log.debug("{} is already gone", child);
+                            }
+                            catch (IOException e) {
+                                // Go on with the rest; the directory itself will then not be empty
+                                log.error("Could not delete {}: {}", child, e.toString());
+                                failed.increment();
+                            }
+                        }
+                    }
+                    ForkJoinTask.invokeAll(subtasks);
+                    if (!dryRun) {
+                        Files.delete(path);
+                    }
+                    directories.increment();
+                }
+                else {
+                    // Symbolic links are deleted, never followed
+                    deleteFile(path, attrs);
+                }
+                if (top) {
+                    entries.increment();
+                }
+            }
+            catch (NoSuchFileException e) {
+                log.debug("{} is already gone", path);
+            }
+            catch (DirectoryNotEmptyException e) {
+                // A failure below has already been counted
+                log.debug("Not deleting {}: not empty", path);
+            }
+            catch (IOException e) {
+                log.error("Could not delete {}: {}", path, e.toString());
+                failed.increment();
+            }
+        }
+
+        private void deleteFile(Path file, BasicFileAttributes attrs) throws IOException {
+            if (!dryRun) {
+                Files.delete(file);
+            }
+            files.increment();
+            bytes.add(attrs.size());
+        }
+    }
+}
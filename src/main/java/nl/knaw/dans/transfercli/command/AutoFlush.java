@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.client.ApiException;
+import nl.knaw.dans.transfercli.core.AutoFlushPolicy;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+@Command(name = "auto-flush",
+         mixinStandardHelpOptions = true,
+         description = "Watches the work directories of the pipelines and flushes a pipeline to the data vault when one of the thresholds in its autoFlush "
+             + "configuration is reached. Pipelines without autoFlush configuration are skipped. Without -p all configured pipelines are watched.")
+@RequiredArgsConstructor
+@Slf4j
+public class AutoFlush implements Callable<Integer> {
+    private final Context context;
+
+    @Option(names = { "--interval" },
+            description = "Seconds between two checks of the work directories. Default: ${DEFAULT-VALUE}.")
+    private int interval = 30;
+
+    @Option(names = { "--once" },
+            description = "Check the work directories once, flush where needed and exit.")
+    private boolean once = false;
+
+    @Override
+    public Integer call() {
+        if (interval < 1) {
+            throw new IllegalArgumentException("--interval must be at least 1 second");
+        }
+        var config = context.getConfig();
+        Map<String, AutoFlushPolicy> policies = new LinkedHashMap<>();
+        Map<String, Path> workDirs = new LinkedHashMap<>();
+        var names = context.getPipeline() == null ? config.getPipelines().keySet().stream().sorted().toArray(String[]::new) : new String[] { context.getPipeline() };
+        for (var name : names) {
+            var layout = PipelineLayout.of(name, config);
+            var autoFlush = config.getPipelines().get(name).getAutoFlush();
+            if (autoFlush == null) {
+                log.info("No autoFlush configuration for pipeline {}, skipping", name);
+                continue;
+            }
+            policies.put(name, new AutoFlushPolicy(autoFlush));
+            workDirs.put(name, layout.getSendToVaultWorkDir());
+        }
+        if (policies.isEmpty()) {
+            throw new IllegalArgumentException("None of the selected pipelines has an autoFlush configuration");
+        }
+
+        try (var scanner = new DirectoryScanner(2)) {
+            while (true) {
+                for (var e : policies.entrySet()) {
+                    try {
+                        check(e.getKey(), e.getValue(), workDirs.get(e.getKey()), scanner);
+                    }
+                    catch (RuntimeException ex) {
+                        // For instance a refused connection; try again at the next check instead of stopping
+                        log.error("Pipeline {}: check failed", e.getKey(), ex);
+                        System.err.printf("%s: error: %s%n", e.getKey(), ex.getMessage());
+                    }
+                }
+                if (once) {
+                    return 0;
+                }
+                Thread.sleep(Duration.ofSeconds(interval).toMillis());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    private void check(String pipeline, AutoFlushPolicy policy, Path workDir, DirectoryScanner scanner) {
+        var now = Instant.now();
+        if (policy.inCooldown(now)) {
+            return;
+        }
+        AutoFlushPolicy.WorkState state;
+        try {
+            state = AutoFlushPolicy.WorkState.of(workDir, scanner);
+        }
+        catch (IOException e) {
+            log.warn("Could not read work directory {} of pipeline {}", workDir, pipeline, e);
+            return;
+        }
+        var reason = policy.check(state, now);
+        if (reason.isEmpty()) {
+            log.debug("Pipeline {}: {} items, {} bytes in work directory, no flush needed", pipeline, state.getItems(), state.getBytes());
+            return;
+        }
+        policy.flushed(now);
+        try {
+            var statusMessage = context.getApi(pipeline).sendToVaultFlushPost();
+            log.info("Pipeline {}: flushed because {}: {}", pipeline, reason.get(), statusMessage.getMessage());
+            System.err.printf("%s: flush job submitted (%s): %s%n", pipeline, reason.get(), statusMessage.getMessage());
+        }
+        catch (ApiException e) {
+            log.error("Pipeline {}: flush failed", pipeline, e);
+            System.err.printf("%s: error: %s%n", pipeline, e.getMessage());
+        }
+    }
+}
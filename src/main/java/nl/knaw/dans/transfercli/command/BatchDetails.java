@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.core.BatchInspector;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.report.OutputFormat;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import org.apache.commons.io.FileUtils;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Callable;
+
+@Command(name = "batch",
+         mixinStandardHelpOptions = true,
+         description = "Prints the objects and object versions of one data vault batch, with their sizes, and the largest object versions.")
+@RequiredArgsConstructor
+public class BatchDetails implements Callable<Integer> {
+    private final Context context;
+
+    @Parameters(index = "0",
+                description = "The name of the batch.")
+    private String batch;
+
+    @Option(names = { "-n", "--top" },
+            description = "Number of largest object versions to list. Default: ${DEFAULT-VALUE}.")
+    private int top = 10;
+
+    @Option(names = { "--parallelism" },
+            description = "Maximum number of object versions to scan concurrently. Default: ${DEFAULT-VALUE}.")
+    private int parallelism = 8;
+
+    @Option(names = { "--versions" },
+            description = "Also list every object version, as soon as it has been sized. Not supported with JSON output.")
+    private boolean versions;
+
+    @Option(names = { "-f", "--format" },
+            description = "Output format: ${COMPLETION-CANDIDATES}. Default: ${DEFAULT-VALUE}.")
+    private OutputFormat format = OutputFormat.TEXT;
+
+    @Override
+    public Integer call() {
+        String pipelineName = context.getPipeline();
+        if (pipelineName == null) {
+            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        }
+        if (versions && format == OutputFormat.JSON) {
+            throw new IllegalArgumentException("--versions does not support JSON output; use NDJSON");
+        }
+        var layout = PipelineLayout.of(pipelineName, context.getConfig());
+
+        try (var scanner = new DirectoryScanner(parallelism)) {
+            // Keep a few scans queued per scanner thread, but not one per object version of the batch
+            var inspector = new BatchInspector(scanner, top, parallelism * 4);
+            switch (format) {
+                case JSON:
+                    context.getObjectMapper().writerWithDefaultPrettyPrinter().writeValue(System.out, inspector.inspect(layout, batch));
+                    System.out.println();
+                    break;
+                case NDJSON:
+                    try (JsonGenerator generator = context.getObjectMapper().getFactory().createGenerator(System.out)) {
+                        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                        // One record per line, without the space that Jackson puts between root values by default
+                        generator.setRootValueSeparator(null);
+                        var report = inspector.inspect(layout, batch, versions ? version -> writeNdjsonVersion(generator, layout.getName(), batch, version) : version -> {});
+                        writeNdjson(generator, report);
+                    }
+                    break;
+                default:
+                    if (versions) {
+                        System.out.println("* object versions:");
+                        System.out.printf("%-10s %-50s %-8s %9s %12s%n", "STATE", "OBJECT", "VERSION", "FILES", "SIZE");
+                    }
+                    var report = inspector.inspect(layout, batch, versions ? this::writeTextVersion : version -> {});
+                    if (versions) {
+                        System.out.println();
+                    }
+                    writeText(report);
+            }
+            System.out.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+        return 0;
+    }
+
+    private void writeTextVersion(BatchInspector.ObjectVersionStats version) {
+        System.out.printf("%-10s %-50s %-8s %9d %12s%n", version.getState(), version.getObject(), version.getVersion() == null ? "-" : version.getVersion(),
+            version.getFiles(), FileUtils.byteCountToDisplaySize(version.getBytes()));
+    }
+
+    private void writeText(BatchInspector.BatchReport report) {
+        System.out.printf("batch %s of %s%n", report.getBatch(), report.getPipeline());
+        System.out.println();
+        System.out.printf("%-10s %8s %9s %9s %12s%n", "STATE", "OBJECTS", "VERSIONS", "FILES", "SIZE");
+        for (var state : report.getStates()) {
+            System.out.printf("%-10s %8d %9d %9d %12s%n", state.getState(), state.getObjects(), state.getVersions(), state.getFiles(),
+                FileUtils.byteCountToDisplaySize(state.getBytes()));
+        }
+        if (!report.getLargest().isEmpty()) {
+            System.out.println();
+            System.out.printf("* largest %d object versions:%n", report.getLargest().size());
+            System.out.printf("%-10s %-50s %-8s %9s %12s%n", "STATE", "OBJECT", "VERSION", "FILES", "SIZE");
+            for (var version : report.getLargest()) {
+                writeTextVersion(version);
+            }
+        }
+    }
+
+    private void writeNdjsonVersion(JsonGenerator generator, String pipeline, String batch, BatchInspector.ObjectVersionStats version) {
+        try {
+            writeNdjsonVersion(generator, "version", pipeline, batch, version);
+            generator.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeNdjsonVersion(JsonGenerator generator, String type, String pipeline, String batch, BatchInspector.ObjectVersionStats version) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", type);
+        generator.writeStringField("pipeline", pipeline);
+        generator.writeStringField("batch", batch);
+        generator.writeStringField("state", version.getState());
+        generator.writeStringField("object", version.getObject());
+        generator.writeStringField("version", version.getVersion());
+        generator.writeNumberField("files", version.getFiles());
+        generator.writeNumberField("bytes", version.getBytes());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeNdjson(JsonGenerator generator, BatchInspector.BatchReport report) throws IOException {
+        for (var state : report.getStates()) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "state");
+            generator.writeStringField("pipeline", report.getPipeline());
+            generator.writeStringField("batch", report.getBatch());
+            generator.writeStringField("state", state.getState());
+            generator.writeNumberField("objects", state.getObjects());
+            generator.writeNumberField("versions", state.getVersions());
+            generator.writeNumberField("files", state.getFiles());
+            generator.writeNumberField("bytes", state.getBytes());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        for (var version : report.getLargest()) {
+            writeNdjsonVersion(generator, "largest", report.getPipeline(), report.getBatch(), version);
+        }
+    }
+}
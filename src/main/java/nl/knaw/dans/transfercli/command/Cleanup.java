@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.cleanup.RetentionCleaner;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import org.apache.commons.io.FileUtils;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+
+@Command(name = "cleanup",
+         mixinStandardHelpOptions = true,
+         description = "Deletes processed items and data vault outbox batches that fall outside the retention policy of the pipeline.")
+@RequiredArgsConstructor
+public class Cleanup implements Callable<Integer> {
+    private final Context context;
+
+    @Option(names = { "--parallelism" },
+            description = "Maximum number of concurrent deletes. Default: ${DEFAULT-VALUE}.")
+    private int parallelism = 8;
+
+    @Option(names = { "--dry-run" },
+            description = "Only list what would be deleted and how much space it would free.")
+    private boolean dryRun;
+
+    @Option(names = { "--progress-interval" },
+            description = "Seconds between progress reports. Default: ${DEFAULT-VALUE}.")
+    private int progressInterval = 5;
+
+    @Override
+    public Integer call() throws InterruptedException {
+        String pipelineName = context.getPipeline();
+        if (pipelineName == null) {
+            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        }
+        var layout = PipelineLayout.of(pipelineName, context.getConfig());
+        var cleanupConfig = context.getConfig().getPipelines().get(pipelineName).getCleanup();
+        if (cleanupConfig == null) {
+            throw new IllegalArgumentException("No cleanup configuration for pipeline " + pipelineName);
+        }
+
+        try (var cleaner = new RetentionCleaner(layout, parallelism)) {
+            var candidates = cleaner.select(cleanupConfig, Instant.now());
+            if (dryRun) {
+                for (var candidate : candidates) {
+                    System.out.printf("%s: %s (entered %s)%n", candidate.getStage(), candidate.getPath().getFileName(), candidate.getEntered());
+                }
+            }
+            if (candidates.isEmpty()) {
+                System.out.println("nothing to clean up");
+                return 0;
+            }
+            var result = cleaner.delete(candidates, dryRun, Duration.ofSeconds(Math.max(1, progressInterval)), progress ->
+                System.out.printf("%d/%d entries, %d files, %s %s, %.0f files/s, %.1f MB/s%n", progress.getEntries(), candidates.size(), progress.getFiles(),
+                    FileUtils.byteCountToDisplaySize(progress.getBytes()), dryRun ? "counted" : "freed", progress.getFilesPerSecond(),
+                    progress.getMegabytesPerSecond()));
+
+            if (dryRun) {
+                System.out.printf("%d entries with %d files and %d directories would be deleted, freeing %s%n", result.getEntries(), result.getFiles(),
+                    result.getDirectories(), FileUtils.byteCountToDisplaySize(result.getBytes()));
+            }
+            else {
+                System.out.printf("%d entries with %d files and %d directories deleted, %s freed, %d failed (%.0f files/s, %.1f MB/s)%n", result.getEntries(),
+                    result.getFiles(), result.getDirectories(), FileUtils.byteCountToDisplaySize(result.getBytes()), result.getFailed(),
+                    result.getFilesPerSecond(), result.getMegabytesPerSecond());
+            }
+            return result.getFailed() == 0 ? 0 : 1;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -17,13 +17,23 @@ package nl.knaw.dans.transfercli.command;
 
 import lombok.RequiredArgsConstructor;
 import nl.knaw.dans.transfercli.Context;
-import nl.knaw.dans.transfercli.DdTransferToVaultCli;
 import nl.knaw.dans.transfercli.client.ApiException;
-import picocli.CommandLine;
+import nl.knaw.dans.transfercli.core.BatchTracker;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 @Command(name = "flush-work-to-vault",
          mixinStandardHelpOptions = true,
@@ -32,16 +42,134 @@ import java.util.concurrent.Callable;
 public class FlushWorkToVault implements Callable<Integer> {
     private final Context context;
 
+    @Option(names = { "--all-pipelines" },
+            description = "Flush all configured pipelines concurrently. The -p option is ignored.")
+    private boolean allPipelines = false;
+
+    @Option(names = { "--wait" },
+            description = "Wait until the new batch has been processed by the data vault and report the throughput.")
+    private boolean wait = false;
+
+    @Option(names = { "--timeout" },
+            description = "Maximum number of seconds to wait with --wait. Default: ${DEFAULT-VALUE}.")
+    private int timeout = 3600;
+
+    @Option(names = { "--appear-timeout" },
+            description = "Maximum number of seconds to wait with --wait for the new batch to appear. If the work directory was empty, the command does not wait. "
+                + "Default: ${DEFAULT-VALUE}.")
+    private int appearTimeout = 60;
+
     @Override
     public Integer call() {
+        if (!allPipelines && !wait) {
+            try {
+                var statusMessage = context.getApi().sendToVaultFlushPost();
+                System.err.println("Flush job submitted: " + statusMessage.getMessage());
+                return 0;
+            }
+            catch (ApiException e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+
+        List<String> pipelines;
+        if (allPipelines) {
+            pipelines = context.getConfig().getPipelines().keySet().stream().sorted().collect(Collectors.toList());
+            if (pipelines.isEmpty()) {
+                System.err.println("No pipelines configured; nothing to flush");
+                return 1;
+            }
+        }
+        else if (context.getPipeline() == null) {
+            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        }
+        else {
+            pipelines = List.of(context.getPipeline());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(pipelines.size(), r -> {
+            var thread = new Thread(r, "flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (var scanner = new DirectoryScanner(Math.max(2, pipelines.size()))) {
+            // Each flush reports its own result as soon as it is known; a failure of one pipeline does not stop the others
+            var flushes = pipelines.stream()
+                .map(pipeline -> CompletableFuture.supplyAsync(() -> flush(pipeline, scanner), executor)
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        System.err.printf("%s: error: %s%n", pipeline, cause.getMessage());
+                        return false;
+                    }))
+                .collect(Collectors.toList());
+            boolean allSucceeded = true;
+            for (var flush : flushes) {
+                allSucceeded &= flush.join();
+            }
+            return allSucceeded ? 0 : 1;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean flush(String pipeline, DirectoryScanner scanner) {
+        BatchTracker tracker = null;
+        if (wait) {
+            tracker = new BatchTracker(PipelineLayout.of(pipeline, context.getConfig()), scanner);
+            try {
+                tracker.snapshot();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         try {
-            var statusMessage = context.getApi().sendToVaultFlushPost();
-            System.err.println("Flush job submitted: " + statusMessage.getMessage());
-            return 0;
+            var statusMessage = context.getApi(pipeline).sendToVaultFlushPost();
+            System.err.printf("%s: flush job submitted: %s%n", pipeline, statusMessage.getMessage());
         }
         catch (ApiException e) {
-            System.err.println("Error: " + e.getMessage());
-            return 1;
+            System.err.printf("%s: error: %s%n", pipeline, e.getMessage());
+            return false;
+        }
+        if (tracker == null) {
+            return true;
+        }
+
+        try {
+            var result = tracker.await(Duration.ofSeconds(appearTimeout), Duration.ofSeconds(timeout));
+            report(result);
+            return result.getState() == BatchTracker.State.NOTHING_TO_FLUSH
+                || result.getState() == BatchTracker.State.COMPLETED && result.getFailed() == 0;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private void report(BatchTracker.Result result) {
+        if (result.getState() == BatchTracker.State.NOTHING_TO_FLUSH) {
+            System.err.printf("%s: nothing to flush; the work directory was empty%n", result.getPipeline());
+            return;
+        }
+        if (result.getBatch() == null) {
+            System.err.printf("%s: no new batch appeared within %ds%n", result.getPipeline(), Math.min(appearTimeout, timeout));
+            return;
         }
+        double seconds = Math.max(result.getElapsed().toMillis(), 1) / 1000.0;
+        System.err.printf("%s: batch %s %s after %.1fs: %d processed, %d failed; %.1f items/s, %.2f MB/s%n",
+            result.getPipeline(),
+            result.getBatch(),
+            result.getState() == BatchTracker.State.COMPLETED ? "completed" : "still in progress",
+            seconds,
+            result.getProcessed(),
+            result.getFailed(),
+            result.getItems() / seconds,
+            result.getBytes() / 1e6 / seconds);
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.latency.StageLatency;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+@Command(name = "latency",
+         mixinStandardHelpOptions = true,
+         description = "Prints how long the items in each stage of a transfer pipeline have been there, as percentiles, and lists the oldest items per stage.")
+@RequiredArgsConstructor
+public class Latency implements Callable<Integer> {
+    // The stages that items pass through; the outboxes only collect items, so the time spent there says nothing about throughput
+    private static final Set<String> STAGES = Set.of(PipelineLayout.TRANSFER_INBOX, PipelineLayout.EXTRACT_METADATA_INBOX, PipelineLayout.SEND_TO_VAULT_INBOX,
+        PipelineLayout.SEND_TO_VAULT_WORK);
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final Context context;
+
+    @Option(names = { "-n", "--oldest" },
+            description = "Number of oldest items to list per stage. Default: ${DEFAULT-VALUE}.")
+    private int oldest = 5;
+
+    @Override
+    public Integer call() {
+        String pipelineName = context.getPipeline();
+        if (pipelineName == null) {
+            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        }
+        var layout = PipelineLayout.of(pipelineName, context.getConfig());
+        var now = Instant.now();
+
+        Map<PipelineLayout.Stage, StageLatency> latencies = new LinkedHashMap<>();
+        try {
+            for (var stage : layout.getTransferStages()) {
+                if (STAGES.contains(stage.getKey())) {
+                    var latency = new StageLatency(oldest);
+                    latency.scan(stage.getDir(), stage.isZipsOnly(), now);
+                    latencies.put(stage, latency);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        System.out.printf("latency %s at %s%n", pipelineName, TIME_FORMAT.format(now));
+        System.out.println();
+        System.out.printf("%-30s %8s %9s %9s %9s %9s%n", "STAGE", "ITEMS", "P50", "P90", "P99", "MAX");
+        latencies.forEach((stage, latency) -> {
+            var histogram = latency.getHistogram();
+            System.out.printf("%-30s %8d %9s %9s %9s %9s%n", stage.getLabel(), histogram.getCount(),
+                format(histogram.getPercentile(50)), format(histogram.getPercentile(90)), format(histogram.getPercentile(99)), format(histogram.getMax()));
+        });
+        if (oldest > 0) {
+            latencies.forEach((stage, latency) -> {
+                if (!latency.getOldest().isEmpty()) {
+                    System.out.println();
+                    System.out.printf("* oldest in %s:%n", stage.getLabel());
+                    for (var item : latency.getOldest()) {
+                        System.out.printf("%s %9s  %s%n", TIME_FORMAT.format(item.getEntered()), format(Duration.between(item.getEntered(), now)), item.getName());
+                    }
+                }
+            });
+        }
+        return 0;
+    }
+
+    static String format(Duration duration) {
+        if (duration.toDays() > 0) {
+            return String.format("%dd%02dh", duration.toDays(), duration.toHoursPart());
+        }
+        if (duration.toHours() > 0) {
+            return String.format("%dh%02dm", duration.toHours(), duration.toMinutesPart());
+        }
+        if (duration.toMinutes() > 0) {
+            return String.format("%dm%02ds", duration.toMinutes(), duration.toSecondsPart());
+        }
+        return duration.toSeconds() + "s";
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.requeue.FailedItemRequeuer;
+import nl.knaw.dans.transfercli.requeue.RequeueJournal;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Command(name = "requeue-failed",
+         mixinStandardHelpOptions = true,
+         description = "Moves failed items of a transfer pipeline back to the inbox of the step that failed them.")
+@RequiredArgsConstructor
+@Slf4j
+public class RequeueFailed implements Callable<Integer> {
+    private final Context context;
+
+    @Option(names = { "--stage" },
+            split = ",",
+            description = "The steps whose failed items to requeue: extract-metadata, send-to-vault or both. Default: both.")
+    private List<String> stages = new ArrayList<>(List.of(FailedItemRequeuer.EXTRACT_METADATA, FailedItemRequeuer.SEND_TO_VAULT));
+
+    @Option(names = { "--name" },
+            description = "Only requeue items whose file name matches this glob. Default: ${DEFAULT-VALUE}.")
+    private String name = "*.zip";
+
+    @Option(names = { "--older-than" },
+            description = "Only requeue items that were moved into the failed directory at least this many minutes ago. Default: ${DEFAULT-VALUE}.")
+    private long olderThanMinutes = 0;
+
+    @Option(names = { "--parallelism" },
+            description = "Maximum number of concurrent moves. Default: ${DEFAULT-VALUE}.")
+    private int parallelism = 8;
+
+    @Option(names = { "--dry-run" },
+            description = "Only list the items that would be requeued.")
+    private boolean dryRun;
+
+    @Option(names = { "--journal" },
+            description = "Journal file to continue an interrupted run from. Default: requeue-<pipeline>.journal in the cache directory, if configured.")
+    private Path journalFile;
+
+    @Option(names = { "--discard-journal" },
+            description = "Start a new run, even if the journal of an interrupted run exists.")
+    private boolean discardJournal;
+
+    @Option(names = { "--progress-interval" },
+            description = "Seconds between progress reports. Default: ${DEFAULT-VALUE}.")
+    private int progressInterval = 5;
+
+    @Override
+    public Integer call() throws InterruptedException {
+        String pipelineName = context.getPipeline();
+        if (pipelineName == null) {
+            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        }
+        var layout = PipelineLayout.of(pipelineName, context.getConfig());
+        var requeuer = new FailedItemRequeuer(layout, parallelism);
+        var stageList = stages.stream().distinct().sorted().collect(Collectors.toList());
+        String options = String.format("stages=%s name=%s older-than=%d", String.join(",", stageList), name, olderThanMinutes);
+        Path journalPath = journalFile;
+        if (journalPath == null && context.getConfig().getDirectories().getCacheDir() != null) {
+            journalPath = RequeueJournal.file(context.getConfig().getDirectories().getCacheDir(), pipelineName);
+        }
+
+        try {
+            if (discardJournal && journalPath != null && !dryRun) {
+                Files.deleteIfExists(journalPath);
+            }
+            Optional<RequeueJournal.Plan> plan = journalPath == null ? Optional.empty() : RequeueJournal.read(journalPath, options);
+            List<FailedItemRequeuer.Item> items;
+            if (plan.isPresent()) {
+                items = plan.get().getRemaining();
+                System.out.printf("continuing interrupted run from %s: %d of %d items left%n", journalPath, items.size(), plan.get().getTotal());
+            }
+            else {
+                var matcher = FileSystems.getDefault().getPathMatcher("glob:" + name);
+                items = requeuer.list(stageList, matcher, Instant.now().minus(Duration.ofMinutes(olderThanMinutes)));
+            }
+
+            if (dryRun) {
+                for (var item : items) {
+                    System.out.printf("%s: %s%n", item.getStage(), item.getName());
+                }
+                System.out.printf("%d items would be requeued%n", items.size());
+                return 0;
+            }
+            if (items.isEmpty()) {
+                System.out.println("no failed items to requeue");
+                if (plan.isPresent()) {
+                    Files.deleteIfExists(journalPath);
+                }
+                return 0;
+            }
+
+            RequeueJournal journal = null;
+            if (journalPath != null) {
+                journal = plan.isPresent() ? RequeueJournal.resume(journalPath) : RequeueJournal.create(journalPath, options, items);
+            }
+            var result = requeuer.requeue(items, recorder(journal), Duration.ofSeconds(Math.max(1, progressInterval)), progress ->
+                System.out.printf("%d/%d items handled, %.1f items/s%n", progress.getHandled(), progress.getTotal(), progress.getItemsPerSecond()));
+            if (journal != null) {
+                journal.delete();
+            }
+
+            System.out.printf("%d items requeued, %d already gone, %d not requeued because the inbox has an item with the same name, %d failed (%.1f items/s)%n",
+                result.getMoved(), result.getMissing(), result.getConflicts(), result.getFailed(), result.getItemsPerSecond());
+            return result.getConflicts() + result.getFailed() == 0 ? 0 : 1;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Consumer<FailedItemRequeuer.Item> recorder(RequeueJournal journal) {
+        if (journal == null) {
+            return item -> {
+            };
+        }
+        return item -> {
+            try {
+                journal.done(item);
+            }
+            catch (IOException e) {
+                // The item will be found to be gone when an interrupted run is continued
+                log.warn("Could not record {} in the journal: {}", item.getName(), e.toString());
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.core.StatusCollector;
+import nl.knaw.dans.transfercli.metrics.MetricsExporter;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import nl.knaw.dans.transfercli.scan.ScanCache;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Command(name = "serve-metrics",
+         mixinStandardHelpOptions = true,
+         description = "Serves the status of the pipelines as Prometheus/OpenMetrics gauges until interrupted. Scrapes are answered from a snapshot that is refreshed in "
+             + "the background. Without -p all configured pipelines are exported.")
+@RequiredArgsConstructor
+@Slf4j
+public class ServeMetrics implements Callable<Integer> {
+    private final Context context;
+
+    @Option(names = { "--host" },
+            description = "Address to listen on. Default: ${DEFAULT-VALUE}.")
+    private String host = "127.0.0.1";
+
+    @Option(names = { "--port" },
+            description = "Port to listen on. Default: ${DEFAULT-VALUE}.")
+    private int port = 9405;
+
+    @Option(names = { "--interval" },
+            description = "Seconds between the starts of two scans. Default: ${DEFAULT-VALUE}.")
+    private int interval = 60;
+
+    @Option(names = { "--scan-budget" },
+            description = "Seconds a scan may take. Directories that have not been scanned by then are left out of the gauges until the next scan, and the scan is "
+                + "counted as over budget. Default: ${DEFAULT-VALUE}.")
+    private int scanBudget = 30;
+
+    @Option(names = { "--parallelism" },
+            description = "Maximum number of directories to scan concurrently. Default: ${DEFAULT-VALUE}.")
+    private int parallelism = 8;
+
+    @Option(names = { "--scan-timeout" },
+            description = "Maximum number of seconds that the scan of one directory tree may run, counted from when it starts. A directory that is not scanned in "
+                + "time, for instance because its file system has stopped responding, is left out of the gauges, and so are the directories still waiting for the "
+                + "same base directory. Default: ${DEFAULT-VALUE}.")
+    private int scanTimeout = 300;
+
+    @Option(names = { "--scans-per-mount" },
+            description = "Maximum number of directory trees scanned at the same time below each configured base directory. This also limits --parallelism. "
+                + "Default: ${DEFAULT-VALUE}.")
+    private int scansPerMount = 2;
+
+    @Override
+    public Integer call() {
+        if (interval < 1 || scanBudget < 1) {
+            throw new IllegalArgumentException("--interval and --scan-budget must be at least 1 second");
+        }
+        if (scansPerMount < 1) {
+            throw new IllegalArgumentException("--scans-per-mount must be at least 1");
+        }
+        var config = context.getConfig();
+        List<PipelineLayout> layouts = (context.getPipeline() == null ? config.getPipelines().keySet().stream().sorted() : Stream.of(context.getPipeline()))
+            .map(name -> PipelineLayout.of(name, config))
+            .collect(Collectors.toList());
+
+        var cacheDir = config.getDirectories().getCacheDir();
+        // The cache is kept in memory between scans, so that each scan only lists the directories that changed
+        ScanCache cache = cacheDir == null ? null : ScanCache.load(cacheDir.resolve("scan-cache.bin"));
+        Runnable saveCache = () -> {
+            if (cache != null) {
+                try {
+                    cache.save();
+                }
+                catch (IOException e) {
+                    log.warn("Could not save scan cache", e);
+                }
+            }
+        };
+
+        try (var scanner = new DirectoryScanner(parallelism, cache);
+            var exporter = new MetricsExporter(createCollector(config.getDirectories(), scanner), layouts, Duration.ofSeconds(interval),
+                Duration.ofSeconds(scanBudget), saveCache)) {
+            exporter.start(new InetSocketAddress(host, port));
+            System.err.printf("Serving metrics for %d pipeline(s) on http://%s:%d/metrics, press Ctrl-C to stop%n", layouts.size(), host, exporter.getAddress().getPort());
+            new CountDownLatch(1).await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return 0;
+    }
+
+    private StatusCollector createCollector(DirectoriesConfig directories, DirectoryScanner scanner) {
+        return new StatusCollector(directories, scanner, true, scanTimeout > 0 ? Duration.ofSeconds(scanTimeout) : null, scansPerMount);
+    }
+}
@@ -16,159 +16,476 @@
 package nl.knaw.dans.transfercli.command;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.transfercli.Context;
-import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
-import org.apache.commons.io.FileUtils;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.core.PipelineStatus;
+import nl.knaw.dans.transfercli.core.StatusCollector;
+import nl.knaw.dans.transfercli.history.StatusHistory;
+import nl.knaw.dans.transfercli.report.OutputFormat;
+import nl.knaw.dans.transfercli.report.StatusReportWriter;
+import nl.knaw.dans.transfercli.report.SummaryRow;
+import nl.knaw.dans.transfercli.report.TextStatusReportWriter;
+import nl.knaw.dans.transfercli.scan.BatchStats;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+import nl.knaw.dans.transfercli.scan.DirectoryWatcher;
+import nl.knaw.dans.transfercli.scan.LayerIndex;
+import nl.knaw.dans.transfercli.scan.ScanCache;
+import nl.knaw.dans.transfercli.scan.StatusSnapshot;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Command(name = "status",
          mixinStandardHelpOptions = true,
          description = "Prints a status report for a transfer pipeline.")
 @RequiredArgsConstructor
+@Slf4j
 public class TransferStatus implements Callable<Integer> {
+    /**
+     * Exit code for a report in which some directories could not be scanned.
+     */
+    public static final int EXIT_DEGRADED = 3;
+
     private final Context context;
 
     @Option(names = { "-a", "--all-batches" },
             description = "Show all batches, including completed ones.")
     private boolean allBatches = false;
 
+    @Option(names = { "--all-pipelines" },
+            description = "Report on all configured pipelines, followed by a summary table. The -p option is ignored.")
+    private boolean allPipelines = false;
+
+    @Option(names = { "--parallelism" },
+            description = "Maximum number of directories to scan concurrently. Default: ${DEFAULT-VALUE}.")
+    private int parallelism = 8;
+
+    @Option(names = { "--no-cache" },
+            description = "Ignore the scan cache and the result of any earlier run, and rescan all directories. The cache is refreshed with the results.")
+    private boolean noCache = false;
+
+    @Option(names = { "-f", "--format" },
+            description = "Output format: ${COMPLETION-CANDIDATES}. Default: ${DEFAULT-VALUE}.")
+    private OutputFormat format = OutputFormat.TEXT;
+
+    @Option(names = { "--watch" },
+            description = "Keep running and redraw the report at a fixed interval. After the initial scan, the counts are updated from file system events. "
+                + "The archived layers are sized through the layer index, and the staged layers are sized again on every redraw. On file systems that do not "
+                + "deliver events, such as NFS, a stage is only rescanned when its directory itself changes, so an item that grows after it was moved in is not "
+                + "seen to grow.")
+    private boolean watch = false;
+
+    @Option(names = { "--refresh-interval" },
+            description = "Seconds between redraws in watch mode. Default: ${DEFAULT-VALUE}.")
+    private int refreshInterval = 5;
+
+    @Option(names = { "--budget" },
+            description = "Maximum number of seconds to spend on scanning. Item counts are always exact, but sizes that cannot be computed in time are estimated "
+                + "from a sample of subdirectories; these are marked with ~ and given a 95% confidence range. Default: no limit.")
+    private int budget = 0;
+
+    @Option(names = { "--scan-timeout" },
+            description = "Maximum number of seconds that the scan of one directory tree may run, counted from when it starts. A directory that is not scanned in "
+                + "time, for instance because its file system has stopped responding, is reported as timed out, and so are the directories still waiting for the "
+                + "same base directory. Default: ${DEFAULT-VALUE}.")
+    private int scanTimeout = 300;
+
+    @Option(names = { "--scans-per-mount" },
+            description = "Maximum number of directory trees scanned at the same time below each configured base directory. This also limits --parallelism: "
+                + "if all stages are below one base directory, only this many trees are scanned at once, each spread over the scanner threads. "
+                + "Default: ${DEFAULT-VALUE}.")
+    private int scansPerMount = 2;
+
+    @Option(names = { "--max-age" },
+            description = "Print the result of a scan by another run of this command if it is at most this many seconds old, instead of scanning again. If another "
+                + "run is scanning the same pipeline, wait for its result. Requires a cacheDir. Default: ${DEFAULT-VALUE}, which means always scan.")
+    private int maxAge = 0;
+
+    // Set if --budget is given
+    private Instant deadline;
+
+    // Set if a line or batch of the report could not be scanned
+    private boolean degraded;
+
     @Override
     public Integer call() {
+        if (watch && allPipelines) {
+            throw new IllegalArgumentException("--watch cannot be combined with --all-pipelines");
+        }
+        if (watch && format != OutputFormat.TEXT) {
+            throw new IllegalArgumentException("--watch only supports text output");
+        }
+        if (budget > 0 && (watch || allPipelines)) {
+            throw new IllegalArgumentException("--budget cannot be combined with --watch or --all-pipelines");
+        }
+        try {
+            if (allPipelines) {
+                return callAllPipelines();
+            }
+            return callPipeline();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Integer callPipeline() throws IOException {
         String pipelineName = context.getPipeline();
         if (pipelineName == null) {
             throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
         }
+        PipelineLayout layout = PipelineLayout.of(pipelineName, context.getConfig());
+        if (watch) {
+            return watch(layout);
+        }
+        var cacheDir = context.getConfig().getDirectories().getCacheDir();
+        if (cacheDir == null || maxAge <= 0 || noCache) {
+            // Sharing only helps runs that are willing to use a result of another run; the others must not queue behind each other
+            return scanPipeline(layout, null, null);
+        }
+        Path snapshotFile = StatusSnapshot.file(cacheDir, pipelineName);
+        var snapshot = freshSnapshot(layout, snapshotFile);
+        if (snapshot.isPresent()) {
+            return reportSnapshot(layout, snapshot.get());
+        }
+        Runnable waiting = () -> System.err.printf("Waiting for the status scan of %s that another run has started...%n", pipelineName);
+        StatusSnapshot.ScanLock lock;
+        try {
+            lock = StatusSnapshot.lock(snapshotFile, waiting);
+        }
+        catch (IOException e) {
+            // For instance when the cache directory is shared by users who cannot write each other's files
+            log.warn("Could not take the scan lock of {}; scanning without sharing the result: {}", snapshotFile, e.toString());
+            return scanPipeline(layout, null, null);
+        }
+        try (lock) {
+            // The run that held the lock has probably just published
+            snapshot = freshSnapshot(layout, snapshotFile);
+            if (snapshot.isEmpty()) {
+                return scanPipeline(layout, snapshotFile, lock);
+            }
+        }
+        // Not printed under the lock, so that a slow reader of the output does not hold up other runs
+        return reportSnapshot(layout, snapshot.get());
+    }
 
-        TransferToVaultConfig config = context.getConfig().getPipelines().get(pipelineName);
-        if (config == null) {
-            throw new IllegalArgumentException("No configuration found for pipeline: " + pipelineName);
+    /**
+     * Scans the pipeline and prints the report. If the result is to be published, the whole scan is finished and published before anything is printed, and the
+     * scan lock is released before printing, so that a slow reader of the output does not hold up other runs.
+     *
+     * @param layout       the pipeline
+     * @param snapshotFile the file to publish the result to, or <code>null</code> for none
+     * @param lock         the scan lock of <code>snapshotFile</code>, or <code>null</code> if it is not published
+     * @return the exit code
+     */
+    private Integer scanPipeline(PipelineLayout layout, Path snapshotFile, StatusSnapshot.ScanLock lock) throws IOException {
+        if (budget > 0) {
+            deadline = Instant.now().plusSeconds(budget);
         }
+        ScanCache cache = loadCache();
+        try (var scanner = new DirectoryScanner(parallelism, cache); var writer = format.createStatusReportWriter(System.out, context.getObjectMapper())) {
+            var collector = createCollector(scanner);
+            // Start scanning all lines at once, then print them in order as they become available
+            Map<String, CompletableFuture<DirectoryStats>> lines = new HashMap<>();
+            for (var stage : layout.getTransferStages()) {
+                lines.put(stage.getKey(), collector.scan(stage.getDir(), deadline));
+            }
+            for (var stage : layout.getDataVaultStages()) {
+                lines.put(stage.getKey(), stage.getKey().equals(PipelineLayout.ARCHIVED_LAYERS)
+                    ? collector.archivedLayersAsync(layout, deadline)
+                    : collector.scan(stage.getDir(), deadline));
+            }
+            var batches = collector.scanBatches(layout, deadline);
 
-        var directories = context.getConfig().getDirectories();
-        Path collectInbox = (config.isVaas() && directories.getVaasCollectInboxes() != null ?
-            directories.getVaasCollectInboxes() : directories.getCollectInboxes()).resolve(pipelineName);
-        Path workingSpaceBaseDir = directories.getWorkingSpaceBaseDir().resolve(pipelineName);
-        Path dataVaultBatchRoot = directories.getDataVaultBatchRoot().resolve(pipelineName);
-        Path dataVaultRoot = directories.getDataVaultRoot().resolve(pipelineName);
-
-        System.out.printf("status %s at %s%n", pipelineName, ZonedDateTime.now().format(DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss zzz yyyy")));
-        System.out.println();
-        System.out.println("* dd-transfer-to-vault:");
-        statusLine(collectInbox, "transfer inbox", "*.zip");
-        statusLine(workingSpaceBaseDir.resolve("extract-metadata/inbox"), "extract metadata inbox");
-        statusLine(workingSpaceBaseDir.resolve("extract-metadata/outbox/failed"), "extract metadata failed", "*.zip");
-        statusLine(workingSpaceBaseDir.resolve("extract-metadata/outbox/rejected"), "extract metadata rejected", "*.zip");
-        statusLine(workingSpaceBaseDir.resolve("send-to-vault/inbox"), "send to vault inbox");
-        statusLine(workingSpaceBaseDir.resolve("send-to-vault/outbox/processed"), "send to vault processed", "*.zip");
-        statusLine(workingSpaceBaseDir.resolve("send-to-vault/outbox/failed"), "send to vault failed", "*.zip");
-        statusLine(workingSpaceBaseDir.resolve("send-to-vault/work"), "send to vault work");
-        System.out.println();
-
-        System.out.println("* dd-data-vault:");
-        statusLine(dataVaultRoot.resolve("staging"), "staged layers");
-        statusLine(dataVaultRoot.resolve("archive"), "archived layers");
-
-        Path ddDataVaultInbox = dataVaultBatchRoot.resolve("inbox");
-        statusLine(ddDataVaultInbox, "data vault inbox batches");
-
-        printDataVaultBatches(dataVaultBatchRoot);
-
-        System.out.println("---");
-        System.out.println();
-
-        return 0;
-    }
-
-    private void statusLine(Path dir, String label) {
-        statusLine(dir, label, null);
-    }
-
-    private void statusLine(Path dir, String label, String filter) {
-        long count = 0;
-        String size = "0 bytes";
-        if (Files.exists(dir)) {
-            try (Stream<Path> stream = Files.list(dir)) {
-                Stream<Path> filteredStream = stream;
-                if (filter != null && filter.equals("*.zip")) {
-                    filteredStream = filteredStream.filter(p -> p.getFileName().toString().endsWith(".zip"));
-                }
-                count = filteredStream.count();
-                size = FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(dir.toFile()));
+            var timestamp = ZonedDateTime.now();
+            if (lock != null) {
+                publish(snapshotFile, timestamp.toInstant(), layout, lines, batches);
+                lock.close();
             }
-            catch (IOException | IllegalArgumentException e) {
-                // Ignore or handle
+            var snapshot = writeReport(writer, layout, timestamp, stage -> lines.get(stage.getKey()).join(), batches);
+            appendToHistory(layout, snapshot);
+
+            if (cache != null) {
+                writeCacheSummary(writer, cache, collector);
             }
         }
-        System.out.printf("%-30s: %d items (%s)%n", label, count, size);
-    }
-
-    private void printDataVaultBatches(Path dataVaultBatchRoot) {
-        Path inboxBase = dataVaultBatchRoot.resolve("inbox");
-        Path outboxBase = dataVaultBatchRoot.resolve("outbox");
-
-        System.out.printf("%-20s %6s %-12s %10s %-12s %7s %-11s%n", "BATCH", "INBOX", "(SIZE)", "PROCESSED", "(SIZE)", "FAILED", "(SIZE)");
-
-        if (Files.exists(inboxBase)) {
-            try (Stream<Path> stream = Files.list(inboxBase)) {
-                stream.filter(Files::isDirectory)
-                    .sorted(Comparator.comparing(Path::getFileName))
-                    .forEach(batch -> {
-                        String batchName = batch.getFileName().toString();
-                        long inboxCount = 0;
-                        String inboxSize = "0 bytes";
-                        try (Stream<Path> s = Files.list(batch)) {
-                            inboxCount = s.filter(Files::isDirectory).count();
-                            inboxSize = FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(batch.toFile()));
-                        }
-                        catch (IOException | IllegalArgumentException ignored) {
-                        }
-
-                        Path processedDir = outboxBase.resolve(batchName).resolve("processed");
-                        Path failedDir = outboxBase.resolve(batchName).resolve("failed");
-
-                        long processedCount = 0;
-                        String processedSize = "0 bytes";
-                        if (Files.exists(processedDir)) {
-                            try (Stream<Path> s = Files.list(processedDir)) {
-                                processedCount = s.filter(Files::isDirectory).count();
-                                processedSize = FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(processedDir.toFile()));
-                            }
-                            catch (IOException | IllegalArgumentException ignored) {
-                            }
-                        }
-
-                        long failedCount = 0;
-                        String failedSize = "0 bytes";
-                        if (Files.exists(failedDir)) {
-                            try (Stream<Path> s = Files.list(failedDir)) {
-                                failedCount = s.filter(Files::isDirectory).count();
-                                failedSize = FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(failedDir.toFile()));
-                            }
-                            catch (IOException | IllegalArgumentException ignored) {
-                            }
-                        }
-
-                        if (allBatches || inboxCount > 0 || failedCount > 0) {
-                            System.out.printf("%-20s %6d (%-11s %10d (%-11s %7d (%s%n",
-                                batchName,
-                                inboxCount, inboxSize + ")",
-                                processedCount, processedSize + ")",
-                                failedCount, failedSize + ")");
-                        }
-                    });
+
+        return degraded ? EXIT_DEGRADED : 0;
+    }
+
+    private Optional<StatusSnapshot.Content> freshSnapshot(PipelineLayout layout, Path snapshotFile) {
+        if (maxAge <= 0 || noCache) {
+            return Optional.empty();
+        }
+        return StatusSnapshot.read(snapshotFile)
+            .filter(content -> Duration.between(content.getTimestamp(), Instant.now()).getSeconds() < maxAge)
+            // Written before a stage was added
+            .filter(content -> Stream.concat(layout.getTransferStages().stream(), layout.getDataVaultStages().stream())
+                .allMatch(stage -> content.getStages().containsKey(stage.getKey())));
+    }
+
+    private Integer reportSnapshot(PipelineLayout layout, StatusSnapshot.Content content) throws IOException {
+        System.err.printf("Using the scan of %s by another run, %ds old (snapshot %d)%n", layout.getName(),
+            Duration.between(content.getTimestamp(), Instant.now()).getSeconds(), content.getSequence());
+        try (var writer = format.createStatusReportWriter(System.out, context.getObjectMapper())) {
+            var batches = content.getBatches().stream()
+                .map(CompletableFuture::completedFuture)
+                .collect(Collectors.toList());
+            writeReport(writer, layout, content.getTimestamp().atZone(ZoneId.systemDefault()), stage -> content.getStages().get(stage.getKey()), batches);
+        }
+        return degraded ? EXIT_DEGRADED : 0;
+    }
+
+    private void publish(Path snapshotFile, Instant timestamp, PipelineLayout layout, Map<String, CompletableFuture<DirectoryStats>> lines,
+        List<CompletableFuture<BatchStats>> batches) {
+        Map<String, DirectoryStats> stages = new LinkedHashMap<>();
+        Stream.concat(layout.getTransferStages().stream(), layout.getDataVaultStages().stream())
+            .forEach(stage -> stages.put(stage.getKey(), lines.get(stage.getKey()).join()));
+        var batchStats = batches.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        // Other runs expect exact sizes; timed-out and failed scans are shared, so that waiting runs do not all hit the same stalled mount
+        if (stages.values().stream().anyMatch(DirectoryStats::isEstimated) || batchStats.stream().anyMatch(TransferStatus::isEstimated)) {
+            log.debug("Not publishing the status of {}, because some sizes are estimates", layout.getName());
+            return;
+        }
+        try {
+            StatusSnapshot.publish(snapshotFile, timestamp, stages, batchStats);
+        }
+        catch (IOException e) {
+            log.warn("Could not publish the status snapshot of {}", layout.getName(), e);
+        }
+    }
+
+    private static boolean isEstimated(BatchStats batch) {
+        return batch.getInbox().isEstimated() || batch.getProcessed().isEstimated() || batch.getFailed().isEstimated();
+    }
+
+    private Integer callAllPipelines() throws IOException {
+        var config = context.getConfig();
+        List<PipelineLayout> layouts = config.getPipelines().keySet().stream()
+            .sorted()
+            .map(name -> PipelineLayout.of(name, config))
+            .collect(Collectors.toList());
+
+        ScanCache cache = loadCache();
+        try (var scanner = new DirectoryScanner(parallelism, cache); var writer = format.createStatusReportWriter(System.out, context.getObjectMapper())) {
+            var collector = createCollector(scanner);
+            List<PipelineStatus> statuses = collector.collect(layouts);
+
+            for (var status : statuses) {
+                var batches = status.getBatches().stream()
+                    .map(CompletableFuture::completedFuture)
+                    .collect(Collectors.toList());
+                var snapshot = writeReport(writer, status.getLayout(), ZonedDateTime.now(), stage -> status.getStats(stage.getKey()), batches);
+                appendToHistory(status.getLayout(), snapshot);
             }
-            catch (IOException ignored) {
+
+            writeSummary(writer, statuses);
+
+            if (cache != null) {
+                writeCacheSummary(writer, cache, collector);
             }
         }
+        return degraded ? EXIT_DEGRADED : 0;
+    }
+
+    private StatusCollector createCollector(DirectoryScanner scanner) {
+        return new StatusCollector(context.getConfig().getDirectories(), scanner, !noCache, scanTimeout > 0 ? Duration.ofSeconds(scanTimeout) : null, scansPerMount);
+    }
+
+    private DirectoryWatcher createWatcher(DirectoryScanner scanner) throws IOException {
+        // Items are sized under the scan timeout and the limit of scans per mount, so that a stalled mount does not hang the watch
+        var collector = createCollector(scanner);
+        return new DirectoryWatcher(dir -> collector.scan(dir, null));
+    }
+
+    private Integer watch(PipelineLayout layout) {
+        try (var scanner = new DirectoryScanner(parallelism); var watcher = createWatcher(scanner); var writer = new TextStatusReportWriter(System.out)) {
+            var layerIndex = createLayerIndex(layout);
+            layout.getTransferStages().forEach(stage -> watcher.watch(stage.getDir()));
+            for (var stage : layout.getDataVaultStages()) {
+                if (stage.getKey().equals(PipelineLayout.STAGED_LAYERS)) {
+                    // Few layers, which are still being written; watching their subtrees would gain little
+                    watcher.watch(stage.getDir(), false);
+                }
+                else if (!stage.getKey().equals(PipelineLayout.ARCHIVED_LAYERS)) {
+                    watcher.watch(stage.getDir());
+                }
+            }
+
+            while (!Thread.currentThread().isInterrupted()) {
+                watcher.refresh();
+                // Archived layers never change, so only new ones are sized; watching them would take a watch per directory of the whole archive
+                var archived = archivedLayers(layerIndex, layout, scanner);
+                List<String> batchNames = watcher.getSubdirectories(layout.getDataVaultInbox());
+                for (var batch : batchNames) {
+                    watcher.watch(layout.getBatchInbox(batch));
+                    watcher.watch(layout.getBatchProcessedDir(batch));
+                    watcher.watch(layout.getBatchFailedDir(batch));
+                }
+                // Picks up the directories of new batches
+                watcher.refresh();
+
+                var batches = batchNames.stream()
+                    .map(batch -> CompletableFuture.completedFuture(new BatchStats(batch,
+                        watcher.getStats(layout.getBatchInbox(batch)),
+                        watcher.getStats(layout.getBatchProcessedDir(batch)),
+                        watcher.getStats(layout.getBatchFailedDir(batch)))))
+                    .collect(Collectors.toList());
+
+                // Clear the screen and move the cursor to the top
+                System.out.print("\033[H\033[2J");
+                writeReport(writer, layout, ZonedDateTime.now(),
+                    stage -> stage.getKey().equals(PipelineLayout.ARCHIVED_LAYERS) ? archived : watcher.getStats(stage.getDir()), batches);
+                System.out.printf("watching %d directories: %d events, %d directory scans; refreshing every %ds, press Ctrl-C to stop%n",
+                    watcher.getWatchedDirectories(), watcher.getEvents(), watcher.getRescans(), refreshInterval);
+                System.out.flush();
+
+                watcher.awaitEvents(Duration.ofSeconds(refreshInterval));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return degraded ? EXIT_DEGRADED : 0;
+    }
+
+    private LayerIndex createLayerIndex(PipelineLayout layout) {
+        var cacheDir = context.getConfig().getDirectories().getCacheDir();
+        if (cacheDir == null || noCache) {
+            return LayerIndex.inMemory();
+        }
+        try {
+            return LayerIndex.load(LayerIndex.file(cacheDir, layout.getName()));
+        }
+        catch (IOException e) {
+            log.warn("Could not load the layer index of {}; sizing the archived layers without it", layout.getName(), e);
+            return LayerIndex.inMemory();
+        }
+    }
+
+    private DirectoryStats archivedLayers(LayerIndex layerIndex, PipelineLayout layout, DirectoryScanner scanner) {
+        try {
+            return layerIndex.scan(layout.getArchiveDir(), scanner);
+        }
+        catch (IOException | CompletionException e) {
+            log.warn("Could not scan archived layers of {}", layout.getName(), e);
+            return DirectoryStats.ERROR;
+        }
+    }
+
+    private StatusHistory.Snapshot writeReport(StatusReportWriter writer, PipelineLayout layout, ZonedDateTime timestamp,
+        Function<PipelineLayout.Stage, DirectoryStats> stats, List<CompletableFuture<BatchStats>> batches) throws IOException {
+        // A stage that could not be scanned has no count, and then the snapshot is left out of the history rather than recording a false zero
+        Map<String, StatusHistory.StageCount> counts = new LinkedHashMap<>();
+        writer.startPipeline(layout.getName(), timestamp);
+        writer.startSection("dd-transfer-to-vault");
+        for (var stage : layout.getTransferStages()) {
+            counts.put(stage.getKey(), line(writer, stage, stats.apply(stage)));
+        }
+
+        writer.startSection("dd-data-vault");
+        for (var stage : layout.getDataVaultStages()) {
+            counts.put(stage.getKey(), line(writer, stage, stats.apply(stage)));
+        }
+
+        writer.startBatches();
+        // All batches are being scanned concurrently; write each row as soon as it and the rows before it are done
+        for (var future : batches) {
+            BatchStats batch = future.join();
+            boolean batchDegraded = batch.getInbox().isDegraded() || batch.getProcessed().isDegraded() || batch.getFailed().isDegraded();
+            degraded |= batchDegraded;
+            if (allBatches || batchDegraded || batch.getInbox().getDirectories() > 0 || batch.getFailed().getDirectories() > 0) {
+                writer.batch(batch);
+            }
+        }
+        writer.endPipeline();
+        if (counts.containsValue(null)) {
+            return null;
+        }
+        return new StatusHistory.Snapshot(timestamp.toInstant(), counts);
+    }
+
+    private StatusHistory.StageCount line(StatusReportWriter writer, PipelineLayout.Stage stage, DirectoryStats stats) throws IOException {
+        writer.line(stage.getKey(), stage.getLabel(), stats, stage.isZipsOnly());
+        if (stats.isDegraded()) {
+            degraded = true;
+            return null;
+        }
+        return new StatusHistory.StageCount(stage.isZipsOnly() ? stats.getZips() : stats.getEntries(), stats.getBytes());
+    }
+
+    private void appendToHistory(PipelineLayout layout, StatusHistory.Snapshot snapshot) {
+        var cacheDir = context.getConfig().getDirectories().getCacheDir();
+        if (cacheDir == null) {
+            return;
+        }
+        if (snapshot == null) {
+            log.info("Not adding to the status history of {}, because not all stages could be scanned", layout.getName());
+            return;
+        }
+        try {
+            new StatusHistory(StatusHistory.file(cacheDir, layout.getName())).append(snapshot);
+        }
+        catch (IOException e) {
+            log.warn("Could not append to status history of {}", layout.getName(), e);
+        }
+    }
+
+    private ScanCache loadCache() {
+        var directories = context.getConfig().getDirectories();
+        if (directories.getCacheDir() == null) {
+            return null;
+        }
+        Path cacheFile = directories.getCacheDir().resolve("scan-cache.bin");
+        return noCache ? ScanCache.empty(cacheFile) : ScanCache.load(cacheFile);
+    }
+
+    private void writeCacheSummary(StatusReportWriter writer, ScanCache cache, StatusCollector collector) throws IOException {
+        writer.scanCache(cache.getHits(), cache.getMisses());
+        var layerIndexes = collector.getLayerIndexes();
+        if (!layerIndexes.isEmpty()) {
+            writer.layerIndex(layerIndexes.stream().mapToInt(LayerIndex::getKnownLayers).sum(), layerIndexes.stream().mapToInt(LayerIndex::getNewLayers).sum());
+        }
+        try {
+            cache.save();
+        }
+        catch (IOException e) {
+            log.warn("Could not save scan cache", e);
+        }
+    }
+
+    private void writeSummary(StatusReportWriter writer, List<PipelineStatus> statuses) throws IOException {
+        List<SummaryRow> rows = new ArrayList<>();
+        var total = SummaryRow.empty("TOTAL");
+        for (var status : statuses) {
+            var row = SummaryRow.of(status);
+            rows.add(row);
+            total = total.plus(row);
+        }
+        writer.summary(rows, total);
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.history.FlowTrend;
+import nl.knaw.dans.transfercli.history.StatusHistory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Command(name = "trend",
+         mixinStandardHelpOptions = true,
+         description = "Reports the inflow and outflow per stage of a pipeline, and when its inboxes will be empty, based on the history recorded by the status command.")
+@RequiredArgsConstructor
+public class Trend implements Callable<Integer> {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final Context context;
+
+    @Option(names = { "--hours" },
+            description = "Number of hours of history to use. Default: ${DEFAULT-VALUE}.")
+    private int hours = 24;
+
+    @Override
+    public Integer call() {
+        String pipelineName = context.getPipeline();
+        if (pipelineName == null) {
+            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        }
+        var layout = PipelineLayout.of(pipelineName, context.getConfig());
+        var cacheDir = context.getConfig().getDirectories().getCacheDir();
+        if (cacheDir == null) {
+            throw new IllegalArgumentException("No cacheDir configured; the status history is kept there");
+        }
+
+        var trend = new FlowTrend();
+        try {
+            new StatusHistory(StatusHistory.file(cacheDir, pipelineName)).read(Instant.now().minus(Duration.ofHours(hours)), trend::accept);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        var trends = trend.getTrends();
+        if (trends.isEmpty()) {
+            System.out.printf("Not enough history for %s in the last %d hours: %d snapshot(s). Run status at least twice.%n", pipelineName, hours, trend.getSnapshots());
+            return 1;
+        }
+
+        Map<String, String> labels = Stream.concat(layout.getTransferStages().stream(), layout.getDataVaultStages().stream())
+            .collect(Collectors.toMap(PipelineLayout.Stage::getKey, PipelineLayout.Stage::getLabel));
+        System.out.printf("trend %s from %s to %s (%d snapshots)%n", pipelineName, TIME_FORMAT.format(trend.getFrom()), TIME_FORMAT.format(trend.getTo()),
+            trend.getSnapshots());
+        System.out.println();
+        System.out.printf("%-30s %8s %10s %10s%n", "STAGE", "NOW", "IN/HOUR", "OUT/HOUR");
+        for (var stage : trends) {
+            System.out.printf("%-30s %8d %10.1f %10.1f%n", labels.get(stage.getStage()), stage.getCurrent(), stage.getInflowPerHour(), stage.getOutflowPerHour());
+        }
+        System.out.println();
+        for (var stage : trends) {
+            if (stage.getStage().equals(PipelineLayout.TRANSFER_INBOX) || stage.getStage().equals(PipelineLayout.SEND_TO_VAULT_INBOX)) {
+                System.out.printf("%-30s: %s%n", labels.get(stage.getStage()), stage.getTimeToEmpty()
+                    .map(eta -> eta.isZero() ? "empty" : "empty in about " + formatDuration(eta))
+                    .orElse("not draining"));
+            }
+        }
+        return 0;
+    }
+
+    private static String formatDuration(Duration duration) {
+        if (duration.toDays() > 0) {
+            return String.format("%dd %dh", duration.toDays(), duration.toHoursPart());
+        }
+        if (duration.toHours() > 0) {
+            return String.format("%dh %dm", duration.toHours(), duration.toMinutesPart());
+        }
+        return String.format("%dm", Math.max(1, duration.toMinutes()));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.report.OutputFormat;
+import nl.knaw.dans.transfercli.verify.ChecksumVerifier;
+import org.apache.commons.io.FileUtils;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@Command(name = "verify",
+         mixinStandardHelpOptions = true,
+         description = "Verifies the files of a processed batch or a staged layer against the checksums in the bag manifests.")
+@RequiredArgsConstructor
+public class Verify implements Callable<Integer> {
+    private final Context context;
+
+    @Option(names = { "--batch" },
+            description = "Verify the processed output of this data vault batch.")
+    private String batch;
+
+    @Option(names = { "--layer" },
+            description = "Verify this staged layer.")
+    private String layer;
+
+    @Option(names = { "--parallelism" },
+            description = "Maximum number of files to read concurrently. Default: ${DEFAULT-VALUE}.")
+    private int parallelism = 4;
+
+    @Option(names = { "--max-rate" },
+            description = "Maximum combined read rate in MB/s; 0 means no limit. Default: ${DEFAULT-VALUE}.")
+    private int maxRate = 0;
+
+    @Option(names = { "-f", "--format" },
+            description = "Output format: ${COMPLETION-CANDIDATES}. Default: ${DEFAULT-VALUE}.")
+    private OutputFormat format = OutputFormat.TEXT;
+
+    @Override
+    public Integer call() {
+        String pipelineName = context.getPipeline();
+        if (pipelineName == null) {
+            throw new IllegalArgumentException("No pipeline specified. Use -p or --pipeline option.");
+        }
+        if ((batch == null) == (layer == null)) {
+            throw new IllegalArgumentException("Specify exactly one of --batch or --layer");
+        }
+        if (maxRate < 0) {
+            throw new IllegalArgumentException("--max-rate must not be negative");
+        }
+        var layout = PipelineLayout.of(pipelineName, context.getConfig());
+        Path target = batch != null ? layout.getBatchProcessedDir(batch) : layout.getStagingDir().resolve(layer);
+        if (!Files.isDirectory(target)) {
+            throw new IllegalArgumentException(batch != null ?
+                "No processed output found for batch " + batch + " in pipeline " + pipelineName :
+                "No staged layer " + layer + " found in pipeline " + pipelineName);
+        }
+
+        try (var verifier = new ChecksumVerifier(parallelism, maxRate * 1_000_000L)) {
+            var report = verifier.verify(target);
+            switch (format) {
+                case JSON:
+                    context.getObjectMapper().writerWithDefaultPrettyPrinter().writeValue(System.out, report);
+                    System.out.println();
+                    break;
+                case NDJSON:
+                    writeNdjson(report);
+                    break;
+                default:
+                    writeText(report);
+            }
+            System.out.flush();
+            if (report.getBags() == 0) {
+                System.err.println("No bag manifests found in " + target);
+            }
+            return report.isValid() ? 0 : 1;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private void writeText(ChecksumVerifier.Report report) {
+        for (var problem : report.getProblems()) {
+            if (problem.getType() == ChecksumVerifier.ProblemType.MISMATCH) {
+                System.out.printf("%-10s %s (%s: expected %s, found %s)%n", problem.getType(), problem.getFile(), problem.getAlgorithm(), problem.getExpected(),
+                    problem.getActual());
+            }
+            else {
+                System.out.printf("%-10s %s (%s)%n", problem.getType(), problem.getFile(), problem.getMessage());
+            }
+        }
+        System.out.printf("%s: %d bags, %d files, %s verified in %.1fs (%.2f MB/s); %d problems%n", report.getTarget(), report.getBags(), report.getFiles(),
+            FileUtils.byteCountToDisplaySize(report.getBytes()), report.getElapsedMillis() / 1000.0, report.getMegabytesPerSecond(), report.getProblems().size());
+    }
+
+    private void writeNdjson(ChecksumVerifier.Report report) throws IOException {
+        try (JsonGenerator generator = context.getObjectMapper().getFactory().createGenerator(System.out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (var problem : report.getProblems()) {
+                generator.writeStartObject();
+                generator.writeStringField("type", "problem");
+                generator.writeStringField("problem", problem.getType().name());
+                generator.writeStringField("file", problem.getFile());
+                if (problem.getAlgorithm() != null) {
+                    generator.writeStringField("algorithm", problem.getAlgorithm());
+                    generator.writeStringField("expected", problem.getExpected());
+                    generator.writeStringField("actual", problem.getActual());
+                }
+                if (problem.getMessage() != null) {
+                    generator.writeStringField("message", problem.getMessage());
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+            generator.writeStartObject();
+            generator.writeStringField("type", "summary");
+            generator.writeStringField("target", report.getTarget());
+            generator.writeNumberField("bags", report.getBags());
+            generator.writeNumberField("files", report.getFiles());
+            generator.writeNumberField("bytes", report.getBytes());
+            generator.writeNumberField("elapsedMillis", report.getElapsedMillis());
+            generator.writeNumberField("megabytesPerSecond", report.getMegabytesPerSecond());
+            generator.writeNumberField("problems", report.getProblems().size());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+}
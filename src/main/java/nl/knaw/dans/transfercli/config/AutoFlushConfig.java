@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.config;
+
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
+import lombok.Data;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Thresholds for the <code>auto-flush</code> command. A pipeline is flushed as soon as one of the configured thresholds is reached; thresholds that are not set are
+ * not checked.
+ */
+@Data
+public class AutoFlushConfig {
+    @Min(1)
+    private Integer maxItems;
+
+    private DataSize maxBytes;
+
+    private Duration maxAge;
+
+    @NotNull
+    private Duration cooldown = Duration.minutes(5);
+}
@@ -35,4 +35,6 @@ public class DirectoriesConfig {
 
     @NotNull
     private Path dataVaultRoot;
+
+    private Path cacheDir;
 }
@@ -18,6 +18,7 @@ package nl.knaw.dans.transfercli.config;
 import io.dropwizard.client.JerseyClientConfiguration;
 import lombok.Data;
 
+import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.net.URI;
 
@@ -30,4 +31,10 @@ public class TransferToVaultConfig {
     private JerseyClientConfiguration httpClient;
 
     private boolean isVaas;
+
+    @Valid
+    private AutoFlushConfig autoFlush;
+
+    @Valid
+    private CleanupConfig cleanup;
 }
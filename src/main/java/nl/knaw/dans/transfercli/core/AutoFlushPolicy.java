@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.core;
+
+import lombok.Value;
+import nl.knaw.dans.transfercli.config.AutoFlushConfig;
+import nl.knaw.dans.transfercli.latency.StageLatency;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Decides when the work directory of a pipeline should be flushed to the data vault, based on the thresholds of an {@link AutoFlushConfig}. After a flush, no new
+ * flush is started until the cooldown has passed, whatever the state of the work directory.
+ */
+public class AutoFlushPolicy {
+
+    /**
+     * The contents of a work directory.
+     */
+    @Value
+    public static class WorkState {
+        public static final WorkState EMPTY = new WorkState(0, 0, null);
+
+        long items;
+        long bytes;
+        Instant oldest;
+
+        /**
+         * Reads the state of a work directory: the number of items directly in it, their total size and the time the oldest one entered it. Items are moved into
+         * the work directory, which keeps their modification time, so the time of entry is taken from the status change time where available; see
+         * {@link StageLatency#entered(Path)}.
+         *
+         * @param workDir the work directory
+         * @param scanner the scanner used to compute the total size
+         * @return the state
+         * @throws IOException if the directory could not be read
+         */
+        public static WorkState of(Path workDir, DirectoryScanner scanner) throws IOException {
+            Instant oldest = null;
+            long items = 0;
+            try (Stream<Path> stream = Files.list(workDir)) {
+                for (var item : (Iterable<Path>) stream::iterator) {
+                    items++;
+                    try {
+                        var entered = StageLatency.entered(item);
+                        if (oldest == null || entered.isBefore(oldest)) {
+                            oldest = entered;
+                        }
+                    }
+                    catch (NoSuchFileException e) {
+                        // Moved away while listing
+                        items--;
+                    }
+                }
+            }
+            catch (NoSuchFileException e) {
+                return EMPTY;
+            }
+            if (items == 0) {
+                return EMPTY;
+            }
+            return new WorkState(items, scanner.scan(workDir).getBytes(), oldest);
+        }
+    }
+
+    private final AutoFlushConfig config;
+    private Instant lastFlush;
+
+    public AutoFlushPolicy(AutoFlushConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Checks the state of the work directory against the thresholds.
+     *
+     * @param state the state of the work directory
+     * @param now   the current time
+     * @return the reason to flush, or empty if no flush is needed or the cooldown has not passed yet
+     */
+    public Optional<String> check(WorkState state, Instant now) {
+        if (state.getItems() == 0 || inCooldown(now)) {
+            return Optional.empty();
+        }
+        if (config.getMaxItems() != null && state.getItems() >= config.getMaxItems()) {
+            return Optional.of(String.format("%d items reached the threshold of %d", state.getItems(), config.getMaxItems()));
+        }
+        if (config.getMaxBytes() != null && state.getBytes() >= config.getMaxBytes().toBytes()) {
+            return Optional.of(String.format("%d bytes reached the threshold of %s", state.getBytes(), config.getMaxBytes()));
+        }
+        if (config.getMaxAge() != null && state.getOldest() != null) {
+            var age = Duration.between(state.getOldest(), now);
+            if (age.toMillis() >= config.getMaxAge().toMilliseconds()) {
+                return Optional.of(String.format("oldest item is %ds old, threshold is %s", age.toSeconds(), config.getMaxAge()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Records that a flush was attempted. Failed attempts count as well, so that an unavailable service is not called in a tight loop.
+     *
+     * @param now the time of the attempt
+     */
+    public void flushed(Instant now) {
+        lastFlush = now;
+    }
+
+    public boolean inCooldown(Instant now) {
+        return lastFlush != null && now.isBefore(lastFlush.plusMillis(config.getCooldown().toMilliseconds()));
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.core;
+
+import lombok.Value;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Inspects one data vault batch: the objects in its inbox, processed and failed directories and the versions of those objects. Every object version is scanned as a
+ * separate task, so that the versions are sized in parallel. Only a bounded number of versions are scanned at a time, and each result is added to the totals as soon as
+ * it comes in; only the largest object versions are kept, in a bounded priority queue. The memory used therefore does not depend on the size of the batch.
+ * <p>
+ * The subdirectories of an object directory are taken to be its versions. An object directory without subdirectories is reported as a single version without a name.
+ */
+public class BatchInspector {
+    public static final String INBOX = "inbox";
+    public static final String PROCESSED = "processed";
+    public static final String FAILED = "failed";
+
+    @Value
+    public static class StateSummary {
+        String state;
+        long objects;
+        long versions;
+        long files;
+        long bytes;
+    }
+
+    @Value
+    public static class ObjectVersionStats {
+        String state;
+        String object;
+        String version;
+        long files;
+        long bytes;
+    }
+
+    @Value
+    public static class BatchReport {
+        String pipeline;
+        String batch;
+        List<StateSummary> states;
+        List<ObjectVersionStats> largest;
+    }
+
+    private final DirectoryScanner scanner;
+    private final int top;
+    private final int maxInFlight;
+
+    /**
+     * The totals of the object versions sized so far. Results come in on the scanner threads, so every update is synchronized.
+     */
+    private class Totals {
+        private final Map<String, long[]> versionsFilesBytes = new LinkedHashMap<>();
+        // The smallest of the retained versions is at the head, so that it is the one to make room for a larger one
+        private final PriorityQueue<ObjectVersionStats> largest = new PriorityQueue<>(Comparator.comparingLong(ObjectVersionStats::getBytes));
+        private final Consumer<ObjectVersionStats> versionListener;
+
+        private Totals(Collection<String> states, Consumer<ObjectVersionStats> versionListener) {
+            states.forEach(state -> versionsFilesBytes.put(state, new long[3]));
+            this.versionListener = versionListener;
+        }
+
+        private synchronized void add(ObjectVersionStats version) {
+            var totals = versionsFilesBytes.get(version.getState());
+            totals[0]++;
+            totals[1] += version.getFiles();
+            totals[2] += version.getBytes();
+            if (top > 0) {
+                if (largest.size() < top) {
+                    largest.add(version);
+                }
+                else if (version.getBytes() > largest.peek().getBytes()) {
+                    largest.poll();
+                    largest.add(version);
+                }
+            }
+            versionListener.accept(version);
+        }
+    }
+
+    /**
+     * @param scanner the scanner to size the object versions with
+     * @param top     the number of largest object versions to report
+     */
+    public BatchInspector(DirectoryScanner scanner, int top) {
+        this(scanner, top, 64);
+    }
+
+    /**
+     * @param scanner     the scanner to size the object versions with
+     * @param top         the number of largest object versions to report
+     * @param maxInFlight the maximum number of object versions that are being sized at the same time
+     */
+    public BatchInspector(DirectoryScanner scanner, int top, int maxInFlight) {
+        this.scanner = scanner;
+        this.top = top;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Inspects a batch.
+     *
+     * @param layout the pipeline
+     * @param batch  the name of the batch
+     * @return the report
+     * @throws IOException              if the batch could not be read
+     * @throws InterruptedException     if interrupted while waiting for the object versions to be sized
+     * @throws IllegalArgumentException if the batch does not exist
+     */
+    public BatchReport inspect(PipelineLayout layout, String batch) throws IOException, InterruptedException {
+        return inspect(layout, batch, version -> {});
+    }
+
+    /**
+     * Inspects a batch, passing every object version to <code>versionListener</code> as soon as it has been sized. The versions come in no particular order, but the
+     * listener is never called concurrently.
+     *
+     * @param layout          the pipeline
+     * @param batch           the name of the batch
+     * @param versionListener receives every object version
+     * @return the report
+     * @throws IOException              if the batch could not be read
+     * @throws InterruptedException     if interrupted while waiting for the object versions to be sized
+     * @throws IllegalArgumentException if the batch does not exist
+     */
+    public BatchReport inspect(PipelineLayout layout, String batch, Consumer<ObjectVersionStats> versionListener) throws IOException, InterruptedException {
+        Map<String, Path> dirs = new LinkedHashMap<>();
+        dirs.put(INBOX, layout.getBatchInbox(batch));
+        dirs.put(PROCESSED, layout.getBatchProcessedDir(batch));
+        dirs.put(FAILED, layout.getBatchFailedDir(batch));
+        if (dirs.values().stream().noneMatch(Files::isDirectory)) {
+            throw new IllegalArgumentException("No batch found: " + batch + " in pipeline " + layout.getName());
+        }
+
+        var totals = new Totals(dirs.keySet(), versionListener);
+        var inFlight = new Semaphore(maxInFlight);
+        var error = new AtomicReference<Throwable>();
+        Map<String, Long> objectCounts = new LinkedHashMap<>();
+        try {
+            for (var e : dirs.entrySet()) {
+                if (error.get() != null) {
+                    break;
+                }
+                long objects = 0;
+                try (DirectoryStream<Path> objectDirs = Files.newDirectoryStream(e.getValue(), Files::isDirectory)) {
+                    for (Path object : objectDirs) {
+                        objects++;
+                        String objectName = object.getFileName().toString();
+                        var versionDirs = subdirectories(object);
+                        if (versionDirs.isEmpty()) {
+                            submit(inFlight, error, totals, e.getKey(), objectName, null, object);
+                        }
+                        for (Path version : versionDirs) {
+                            submit(inFlight, error, totals, e.getKey(), objectName, version.getFileName().toString(), version);
+                        }
+                        if (error.get() != null) {
+                            break;
+                        }
+                    }
+                }
+                catch (NoSuchFileException ex) {
+                    // A batch that has not been processed yet has no outbox, and a finished one may have no inbox
+                }
+                objectCounts.put(e.getKey(), objects);
+            }
+        }
+        finally {
+            // Wait for the scans that are still running, so that none of them outlives the report
+            inFlight.acquireUninterruptibly(maxInFlight);
+        }
+        rethrow(error.get());
+
+        List<StateSummary> states = new ArrayList<>();
+        for (var e : totals.versionsFilesBytes.entrySet()) {
+            long[] t = e.getValue();
+            states.add(new StateSummary(e.getKey(), objectCounts.getOrDefault(e.getKey(), 0L), t[0], t[1], t[2]));
+        }
+        List<ObjectVersionStats> sorted = new ArrayList<>(totals.largest);
+        sorted.sort(Comparator.comparingLong(ObjectVersionStats::getBytes).reversed());
+        return new BatchReport(layout.getName(), batch, states, sorted);
+    }
+
+    private void submit(Semaphore inFlight, AtomicReference<Throwable> error, Totals totals, String state, String object, String version, Path dir)
+        throws InterruptedException {
+        inFlight.acquire();
+        scanVersion(state, object, version, dir).whenComplete((stats, e) -> {
+            try {
+                if (e != null) {
+                    error.compareAndSet(null, e);
+                }
+                else {
+                    totals.add(stats);
+                }
+            }
+            catch (RuntimeException ex) {
+                error.compareAndSet(null, ex);
+            }
+            finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static void rethrow(Throwable error) throws IOException {
+        if (error == null) {
+            return;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new CompletionException(cause);
+    }
+
+    private CompletableFuture<ObjectVersionStats> scanVersion(String state, String object, String version, Path dir) {
+        return scanner.scanAsync(dir)
+            .thenApply(stats -> new ObjectVersionStats(state, object, version, stats.getFiles(), stats.getBytes()));
+    }
+
+    private static List<Path> subdirectories(Path dir) throws IOException {
+        List<Path> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            entries.forEach(subdirectories::add);
+        }
+        catch (NoSuchFileException e) {
+            // Moved on since the object was listed
+        }
+        subdirectories.sort(Comparator.comparing(Path::getFileName));
+        return subdirectories;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.core;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Follows the batch that a flush creates through the data vault: from <code>inbox/&lt;batch&gt;</code> to <code>outbox/&lt;batch&gt;/processed</code> and
+ * <code>outbox/&lt;batch&gt;/failed</code>. Call {@link #snapshot()} before submitting the flush, so that the new batch can be told apart from the existing ones.
+ * <p>
+ * Waiting for the batch to appear is bounded separately, because a flush may not create one at all: if the work directory was empty at the snapshot, there is
+ * nothing to wait for, and otherwise a batch that does not appear soon after the flush is not going to.
+ * <p>
+ * An empty batch inbox does not mean that the batch is done: the data vault may still be filling it. The batch only counts as processed once its inbox directory is
+ * gone, or has been empty without any items moving for {@link #SETTLE_INTERVAL}.
+ * <p>
+ * The directories are checked at adaptive intervals: the interval starts small, grows with each check that shows no progress and drops back to the minimum as soon as
+ * items move, so that a fast batch is noticed quickly and a slow one is not polled needlessly.
+ */
+@Slf4j
+public class BatchTracker {
+    private static final Duration MIN_INTERVAL = Duration.ofMillis(200);
+    private static final Duration MAX_INTERVAL = Duration.ofSeconds(10);
+    private static final double BACKOFF = 1.5;
+    static final Duration SETTLE_INTERVAL = Duration.ofSeconds(5);
+
+    public enum State {
+        COMPLETED,
+        /**
+         * The new batch was not processed before the timeout.
+         */
+        TIMED_OUT,
+        /**
+         * No new batch appeared, although there was work to flush.
+         */
+        NO_BATCH,
+        /**
+         * No new batch appeared, and the work directory was empty before the flush.
+         */
+        NOTHING_TO_FLUSH
+    }
+
+    @Value
+    public static class Result {
+        String pipeline;
+        String batch;
+        State state;
+        long processed;
+        long failed;
+        long bytes;
+        Duration elapsed;
+
+        public long getItems() {
+            return processed + failed;
+        }
+    }
+
+    private final PipelineLayout layout;
+    private final DirectoryScanner scanner;
+    private final Set<String> existingBatches = new HashSet<>();
+    private boolean workStaged = true;
+
+    public BatchTracker(PipelineLayout layout, DirectoryScanner scanner) {
+        this.layout = layout;
+        this.scanner = scanner;
+    }
+
+    /**
+     * Records the batches that exist before the flush, and whether there is work to flush.
+     *
+     * @throws IOException if the work directory or the batch directories could not be read
+     */
+    public void snapshot() throws IOException {
+        existingBatches.clear();
+        existingBatches.addAll(StatusCollector.listBatches(layout.getDataVaultInbox()));
+        existingBatches.addAll(StatusCollector.listBatches(layout.getDataVaultOutbox()));
+        workStaged = hasEntries(layout.getSendToVaultWorkDir());
+    }
+
+    /**
+     * Waits until the new batch has been processed, that is, until its inbox directory is gone or has settled while empty, and at least one item has arrived in its
+     * outbox, or until the timeout passes. If the work directory was empty at the snapshot, the batch directories are checked once; otherwise the new batch must appear within
+     * <code>appearTimeout</code>.
+     *
+     * @param appearTimeout the maximum time to wait for the new batch to appear, counted from the call
+     * @param timeout       the maximum time to wait, counted from the call
+     * @return the result; the batch is <code>null</code> if no new batch appeared
+     * @throws IOException          if the batch directories could not be scanned
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Result await(Duration appearTimeout, Duration timeout) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long appearDeadline = workStaged ? Math.min(deadline, start + appearTimeout.toNanos()) : start;
+        long interval = MIN_INTERVAL.toNanos();
+        String batch = null;
+        long lastItems = -1;
+        long lastInbox = -1;
+        long lastChange = start;
+        while (true) {
+            if (batch == null) {
+                batch = findNewBatch();
+            }
+            if (batch != null) {
+                var inboxDir = layout.getBatchInbox(batch);
+                var inbox = scanner.scan(inboxDir);
+                var processed = scanner.scan(layout.getBatchProcessedDir(batch));
+                var failed = scanner.scan(layout.getBatchFailedDir(batch));
+                long items = processed.getEntries() + failed.getEntries();
+                long now = System.nanoTime();
+                if (items != lastItems || inbox.getEntries() != lastInbox) {
+                    log.debug("Batch {} of {}: {} items done, {} to go", batch, layout.getName(), items, inbox.getEntries());
+                    lastItems = items;
+                    lastInbox = inbox.getEntries();
+                    lastChange = now;
+                    interval = MIN_INTERVAL.toNanos();
+                }
+                boolean settled = !Files.exists(inboxDir) || now - lastChange >= SETTLE_INTERVAL.toNanos();
+                if (inbox.getEntries() == 0 && items > 0 && settled) {
+                    return result(batch, State.COMPLETED, processed, failed, start);
+                }
+                if (now >= deadline) {
+                    return result(batch, State.TIMED_OUT, processed, failed, start);
+                }
+            }
+            else if (System.nanoTime() >= appearDeadline) {
+                return result(null, workStaged ? State.NO_BATCH : State.NOTHING_TO_FLUSH, DirectoryStats.EMPTY, DirectoryStats.EMPTY, start);
+            }
+            Thread.sleep(Math.max(1, Math.min(interval, (batch == null ? appearDeadline : deadline) - System.nanoTime()) / 1_000_000));
+            interval = Math.min(MAX_INTERVAL.toNanos(), (long) (interval * BACKOFF));
+        }
+    }
+
+    private String findNewBatch() throws IOException {
+        for (var dir : List.of(layout.getDataVaultInbox(), layout.getDataVaultOutbox())) {
+            for (var batch : StatusCollector.listBatches(dir)) {
+                if (!existingBatches.contains(batch)) {
+                    return batch;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasEntries(Path dir) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            return entries.iterator().hasNext();
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private Result result(String batch, State state, DirectoryStats processed, DirectoryStats failed, long start) {
+        return new Result(layout.getName(), batch, state, processed.getEntries(), failed.getEntries(), processed.getBytes() + failed.getBytes(),
+            Duration.ofNanos(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.core;
+
+import lombok.Value;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The directories of one pipeline, as derived from the configured base directories.
+ */
+@Value
+public class PipelineLayout {
+    public static final String TRANSFER_INBOX = "transfer-inbox";
+    public static final String EXTRACT_METADATA_INBOX = "extract-metadata-inbox";
+    public static final String EXTRACT_METADATA_FAILED = "extract-metadata-failed";
+    public static final String EXTRACT_METADATA_REJECTED = "extract-metadata-rejected";
+    public static final String SEND_TO_VAULT_INBOX = "send-to-vault-inbox";
+    public static final String SEND_TO_VAULT_PROCESSED = "send-to-vault-processed";
+    public static final String SEND_TO_VAULT_FAILED = "send-to-vault-failed";
+    public static final String SEND_TO_VAULT_WORK = "send-to-vault-work";
+    public static final String STAGED_LAYERS = "staged-layers";
+    public static final String ARCHIVED_LAYERS = "archived-layers";
+    public static final String INBOX_BATCHES = "inbox-batches";
+
+    /**
+     * A stage directory of dd-transfer-to-vault.
+     */
+    @Value
+    public static class Stage {
+        String key;
+        String label;
+        Path dir;
+        boolean zipsOnly;
+    }
+
+    String name;
+    Path collectInbox;
+    Path workingSpaceDir;
+    Path dataVaultBatchRoot;
+    Path dataVaultRoot;
+
+    public static PipelineLayout of(String name, DdTransferToVaultCliConfig config) {
+        TransferToVaultConfig pipelineConfig = config.getPipelines().get(name);
+        if (pipelineConfig == null) {
+            throw new IllegalArgumentException("No configuration found for pipeline: " + name);
+        }
+        var directories = config.getDirectories();
+        Path collectInbox = (pipelineConfig.isVaas() && directories.getVaasCollectInboxes() != null ?
+            directories.getVaasCollectInboxes() : directories.getCollectInboxes()).resolve(name);
+        return new PipelineLayout(name,
+            collectInbox,
+            directories.getWorkingSpaceBaseDir().resolve(name),
+            directories.getDataVaultBatchRoot().resolve(name),
+            directories.getDataVaultRoot().resolve(name));
+    }
+
+    /**
+     * @return the stage directories of dd-transfer-to-vault, in the order in which items pass through them
+     */
+    public List<Stage> getTransferStages() {
+        return List.of(
+            new Stage(TRANSFER_INBOX, "transfer inbox", collectInbox, true),
+            new Stage(EXTRACT_METADATA_INBOX, "extract metadata inbox", getExtractMetadataInbox(), false),
+            new Stage(EXTRACT_METADATA_FAILED, "extract metadata failed", getExtractMetadataFailedDir(), true),
+            new Stage(EXTRACT_METADATA_REJECTED, "extract metadata rejected", workingSpaceDir.resolve("extract-metadata/outbox/rejected"), true),
+            new Stage(SEND_TO_VAULT_INBOX, "send to vault inbox", getSendToVaultInbox(), false),
+            new Stage(SEND_TO_VAULT_PROCESSED, "send to vault processed", getSendToVaultProcessedDir(), true),
+            new Stage(SEND_TO_VAULT_FAILED, "send to vault failed", getSendToVaultFailedDir(), true),
+            new Stage(SEND_TO_VAULT_WORK, "send to vault work", getSendToVaultWorkDir(), false));
+    }
+
+    /**
+     * @return the directories of dd-data-vault that are part of the status report
+     */
+    public List<Stage> getDataVaultStages() {
+        return List.of(
+            new Stage(STAGED_LAYERS, "staged layers", getStagingDir(), false),
+            new Stage(ARCHIVED_LAYERS, "archived layers", getArchiveDir(), false),
+            new Stage(INBOX_BATCHES, "data vault inbox batches", getDataVaultInbox(), false));
+    }
+
+    public Path getExtractMetadataInbox() {
+        return workingSpaceDir.resolve("extract-metadata/inbox");
+    }
+
+    public Path getExtractMetadataFailedDir() {
+        return workingSpaceDir.resolve("extract-metadata/outbox/failed");
+    }
+
+    public Path getSendToVaultInbox() {
+        return workingSpaceDir.resolve("send-to-vault/inbox");
+    }
+
+    public Path getSendToVaultProcessedDir() {
+        return workingSpaceDir.resolve("send-to-vault/outbox/processed");
+    }
+
+    public Path getSendToVaultFailedDir() {
+        return workingSpaceDir.resolve("send-to-vault/outbox/failed");
+    }
+
+    public Path getSendToVaultWorkDir() {
+        return workingSpaceDir.resolve("send-to-vault/work");
+    }
+
+    public Path getStagingDir() {
+        return dataVaultRoot.resolve("staging");
+    }
+
+    public Path getArchiveDir() {
+        return dataVaultRoot.resolve("archive");
+    }
+
+    public Path getDataVaultInbox() {
+        return dataVaultBatchRoot.resolve("inbox");
+    }
+
+    public Path getDataVaultOutbox() {
+        return dataVaultBatchRoot.resolve("outbox");
+    }
+
+    public Path getBatchInbox(String batch) {
+        return getDataVaultInbox().resolve(batch);
+    }
+
+    public Path getBatchProcessedDir(String batch) {
+        return getDataVaultOutbox().resolve(batch).resolve("processed");
+    }
+
+    public Path getBatchFailedDir(String batch) {
+        return getDataVaultOutbox().resolve(batch).resolve("failed");
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.core;
+
+import lombok.Value;
+import nl.knaw.dans.transfercli.scan.BatchStats;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The scanned state of one pipeline: the statistics of its stage directories, keyed by stage key, and of its data vault batches.
+ */
+@Value
+public class PipelineStatus {
+    PipelineLayout layout;
+    Map<String, DirectoryStats> stages;
+    List<BatchStats> batches;
+
+    public DirectoryStats getStats(String stageKey) {
+        return stages.getOrDefault(stageKey, DirectoryStats.EMPTY);
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.core;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.scan.BatchStats;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+import nl.knaw.dans.transfercli.scan.LayerIndex;
+import nl.knaw.dans.transfercli.scan.MountLimiter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects the status of several pipelines at once. Pipelines share their configured base directories, so the stage and batch directories of all pipelines are grouped
+ * by base directory and each base directory is covered by a single walk. The walks of the different base directories run concurrently.
+ * <p>
+ * If layer indexes are enabled, the archived layers are summarized with a {@link LayerIndex} per pipeline. The indexes are loaded once and kept, so that a long-running
+ * process only has to size new layers on each collection.
+ * <p>
+ * If a scan timeout is given, every scan is abandoned when it runs for longer than that, and its directories are reported as {@link DirectoryStats#TIMED_OUT} instead of
+ * being waited for. A directory that cannot be read is reported as {@link DirectoryStats#ERROR}. The configured base directories are treated as separate mounts, and
+ * only a limited number of scans run on each of them at the same time, so that a mount that stops responding cannot tie up all scanner threads.
+ * <p>
+ * A collection can also be given a deadline. Directories that have not been scanned by then are reported as {@link DirectoryStats#TIMED_OUT}, so that the collection
+ * as a whole returns in time; the scans themselves keep running in the background until they finish or reach the scan timeout.
+ */
+@Slf4j
+public class StatusCollector {
+    private final DirectoriesConfig directories;
+    private final DirectoryScanner scanner;
+    private final boolean useLayerIndex;
+    private final Map<String, LayerIndex> layerIndexes = new ConcurrentHashMap<>();
+    private final Duration scanTimeout;
+    private final MountLimiter mountLimiter;
+    // For file system calls that are not scans, such as listing batches; these must not wait for scanner threads, and must not keep the JVM alive if they hang
+    private final ExecutorService blockingExecutor = Executors.newCachedThreadPool(r -> {
+        var thread = new Thread(r, "status-collector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param directories   the configured base directories
+     * @param scanner       the scanner to use
+     * @param useLayerIndex whether to use layer indexes in the cache directory for the archived layers
+     */
+    public StatusCollector(DirectoriesConfig directories, DirectoryScanner scanner, boolean useLayerIndex) {
+        this(directories, scanner, useLayerIndex, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param directories   the configured base directories
+     * @param scanner       the scanner to use
+     * @param useLayerIndex whether to use layer indexes in the cache directory for the archived layers
+     * @param scanTimeout   the time after which a scan is abandoned, or <code>null</code> to wait for every scan
+     * @param scansPerMount the maximum number of scans to run at the same time below each configured base directory
+     */
+    public StatusCollector(DirectoriesConfig directories, DirectoryScanner scanner, boolean useLayerIndex, Duration scanTimeout, int scansPerMount) {
+        this.directories = directories;
+        this.scanner = scanner;
+        this.useLayerIndex = useLayerIndex && directories.getCacheDir() != null;
+        this.scanTimeout = scanTimeout;
+        this.mountLimiter = new MountLimiter(baseDirs(), scansPerMount);
+    }
+
+    /**
+     * Collects the status of the given pipelines.
+     *
+     * @param layouts the pipelines
+     * @return the status of each pipeline, in the order of <code>layouts</code>
+     */
+    public List<PipelineStatus> collect(List<PipelineLayout> layouts) {
+        return collect(layouts, null);
+    }
+
+    /**
+     * Collects the status of the given pipelines, giving up on directories that have not been scanned by the deadline.
+     *
+     * @param layouts  the pipelines
+     * @param deadline the time by which the collection must be complete, or <code>null</code> for none
+     * @return the status of each pipeline, in the order of <code>layouts</code>
+     */
+    public List<PipelineStatus> collect(List<PipelineLayout> layouts, Instant deadline) {
+        Map<String, List<String>> batchNames = new HashMap<>();
+        List<Path> targets = new ArrayList<>();
+        for (var layout : layouts) {
+            layout.getTransferStages().forEach(stage -> targets.add(stage.getDir()));
+            targets.add(layout.getStagingDir());
+            targets.add(layout.getDataVaultInbox());
+            var batches = batches(layout);
+            batchNames.put(layout.getName(), batches);
+            for (var batch : batches) {
+                targets.add(layout.getBatchInbox(batch));
+                targets.add(layout.getBatchProcessedDir(batch));
+                targets.add(layout.getBatchFailedDir(batch));
+            }
+        }
+
+        var walks = groupBySharedRoot(targets).entrySet().stream()
+            .map(e -> walk(e.getKey(), e.getValue(), deadline))
+            .collect(Collectors.toList());
+        Map<String, CompletableFuture<DirectoryStats>> archived = new HashMap<>();
+        // Not estimated at the deadline, but reported as timed out like the other directories; an estimate would be reported as an exact size
+        layouts.forEach(layout -> archived.put(layout.getName(), withDeadline(archivedLayersAsync(layout, null), deadline)
+            .exceptionally(e -> degraded(layout.getArchiveDir(), e))));
+        Map<Path, DirectoryStats> results = new HashMap<>();
+        walks.forEach(walk -> results.putAll(walk.join()));
+
+        List<PipelineStatus> statuses = new ArrayList<>();
+        for (var layout : layouts) {
+            Map<String, DirectoryStats> stages = new LinkedHashMap<>();
+            for (var stage : layout.getTransferStages()) {
+                stages.put(stage.getKey(), results.getOrDefault(stage.getDir(), DirectoryStats.EMPTY));
+            }
+            stages.put(PipelineLayout.STAGED_LAYERS, results.getOrDefault(layout.getStagingDir(), DirectoryStats.EMPTY));
+            stages.put(PipelineLayout.ARCHIVED_LAYERS, archived.get(layout.getName()).join());
+            stages.put(PipelineLayout.INBOX_BATCHES, results.getOrDefault(layout.getDataVaultInbox(), DirectoryStats.EMPTY));
+            var batches = batchNames.get(layout.getName()).stream()
+                .map(batch -> new BatchStats(batch,
+                    results.getOrDefault(layout.getBatchInbox(batch), DirectoryStats.EMPTY),
+                    results.getOrDefault(layout.getBatchProcessedDir(batch), DirectoryStats.EMPTY),
+                    results.getOrDefault(layout.getBatchFailedDir(batch), DirectoryStats.EMPTY)))
+                .collect(Collectors.toList());
+            statuses.add(new PipelineStatus(layout, stages, batches));
+        }
+        return statuses;
+    }
+
+    /**
+     * Walks the given directories below a root. If the walk fails, times out or is not done by the deadline, the targets it completed are kept and the others are
+     * marked as degraded.
+     */
+    private CompletableFuture<Map<Path, DirectoryStats>> walk(Path root, List<Path> targets, Instant deadline) {
+        var results = new ConcurrentHashMap<Path, DirectoryStats>();
+        return withDeadline(mountLimiter.submit(root, scanTimeout, () -> scanner.scanAsync(root, targets, results)), deadline)
+            .handle((walked, e) -> {
+                if (e == null) {
+                    return walked;
+                }
+                var degraded = degraded(root, e);
+                Map<Path, DirectoryStats> partial = new HashMap<>(results);
+                targets.forEach(target -> partial.putIfAbsent(target, degraded));
+                return partial;
+            });
+    }
+
+    /**
+     * Scans a directory under the scan timeout and the limit of scans per mount. The returned future never completes exceptionally: a scan that times out or fails
+     * yields {@link DirectoryStats#TIMED_OUT} or {@link DirectoryStats#ERROR}.
+     *
+     * @param dir      the directory to scan
+     * @param deadline if not <code>null</code>, the size of the directory is estimated if it cannot be read completely before then; see
+     *                 {@link DirectoryScanner#scanAsync(Path, Instant)}
+     * @return the statistics for the directory
+     */
+    public CompletableFuture<DirectoryStats> scan(Path dir, Instant deadline) {
+        return mountLimiter.submit(dir, scanTimeout, () -> deadline == null ? scanner.scanAsync(dir) : scanner.scanAsync(dir, deadline))
+            .exceptionally(e -> degraded(dir, e));
+    }
+
+    /**
+     * Lists the batches in the data vault inbox of a pipeline under the scan timeout. If the inbox cannot be listed in time, or cannot be listed at all, there are no
+     * batches to report; the line of the inbox itself shows why.
+     *
+     * @param layout the pipeline
+     * @return the batch names, sorted
+     */
+    public List<String> batches(PipelineLayout layout) {
+        Path inbox = layout.getDataVaultInbox();
+        return withTimeout(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return listBatches(inbox);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, blockingExecutor))
+            .exceptionally(e -> {
+                degraded(inbox, e);
+                return Collections.emptyList();
+            })
+            .join();
+    }
+
+    /**
+     * Lists the batches in the data vault inbox of a pipeline and starts scanning their inbox, processed and failed directories, each with {@link #scan(Path, Instant)}.
+     *
+     * @param layout   the pipeline
+     * @param deadline if not <code>null</code>, the time by which sizes that cannot be read completely are estimated
+     * @return the statistics of each batch, in the order of {@link #batches(PipelineLayout)}
+     */
+    public List<CompletableFuture<BatchStats>> scanBatches(PipelineLayout layout, Instant deadline) {
+        return batches(layout).stream()
+            .map(batch -> scanBatch(layout, batch, deadline))
+            .collect(Collectors.toList());
+    }
+
+    private CompletableFuture<BatchStats> scanBatch(PipelineLayout layout, String batchName, Instant deadline) {
+        var inbox = scan(layout.getBatchInbox(batchName), deadline);
+        var processed = scan(layout.getBatchProcessedDir(batchName), deadline);
+        var failed = scan(layout.getBatchFailedDir(batchName), deadline);
+        return CompletableFuture.allOf(inbox, processed, failed)
+            .thenApply(v -> new BatchStats(batchName, inbox.join(), processed.join(), failed.join()));
+    }
+
+    /**
+     * Summarizes the archived layers of a pipeline, with its layer index if enabled.
+     *
+     * @param layout the pipeline
+     * @return the statistics for the archive directory
+     */
+    public DirectoryStats archivedLayers(PipelineLayout layout) {
+        return archivedLayers(layout, null);
+    }
+
+    /**
+     * Summarizes the archived layers of a pipeline, with its layer index if enabled. Without a layer index, the archive directory is scanned, and if a deadline is
+     * given, its size is estimated when it cannot be read completely before then.
+     *
+     * @param layout   the pipeline
+     * @param deadline the deadline for scanning the archive directory, or <code>null</code> for none
+     * @return the statistics for the archive directory
+     */
+    public DirectoryStats archivedLayers(PipelineLayout layout, Instant deadline) {
+        try {
+            if (!useLayerIndex) {
+                return deadline == null ? scanner.scan(layout.getArchiveDir()) : scanner.scanAsync(layout.getArchiveDir(), deadline).join();
+            }
+            // Loaded once per pipeline, also when two scans start at the same time; the index serializes the scans themselves
+            var layerIndex = layerIndexes.computeIfAbsent(layout.getName(), this::loadLayerIndex);
+            return layerIndex.scan(layout.getArchiveDir(), scanner);
+        }
+        catch (IOException | UncheckedIOException | CompletionException e) {
+            log.warn("Could not scan archived layers of {}", layout.getName(), e);
+            return DirectoryStats.ERROR;
+        }
+    }
+
+    private LayerIndex loadLayerIndex(String pipeline) {
+        try {
+            return LayerIndex.load(LayerIndex.file(directories.getCacheDir(), pipeline));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Summarizes the archived layers of a pipeline like {@link #archivedLayers(PipelineLayout, Instant)}, under the scan timeout. Without a layer index, the size is
+     * estimated at the deadline, as with {@link #scan(Path, Instant)}. A layer index cannot be estimated, so with one, the archive directory is reported as
+     * {@link DirectoryStats#TIMED_OUT} if it has not been summarized by the deadline.
+     *
+     * @param layout   the pipeline
+     * @param deadline the deadline for scanning the archive directory, or <code>null</code> for none
+     * @return the statistics for the archive directory, or {@link DirectoryStats#TIMED_OUT} if they were not available in time
+     */
+    public CompletableFuture<DirectoryStats> archivedLayersAsync(PipelineLayout layout, Instant deadline) {
+        if (!useLayerIndex) {
+            return scan(layout.getArchiveDir(), deadline);
+        }
+        return withDeadline(mountLimiter.submit(layout.getArchiveDir(), scanTimeout,
+                () -> CompletableFuture.supplyAsync(() -> archivedLayers(layout), blockingExecutor)), deadline)
+            .exceptionally(e -> degraded(layout.getArchiveDir(), e));
+    }
+
+    /**
+     * @return the layer indexes used so far
+     */
+    public Collection<LayerIndex> getLayerIndexes() {
+        return layerIndexes.values();
+    }
+
+    /**
+     * Lists the batches in a data vault inbox.
+     *
+     * @param inbox the inbox
+     * @return the batch names, sorted; empty if the inbox does not exist
+     * @throws IOException if the inbox exists but could not be listed
+     */
+    public static List<String> listBatches(Path inbox) throws IOException {
+        if (!Files.exists(inbox)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> stream = Files.list(inbox)) {
+            return stream.filter(Files::isDirectory)
+                .sorted(Comparator.comparing(Path::getFileName))
+                .map(batch -> batch.getFileName().toString())
+                .collect(Collectors.toList());
+        }
+    }
+
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future) {
+        return scanTimeout == null ? future : future.orTimeout(scanTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, Instant deadline) {
+        if (deadline == null) {
+            return future;
+        }
+        // A copy, so that giving up on the result does not complete the future of the scan itself
+        return future.copy().orTimeout(Math.max(0, Duration.between(Instant.now(), deadline).toMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private DirectoryStats degraded(Path dir, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof TimeoutException) {
+            log.warn("Scan of {} did not finish in time; is the file system responding?", dir);
+            return DirectoryStats.TIMED_OUT;
+        }
+        log.warn("Could not scan {}", dir, cause);
+        return DirectoryStats.ERROR;
+    }
+
+    private List<Path> baseDirs() {
+        return Stream.of(directories.getCollectInboxes(), directories.getVaasCollectInboxes(), directories.getWorkingSpaceBaseDir(),
+                directories.getDataVaultBatchRoot(), directories.getDataVaultRoot())
+            .filter(Objects::nonNull)
+            .map(dir -> dir.toAbsolutePath().normalize())
+            .distinct()
+            .collect(Collectors.toList());
+    }
+
+    private Map<Path, List<Path>> groupBySharedRoot(List<Path> targets) {
+        List<Path> baseDirs = baseDirs();
+        // Base directories that lie inside another one are walked as part of that one
+        List<Path> roots = baseDirs.stream()
+            .filter(dir -> baseDirs.stream().noneMatch(other -> !other.equals(dir) && dir.startsWith(other)))
+            .collect(Collectors.toList());
+
+        Map<Path, List<Path>> targetsByRoot = new LinkedHashMap<>();
+        for (Path target : targets) {
+            Path absolute = target.toAbsolutePath().normalize();
+            Path root = roots.stream().filter(absolute::startsWith).findFirst().orElse(absolute);
+            targetsByRoot.computeIfAbsent(root, r -> new ArrayList<>()).add(target);
+        }
+        return targetsByRoot;
+    }
+}
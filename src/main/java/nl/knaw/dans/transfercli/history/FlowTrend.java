@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.history;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static nl.knaw.dans.transfercli.core.PipelineLayout.EXTRACT_METADATA_FAILED;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.EXTRACT_METADATA_INBOX;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.EXTRACT_METADATA_REJECTED;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.SEND_TO_VAULT_FAILED;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.SEND_TO_VAULT_INBOX;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.SEND_TO_VAULT_WORK;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.TRANSFER_INBOX;
+
+/**
+ * Computes the inflow and outflow of the stages of a pipeline from a series of snapshots, fed one at a time in chronological order.
+ * <p>
+ * A snapshot only gives the number of items in each stage, so between two snapshots only the net change of a stage is known. Inflow and outflow are separated by
+ * conservation of items along the pipeline: what leaves a stage enters the next stage or one of its failure directories. Working back from the end of the pipeline,
+ * the outflow of each stage is the inflow of the stages after it, and its inflow is its net change plus its outflow. The work directory is emptied by a flush, so its
+ * outflow is taken to be its decrease. Failure directories only grow, apart from cleanup, so their inflow is their increase. The result is a lower bound: items that
+ * enter and leave a stage between two snapshots are not seen.
+ */
+public class FlowTrend {
+
+    @Value
+    public static class StageTrend {
+        String stage;
+        long current;
+        double inflowPerHour;
+        double outflowPerHour;
+
+        /**
+         * @return the estimated time until the stage is empty, if it is draining at all
+         */
+        public Optional<Duration> getTimeToEmpty() {
+            double drain = outflowPerHour - inflowPerHour;
+            if (current == 0) {
+                return Optional.of(Duration.ZERO);
+            }
+            if (drain <= 0) {
+                return Optional.empty();
+            }
+            return Optional.of(Duration.ofSeconds(Math.round(current / drain * 3600)));
+        }
+    }
+
+    // The main line of the pipeline, in order, with the failure directories that branch off after each stage
+    private static final List<String> CHAIN = List.of(TRANSFER_INBOX, EXTRACT_METADATA_INBOX, SEND_TO_VAULT_INBOX, SEND_TO_VAULT_WORK);
+    private static final Map<String, List<String>> FAILURES = Map.of(
+        EXTRACT_METADATA_INBOX, List.of(EXTRACT_METADATA_FAILED, EXTRACT_METADATA_REJECTED),
+        SEND_TO_VAULT_INBOX, List.of(SEND_TO_VAULT_FAILED));
+
+    private final Map<String, double[]> flows = new LinkedHashMap<>();
+    private StatusHistory.Snapshot first;
+    private StatusHistory.Snapshot previous;
+    private int snapshots;
+
+    public FlowTrend() {
+        for (var stage : CHAIN) {
+            flows.put(stage, new double[2]);
+        }
+        FAILURES.values().forEach(failures -> failures.forEach(stage -> flows.put(stage, new double[2])));
+    }
+
+    public void accept(StatusHistory.Snapshot snapshot) {
+        snapshots++;
+        if (previous == null) {
+            first = snapshot;
+            previous = snapshot;
+            return;
+        }
+        if (!snapshot.getTimestamp().isAfter(previous.getTimestamp())) {
+            return;
+        }
+        long downstreamInflow = 0;
+        for (int i = CHAIN.size() - 1; i >= 0; i--) {
+            var stage = CHAIN.get(i);
+            long delta = delta(snapshot, stage);
+            long outflow;
+            if (i == CHAIN.size() - 1) {
+                outflow = Math.max(0, -delta);
+            }
+            else {
+                outflow = downstreamInflow;
+                for (var failure : FAILURES.getOrDefault(stage, List.of())) {
+                    long failed = Math.max(0, delta(snapshot, failure));
+                    flows.get(failure)[0] += failed;
+                    outflow += failed;
+                }
+            }
+            long inflow = Math.max(0, delta + outflow);
+            flows.get(stage)[0] += inflow;
+            flows.get(stage)[1] += outflow;
+            downstreamInflow = inflow;
+        }
+        previous = snapshot;
+    }
+
+    private long delta(StatusHistory.Snapshot snapshot, String stage) {
+        return snapshot.get(stage).getItems() - previous.get(stage).getItems();
+    }
+
+    public int getSnapshots() {
+        return snapshots;
+    }
+
+    public Instant getFrom() {
+        return first == null ? null : first.getTimestamp();
+    }
+
+    public Instant getTo() {
+        return previous == null ? null : previous.getTimestamp();
+    }
+
+    /**
+     * @return the trend per stage, or an empty list if fewer than two snapshots were seen
+     */
+    public List<StageTrend> getTrends() {
+        if (first == null || previous == first) {
+            return List.of();
+        }
+        double hours = Duration.between(first.getTimestamp(), previous.getTimestamp()).toMillis() / 3_600_000.0;
+        return flows.entrySet().stream()
+            .map(e -> new StageTrend(e.getKey(), previous.get(e.getKey()).getItems(), e.getValue()[0] / hours, e.getValue()[1] / hours))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.history;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Append-only history of status snapshots of one pipeline. Each snapshot is one line of JSON with the time in milliseconds since the epoch and, per stage key, the
+ * item count and byte total:
+ * <pre>
+ * {"t":1767268800000,"s":{"transfer-inbox":[3,1048576],"extract-metadata-inbox":[1,2048]}}
+ * </pre>
+ * A snapshot is appended with a single write, so concurrent status runs do not interleave their lines. Lines that cannot be parsed, such as a line cut off by a crash,
+ * are skipped when reading.
+ */
+@Slf4j
+public class StatusHistory {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    @Value
+    public static class StageCount {
+        long items;
+        long bytes;
+    }
+
+    @Value
+    public static class Snapshot {
+        Instant timestamp;
+        Map<String, StageCount> stages;
+
+        public StageCount get(String stageKey) {
+            return stages.getOrDefault(stageKey, new StageCount(0, 0));
+        }
+    }
+
+    private final Path file;
+
+    public StatusHistory(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param cacheDir the cache directory
+     * @param pipeline the pipeline
+     * @return the history file of the pipeline
+     */
+    public static Path file(Path cacheDir, String pipeline) {
+        return cacheDir.resolve("history-" + pipeline + ".ndjson");
+    }
+
+    /**
+     * Appends a snapshot to the history.
+     *
+     * @param snapshot the snapshot
+     * @throws IOException if the snapshot could not be written
+     */
+    public void append(Snapshot snapshot) throws IOException {
+        var line = new StringWriter();
+        try (var generator = jsonFactory.createGenerator(line)) {
+            generator.writeStartObject();
+            generator.writeNumberField("t", snapshot.getTimestamp().toEpochMilli());
+            generator.writeObjectFieldStart("s");
+            for (var e : snapshot.getStages().entrySet()) {
+                generator.writeArrayFieldStart(e.getKey());
+                generator.writeNumber(e.getValue().getItems());
+                generator.writeNumber(e.getValue().getBytes());
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        line.write('\n');
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, line.toString(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Reads the snapshots taken at or after <code>since</code>, in the order in which they were appended, without holding more than one of them in memory.
+     *
+     * @param since    the earliest snapshot to read
+     * @param consumer receives the snapshots
+     * @return the number of lines that were skipped because they could not be parsed
+     * @throws IOException if the history could not be read
+     */
+    public int read(Instant since, Consumer<Snapshot> consumer) throws IOException {
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Snapshot snapshot;
+                try {
+                    snapshot = parse(line);
+                }
+                catch (IOException | IllegalStateException e) {
+                    log.debug("Skipping unreadable history line: {}", line);
+                    skipped++;
+                    continue;
+                }
+                if (!snapshot.getTimestamp().isBefore(since)) {
+                    consumer.accept(snapshot);
+                }
+            }
+        }
+        catch (NoSuchFileException e) {
+            log.debug("No history at {}", file);
+        }
+        return skipped;
+    }
+
+    private static Snapshot parse(String line) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            Instant timestamp = null;
+            Map<String, StageCount> stages = Collections.emptyMap();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if ("t".equals(field)) {
+                    expect(parser.nextToken(), JsonToken.VALUE_NUMBER_INT);
+                    timestamp = Instant.ofEpochMilli(parser.getLongValue());
+                }
+                else if ("s".equals(field)) {
+                    expect(parser.nextToken(), JsonToken.START_OBJECT);
+                    stages = new LinkedHashMap<>();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String stage = parser.getCurrentName();
+                        expect(parser.nextToken(), JsonToken.START_ARRAY);
+                        expect(parser.nextToken(), JsonToken.VALUE_NUMBER_INT);
+                        long items = parser.getLongValue();
+                        expect(parser.nextToken(), JsonToken.VALUE_NUMBER_INT);
+                        long bytes = parser.getLongValue();
+                        expect(parser.nextToken(), JsonToken.END_ARRAY);
+                        stages.put(stage, new StageCount(items, bytes));
+                    }
+                }
+                else {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+            if (timestamp == null) {
+                throw new IllegalStateException("Snapshot without timestamp");
+            }
+            return new Snapshot(timestamp, stages);
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) {
+        if (actual != expected) {
+            throw new IllegalStateException("Expected " + expected + " but found " + actual);
+        }
+    }
+}
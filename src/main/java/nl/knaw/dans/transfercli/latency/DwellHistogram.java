@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.latency;
+
+import java.time.Duration;
+
+/**
+ * Histogram of dwell times with a fixed number of logarithmic buckets, so that its memory use does not depend on the number of items recorded. Each bucket is 10%
+ * wider than the one before it, which bounds the relative error of a percentile at 10%. The first bucket holds everything under one second; the last one everything
+ * above roughly 30 years. The maximum is tracked exactly.
+ */
+public class DwellHistogram {
+    private static final double GROWTH = 1.1;
+    private static final int BUCKETS = 220;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long maxMillis;
+
+    public void record(Duration dwell) {
+        long millis = Math.max(0, dwell.toMillis());
+        counts[bucket(millis)]++;
+        total++;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public Duration getMax() {
+        return Duration.ofMillis(maxMillis);
+    }
+
+    /**
+     * Returns the upper bound of the bucket that holds the given percentile, but never more than the maximum.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the dwell time at the percentile, or zero if nothing was recorded
+     */
+    public Duration getPercentile(double percentile) {
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Duration.ofMillis(Math.min(upperBound(i), maxMillis));
+            }
+        }
+        return getMax();
+    }
+
+    private static int bucket(long millis) {
+        if (millis < 1000) {
+            return 0;
+        }
+        return (int) Math.min(BUCKETS - 1, 1 + Math.floor(Math.log(millis / 1000.0) / Math.log(GROWTH)));
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (long) Math.ceil(1000 * Math.pow(GROWTH, bucket));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.latency;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The dwell times of the items in one stage directory: a {@link DwellHistogram} of all items and the <code>n</code> oldest items, kept in a bounded heap.
+ * <p>
+ * An item enters a stage by being moved into its directory. A move does not change the modification time of the item, but it does change its status change time
+ * (<code>ctime</code>), so that is used where the file system provides it. Elsewhere the modification time is used, which overestimates the dwell time of items that
+ * were not modified after they were created.
+ */
+@Slf4j
+public class StageLatency {
+
+    @Value
+    public static class Item {
+        String name;
+        Instant entered;
+    }
+
+    private final int oldestLimit;
+    private final DwellHistogram histogram = new DwellHistogram();
+    // The youngest of the retained items is at the head, so that it is the one to make room for an older item
+    private final PriorityQueue<Item> oldest = new PriorityQueue<>(Comparator.comparing(Item::getEntered).reversed());
+    private static volatile boolean ctimeSupported = true;
+
+    public StageLatency(int oldestLimit) {
+        this.oldestLimit = oldestLimit;
+    }
+
+    /**
+     * Records the items directly in <code>dir</code>. A directory that does not exist has no items.
+     *
+     * @param dir      the stage directory
+     * @param zipsOnly whether only zip files count as items
+     * @param now      the time to measure dwell times against
+     * @throws IOException if the directory could not be read
+     */
+    public void scan(Path dir, boolean zipsOnly, Instant now) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (zipsOnly && !name.endsWith(".zip")) {
+                    continue;
+                }
+                try {
+                    add(name, entered(entry), now);
+                }
+                catch (NoSuchFileException e) {
+                    // Moved on to the next stage while we were listing
+                }
+            }
+        }
+        catch (NoSuchFileException e) {
+            log.debug("Stage directory does not exist: {}", dir);
+        }
+    }
+
+    public void add(String name, Instant entered, Instant now) {
+        histogram.record(Duration.between(entered, now));
+        if (oldestLimit <= 0) {
+            return;
+        }
+        var item = new Item(name, entered);
+        if (oldest.size() < oldestLimit) {
+            oldest.add(item);
+        }
+        else if (entered.isBefore(oldest.peek().getEntered())) {
+            oldest.poll();
+            oldest.add(item);
+        }
+    }
+
+    /**
+     * Returns the time an item entered its directory: its status change time where the file system provides it, otherwise its modification time.
+     *
+     * @param entry the item
+     * @return the time the item was moved into its directory
+     * @throws IOException if the attributes of the item could not be read
+     */
+    public static Instant entered(Path entry) throws IOException {
+        if (ctimeSupported) {
+            try {
+                return ((FileTime) Files.getAttribute(entry, "unix:ctime", LinkOption.NOFOLLOW_LINKS)).toInstant();
+            }
+            catch (UnsupportedOperationException | IllegalArgumentException e) {
+                log.debug("No ctime available, using modification times");
+                ctimeSupported = false;
+            }
+        }
+        return Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).lastModifiedTime().toInstant();
+    }
+
+    public DwellHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @return the oldest items, oldest first
+     */
+    public List<Item> getOldest() {
+        List<Item> items = new ArrayList<>(oldest);
+        items.sort(Comparator.comparing(Item::getEntered));
+        return items;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.core.StatusCollector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the status of a set of pipelines as Prometheus/OpenMetrics gauges. A scrape never touches the file system: it is answered from an in-memory snapshot,
+ * pre-rendered in both exposition formats. A background scheduler refreshes the snapshot at a fixed interval. Only one refresh runs at a time; if a refresh is still
+ * running when the next one is due, that one is skipped. The scan budget is the deadline of each refresh: directories that have not been scanned when it passes are
+ * left out of the snapshot as timed out, and the refresh is counted in <code>transfer_scans_over_budget_total</code>.
+ */
+@Slf4j
+public class MetricsExporter implements Closeable {
+    private final StatusCollector collector;
+    private final List<PipelineLayout> layouts;
+    private final Duration interval;
+    private final Duration scanBudget;
+    private final Runnable afterRefresh;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("metrics-scheduler"));
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(daemonThreads("metrics-refresh"));
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong scansOverBudget = new AtomicLong();
+    private final AtomicLong scanErrors = new AtomicLong();
+
+    private volatile MetricsSnapshot snapshot;
+    private volatile Map<MetricsFormat, byte[]> rendered;
+    private CompletableFuture<Void> currentRefresh = CompletableFuture.completedFuture(null);
+    private HttpServer server;
+
+    /**
+     * @param collector    the collector that scans the pipelines
+     * @param layouts      the pipelines to export
+     * @param interval     the time between the starts of two refreshes
+     * @param scanBudget   the time a refresh may take; directories not scanned by then are reported as timed out
+     * @param afterRefresh called on the refresh thread after each successful refresh, for example to save the scan cache
+     */
+    public MetricsExporter(StatusCollector collector, List<PipelineLayout> layouts, Duration interval, Duration scanBudget, Runnable afterRefresh) {
+        this.collector = collector;
+        this.layouts = layouts;
+        this.interval = interval;
+        this.scanBudget = scanBudget;
+        this.afterRefresh = afterRefresh;
+        render();
+    }
+
+    /**
+     * Starts serving <code>/metrics</code> on the given address and starts the refresh schedule. The first refresh starts immediately.
+     *
+     * @param address the address to listen on
+     * @throws IOException if the server could not be started
+     */
+    public void start(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(daemonThreads("metrics-http")));
+        server.start();
+        scheduler.scheduleAtFixedRate(this::trigger, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Serving metrics on http://{}:{}/metrics", address.getHostString(), server.getAddress().getPort());
+    }
+
+    /**
+     * @return the address the server listens on, or <code>null</code> if it has not been started
+     */
+    public InetSocketAddress getAddress() {
+        return server == null ? null : server.getAddress();
+    }
+
+    /**
+     * Starts a refresh, unless one is already running.
+     *
+     * @return the refresh, or the one that was already running
+     */
+    public synchronized CompletableFuture<Void> trigger() {
+        if (!currentRefresh.isDone()) {
+            log.debug("Previous refresh still running, skipping this one");
+            return currentRefresh;
+        }
+        var refresh = CompletableFuture.runAsync(this::refresh, refresher);
+        currentRefresh = refresh;
+        return refresh;
+    }
+
+    private void refresh() {
+        long start = System.nanoTime();
+        try {
+            var deadline = Instant.now().plus(scanBudget);
+            var pipelines = collector.collect(layouts, deadline);
+            var duration = Duration.ofNanos(System.nanoTime() - start);
+            snapshot = new MetricsSnapshot(pipelines, Instant.now(), duration);
+            scans.incrementAndGet();
+            if (duration.compareTo(scanBudget) >= 0) {
+                log.warn("Scan reached budget of {}s; directories not scanned by then are reported as timed out", scanBudget.toSeconds());
+                scansOverBudget.incrementAndGet();
+            }
+            afterRefresh.run();
+        }
+        catch (RuntimeException e) {
+            log.error("Scan failed", e);
+            scanErrors.incrementAndGet();
+        }
+        render();
+    }
+
+    private synchronized void render() {
+        Map<MetricsFormat, byte[]> formats = new EnumMap<>(MetricsFormat.class);
+        for (var format : MetricsFormat.values()) {
+            formats.put(format, MetricsRenderer.render(format, snapshot, scans.get(), scansOverBudget.get(), scanErrors.get()).getBytes(StandardCharsets.UTF_8));
+        }
+        rendered = formats;
+    }
+
+    /**
+     * @param format the exposition format
+     * @return the current metrics in that format
+     */
+    public byte[] getContent(MetricsFormat format) {
+        return rendered.get(format);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            var format = MetricsFormat.forAcceptHeader(exchange.getRequestHeaders().getFirst("Accept"));
+            var body = getContent(format);
+            exchange.getResponseHeaders().set("Content-Type", format.getContentType());
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        scheduler.shutdownNow();
+        refresher.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            var thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The exposition formats served by the metrics endpoint.
+ */
+@RequiredArgsConstructor
+@Getter
+public enum MetricsFormat {
+    PROMETHEUS("text/plain; version=0.0.4; charset=utf-8"),
+    OPENMETRICS("application/openmetrics-text; version=1.0.0; charset=utf-8");
+
+    private final String contentType;
+
+    /**
+     * Selects the format for a scrape request. OpenMetrics is only served to clients that explicitly ask for it.
+     *
+     * @param accept the value of the Accept header, may be <code>null</code>
+     * @return the format
+     */
+    public static MetricsFormat forAcceptHeader(String accept) {
+        return accept != null && accept.contains("application/openmetrics-text") ? OPENMETRICS : PROMETHEUS;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.metrics;
+
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.core.PipelineStatus;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Renders a {@link MetricsSnapshot} and the exporter's counters in the Prometheus text format (version 0.0.4) or the OpenMetrics text format (version 1.0.0).
+ */
+public class MetricsRenderer {
+    private final MetricsFormat format;
+    private final StringBuilder out = new StringBuilder();
+
+    private MetricsRenderer(MetricsFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Renders the metrics.
+     *
+     * @param format          the exposition format
+     * @param snapshot        the latest snapshot, or <code>null</code> if no scan has completed yet
+     * @param scans           the number of completed scans
+     * @param scansOverBudget the number of scans that took longer than the scan budget
+     * @param scanErrors      the number of scans that failed
+     * @return the exposition text
+     */
+    public static String render(MetricsFormat format, MetricsSnapshot snapshot, long scans, long scansOverBudget, long scanErrors) {
+        var renderer = new MetricsRenderer(format);
+        if (snapshot != null) {
+            renderer.stageGauge("transfer_stage_items", "Number of items in a pipeline stage directory.", snapshot.getPipelines(),
+                (stage, stats) -> stage.isZipsOnly() ? stats.getZips() : stats.getEntries());
+            renderer.stageGauge("transfer_stage_bytes", "Total size in bytes of the files in a pipeline stage directory.", snapshot.getPipelines(),
+                (stage, stats) -> stats.getBytes());
+            renderer.gauge("transfer_scan_duration_seconds", "Duration of the scan that produced the current values.",
+                snapshot.getScanDuration().toMillis() / 1000.0);
+            renderer.gauge("transfer_snapshot_timestamp_seconds", "Time at which the scan that produced the current values finished.",
+                snapshot.getTimestamp().toEpochMilli() / 1000.0);
+        }
+        renderer.counter("transfer_scans", "Number of completed scans.", scans);
+        renderer.counter("transfer_scans_over_budget", "Number of scans that reached the scan budget before all directories were scanned.", scansOverBudget);
+        renderer.counter("transfer_scan_errors", "Number of scans that failed.", scanErrors);
+        if (format == MetricsFormat.OPENMETRICS) {
+            renderer.out.append("# EOF\n");
+        }
+        return renderer.out.toString();
+    }
+
+    private void stageGauge(String name, String help, List<PipelineStatus> pipelines, ToLongBiFunction<PipelineLayout.Stage, DirectoryStats> value) {
+        header(name, "gauge", help);
+        for (var status : pipelines) {
+            List<PipelineLayout.Stage> stages = new ArrayList<>(status.getLayout().getTransferStages());
+            stages.addAll(status.getLayout().getDataVaultStages());
+            for (var stage : stages) {
+                var stats = status.getStats(stage.getKey());
+                if (stats.isDegraded()) {
+                    // A missing sample makes the gap visible; a zero would look like an empty stage
+                    continue;
+                }
+                out.append(name)
+                    .append("{pipeline=\"").append(escape(status.getLayout().getName()))
+                    .append("\",stage=\"").append(escape(stage.getKey()))
+                    .append("\"} ").append(value.applyAsLong(stage, stats)).append('\n');
+            }
+        }
+    }
+
+    private void gauge(String name, String help, double value) {
+        header(name, "gauge", help);
+        out.append(name).append(' ').append(formatDouble(value)).append('\n');
+    }
+
+    private void counter(String name, String help, long value) {
+        // OpenMetrics names the family without the _total suffix of its sample; the Prometheus text format uses the sample name throughout
+        header(format == MetricsFormat.OPENMETRICS ? name : name + "_total", "counter", help);
+        out.append(name).append("_total ").append(value).append('\n');
+    }
+
+    private void header(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String formatDouble(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.report;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import nl.knaw.dans.transfercli.scan.BatchStats;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the status report as a single JSON document. The document is streamed: each batch is written and flushed as soon as it is available, so memory use does not
+ * depend on the number of batches. All sizes are in bytes.
+ */
+public class JsonStatusReportWriter implements StatusReportWriter {
+    private static final Map<SummaryRow.Column, String> SUMMARY_FIELDS = Map.of(
+        SummaryRow.Column.TRANSFER_INBOX, "transferInbox",
+        SummaryRow.Column.EXTRACT_METADATA_INBOX, "extractMetadataInbox",
+        SummaryRow.Column.SEND_TO_VAULT_INBOX, "sendToVaultInbox",
+        SummaryRow.Column.SEND_TO_VAULT_WORK, "sendToVaultWork",
+        SummaryRow.Column.FAILED, "failed",
+        SummaryRow.Column.DATA_VAULT_INBOX_BATCHES, "dataVaultInboxBatches",
+        SummaryRow.Column.BYTES_IN_PROGRESS, "bytesInProgress");
+
+    private final JsonGenerator generator;
+    private boolean inSection;
+    private boolean inPipelines;
+
+    public JsonStatusReportWriter(JsonGenerator generator) throws IOException {
+        this.generator = generator;
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+    }
+
+    @Override
+    public void startPipeline(String pipeline, ZonedDateTime timestamp) throws IOException {
+        if (!inPipelines) {
+            generator.writeArrayFieldStart("pipelines");
+            inPipelines = true;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("pipeline", pipeline);
+        generator.writeStringField("timestamp", timestamp.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+    }
+
+    @Override
+    public void startSection(String section) throws IOException {
+        endSection();
+        generator.writeObjectFieldStart(section);
+        inSection = true;
+    }
+
+    @Override
+    public void line(String key, String label, DirectoryStats stats, boolean zipsOnly) throws IOException {
+        generator.writeFieldName(key);
+        writeStats(generator, stats, zipsOnly ? stats.getZips() : stats.getEntries());
+    }
+
+    @Override
+    public void startBatches() throws IOException {
+        endSection();
+        generator.writeArrayFieldStart("batches");
+    }
+
+    @Override
+    public void batch(BatchStats batch) throws IOException {
+        generator.writeStartObject();
+        writeBatchFields(generator, batch);
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    @Override
+    public void endPipeline() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    @Override
+    public void summary(List<SummaryRow> rows, SummaryRow total) throws IOException {
+        endPipelines();
+        generator.writeArrayFieldStart("summary");
+        for (var row : rows) {
+            generator.writeStartObject();
+            writeSummaryFields(generator, row);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("total");
+        writeSummaryFields(generator, total);
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void scanCache(long hits, long misses) throws IOException {
+        endPipelines();
+        generator.writeObjectFieldStart("scanCache");
+        generator.writeNumberField("hits", hits);
+        generator.writeNumberField("misses", misses);
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void layerIndex(int knownLayers, int newLayers) throws IOException {
+        endPipelines();
+        generator.writeObjectFieldStart("layerIndex");
+        generator.writeNumberField("knownLayers", knownLayers);
+        generator.writeNumberField("newLayers", newLayers);
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        endPipelines();
+        generator.writeEndObject();
+        generator.writeRaw(System.lineSeparator());
+        generator.close();
+    }
+
+    private void endSection() throws IOException {
+        if (inSection) {
+            generator.writeEndObject();
+            inSection = false;
+        }
+    }
+
+    private void endPipelines() throws IOException {
+        if (inPipelines) {
+            generator.writeEndArray();
+            inPipelines = false;
+        }
+    }
+
+    static void writeStats(JsonGenerator generator, DirectoryStats stats, long items) throws IOException {
+        generator.writeStartObject();
+        writeStatsFields(generator, stats, items);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the counts, or only the status if the directory could not be scanned, so that consumers do not mistake it for an empty directory.
+     */
+    static void writeStatsFields(JsonGenerator generator, DirectoryStats stats, long items) throws IOException {
+        if (stats.isDegraded()) {
+            generator.writeStringField("status", stats.getStatus() == DirectoryStats.Status.TIMED_OUT ? "timedOut" : "error");
+            return;
+        }
+        generator.writeNumberField("items", items);
+        generator.writeNumberField("files", stats.getFiles());
+        generator.writeNumberField("bytes", stats.getBytes());
+        writeEstimateFields(generator, stats);
+    }
+
+    static void writeEstimateFields(JsonGenerator generator, DirectoryStats stats) throws IOException {
+        if (stats.isEstimated()) {
+            generator.writeBooleanField("estimated", true);
+            generator.writeNumberField("bytesLow", stats.getBytesRange().getLow());
+            if (stats.getBytesRange().getHigh() != DirectoryStats.Range.UNBOUNDED) {
+                generator.writeNumberField("bytesHigh", stats.getBytesRange().getHigh());
+            }
+        }
+    }
+
+    static void writeBatchFields(JsonGenerator generator, BatchStats batch) throws IOException {
+        generator.writeStringField("batch", batch.getName());
+        generator.writeFieldName("inbox");
+        writeStats(generator, batch.getInbox(), batch.getInbox().getDirectories());
+        generator.writeFieldName("processed");
+        writeStats(generator, batch.getProcessed(), batch.getProcessed().getDirectories());
+        generator.writeFieldName("failed");
+        writeStats(generator, batch.getFailed(), batch.getFailed().getDirectories());
+    }
+
+    static void writeSummaryFields(JsonGenerator generator, SummaryRow row) throws IOException {
+        generator.writeStringField("pipeline", row.getPipeline());
+        generator.writeNumberField("transferInbox", row.getTransferInbox());
+        generator.writeNumberField("extractMetadataInbox", row.getExtractMetadataInbox());
+        generator.writeNumberField("sendToVaultInbox", row.getSendToVaultInbox());
+        generator.writeNumberField("sendToVaultWork", row.getSendToVaultWork());
+        generator.writeNumberField("failed", row.getFailed());
+        generator.writeNumberField("dataVaultInboxBatches", row.getDataVaultInboxBatches());
+        generator.writeNumberField("bytesInProgress", row.getBytesInProgress());
+        if (!row.getDegraded().isEmpty()) {
+            // The fields listed here include a directory that timed out or could not be read, so they are only lower bounds
+            generator.writeArrayFieldStart("degraded");
+            for (var column : row.getDegraded()) {
+                generator.writeString(SUMMARY_FIELDS.get(column));
+            }
+            generator.writeEndArray();
+        }
+    }
+}
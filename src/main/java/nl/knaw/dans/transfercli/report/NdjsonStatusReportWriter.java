@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.report;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import nl.knaw.dans.transfercli.scan.BatchStats;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes the status report as newline-delimited JSON: one self-contained record per line, flushed as soon as it is written. Every record has a <code>type</code> field
+ * (<code>line</code>, <code>batch</code>, <code>summary</code>, <code>scanCache</code> or <code>layerIndex</code>) and the pipeline records carry the pipeline name and
+ * the timestamp of the report. All sizes are in bytes.
+ */
+public class NdjsonStatusReportWriter implements StatusReportWriter {
+    private final JsonGenerator generator;
+    private String pipeline;
+    private String timestamp;
+    private String section;
+
+    public NdjsonStatusReportWriter(JsonGenerator generator) {
+        this.generator = generator;
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Records are separated by the newline in endRecord only; the default separator would start every record after the first with a space
+        generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void startPipeline(String pipeline, ZonedDateTime timestamp) {
+        this.pipeline = pipeline;
+        this.timestamp = timestamp.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+
+    @Override
+    public void startSection(String section) {
+        this.section = section;
+    }
+
+    @Override
+    public void line(String key, String label, DirectoryStats stats, boolean zipsOnly) throws IOException {
+        startRecord("line");
+        generator.writeStringField("section", section);
+        generator.writeStringField("line", key);
+        JsonStatusReportWriter.writeStatsFields(generator, stats, zipsOnly ? stats.getZips() : stats.getEntries());
+        endRecord();
+    }
+
+    @Override
+    public void startBatches() {
+    }
+
+    @Override
+    public void batch(BatchStats batch) throws IOException {
+        startRecord("batch");
+        JsonStatusReportWriter.writeBatchFields(generator, batch);
+        endRecord();
+    }
+
+    @Override
+    public void endPipeline() {
+        pipeline = null;
+        timestamp = null;
+    }
+
+    @Override
+    public void summary(List<SummaryRow> rows, SummaryRow total) throws IOException {
+        for (var row : rows) {
+            startRecord("summary");
+            JsonStatusReportWriter.writeSummaryFields(generator, row);
+            endRecord();
+        }
+        startRecord("summary");
+        JsonStatusReportWriter.writeSummaryFields(generator, total);
+        endRecord();
+    }
+
+    @Override
+    public void scanCache(long hits, long misses) throws IOException {
+        startRecord("scanCache");
+        generator.writeNumberField("hits", hits);
+        generator.writeNumberField("misses", misses);
+        endRecord();
+    }
+
+    @Override
+    public void layerIndex(int knownLayers, int newLayers) throws IOException {
+        startRecord("layerIndex");
+        generator.writeNumberField("knownLayers", knownLayers);
+        generator.writeNumberField("newLayers", newLayers);
+        endRecord();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private void startRecord(String type) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", type);
+        if (pipeline != null) {
+            generator.writeStringField("pipeline", pipeline);
+            generator.writeStringField("timestamp", timestamp);
+        }
+    }
+
+    private void endRecord() throws IOException {
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+}
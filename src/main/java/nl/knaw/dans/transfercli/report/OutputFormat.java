@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.report;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+public enum OutputFormat {
+    TEXT,
+    JSON,
+    NDJSON;
+
+    /**
+     * Creates a status report writer for this format.
+     *
+     * @param out          the stream to write to
+     * @param objectMapper the object mapper to create JSON generators with
+     * @return the writer
+     * @throws IOException if the writer could not be created
+     */
+    public StatusReportWriter createStatusReportWriter(PrintStream out, ObjectMapper objectMapper) throws IOException {
+        switch (this) {
+            case JSON:
+                return new JsonStatusReportWriter(objectMapper.getFactory().createGenerator(out));
+            case NDJSON:
+                return new NdjsonStatusReportWriter(objectMapper.getFactory().createGenerator(out));
+            default:
+                return new TextStatusReportWriter(out);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.report;
+
+import nl.knaw.dans.transfercli.scan.BatchStats;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Writes a status report. The methods are called in the order in which the parts of the report are produced, so that implementations can stream their output: for
+ * each pipeline {@link #startPipeline}, then for each section {@link #startSection} followed by its lines, then {@link #startBatches} followed by the batches and finally
+ * {@link #endPipeline}. After all pipelines the optional summary and cache statistics follow.
+ */
+public interface StatusReportWriter extends Closeable {
+
+    void startPipeline(String pipeline, ZonedDateTime timestamp) throws IOException;
+
+    void startSection(String section) throws IOException;
+
+    /**
+     * @param key      machine-readable name of the line
+     * @param label    human-readable name of the line
+     * @param stats    the statistics for the directory
+     * @param zipsOnly whether only zip files count as items
+     */
+    void line(String key, String label, DirectoryStats stats, boolean zipsOnly) throws IOException;
+
+    void startBatches() throws IOException;
+
+    /**
+     * Writes one batch row. Implementations flush after each row, so that consumers can process the rows while the remaining batches are still being scanned.
+     *
+     * @param batch the batch
+     */
+    void batch(BatchStats batch) throws IOException;
+
+    void endPipeline() throws IOException;
+
+    void summary(List<SummaryRow> rows, SummaryRow total) throws IOException;
+
+    void scanCache(long hits, long misses) throws IOException;
+
+    void layerIndex(int knownLayers, int newLayers) throws IOException;
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.report;
+
+import lombok.Value;
+import nl.knaw.dans.transfercli.core.PipelineStatus;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static nl.knaw.dans.transfercli.core.PipelineLayout.EXTRACT_METADATA_FAILED;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.EXTRACT_METADATA_INBOX;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.INBOX_BATCHES;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.SEND_TO_VAULT_FAILED;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.SEND_TO_VAULT_INBOX;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.SEND_TO_VAULT_WORK;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.TRANSFER_INBOX;
+
+/**
+ * One row of the summary table of a multi-pipeline status report. A column that includes a directory that timed out or could not be read is marked as degraded;
+ * its value is then only a lower bound.
+ */
+@Value
+public class SummaryRow {
+    public enum Column {
+        TRANSFER_INBOX,
+        EXTRACT_METADATA_INBOX,
+        SEND_TO_VAULT_INBOX,
+        SEND_TO_VAULT_WORK,
+        FAILED,
+        DATA_VAULT_INBOX_BATCHES,
+        BYTES_IN_PROGRESS
+    }
+
+    String pipeline;
+    long transferInbox;
+    long extractMetadataInbox;
+    long sendToVaultInbox;
+    long sendToVaultWork;
+    long failed;
+    long dataVaultInboxBatches;
+    long bytesInProgress;
+    Set<Column> degraded;
+
+    public static SummaryRow empty(String pipeline) {
+        return new SummaryRow(pipeline, 0, 0, 0, 0, 0, 0, 0, EnumSet.noneOf(Column.class));
+    }
+
+    public static SummaryRow of(PipelineStatus status) {
+        var batches = status.getStats(INBOX_BATCHES);
+        var degraded = EnumSet.noneOf(Column.class);
+        markDegraded(degraded, Column.TRANSFER_INBOX, status, TRANSFER_INBOX);
+        markDegraded(degraded, Column.EXTRACT_METADATA_INBOX, status, EXTRACT_METADATA_INBOX);
+        markDegraded(degraded, Column.SEND_TO_VAULT_INBOX, status, SEND_TO_VAULT_INBOX);
+        markDegraded(degraded, Column.SEND_TO_VAULT_WORK, status, SEND_TO_VAULT_WORK);
+        markDegraded(degraded, Column.FAILED, status, EXTRACT_METADATA_FAILED, SEND_TO_VAULT_FAILED);
+        markDegraded(degraded, Column.DATA_VAULT_INBOX_BATCHES, status, INBOX_BATCHES);
+        markDegraded(degraded, Column.BYTES_IN_PROGRESS, status, TRANSFER_INBOX, EXTRACT_METADATA_INBOX, SEND_TO_VAULT_INBOX, SEND_TO_VAULT_WORK, INBOX_BATCHES);
+        return new SummaryRow(status.getLayout().getName(),
+            status.getStats(TRANSFER_INBOX).getZips(),
+            status.getStats(EXTRACT_METADATA_INBOX).getEntries(),
+            status.getStats(SEND_TO_VAULT_INBOX).getEntries(),
+            status.getStats(SEND_TO_VAULT_WORK).getEntries(),
+            status.getStats(EXTRACT_METADATA_FAILED).getZips() + status.getStats(SEND_TO_VAULT_FAILED).getZips(),
+            batches.getEntries(),
+            Stream.of(TRANSFER_INBOX, EXTRACT_METADATA_INBOX, SEND_TO_VAULT_INBOX, SEND_TO_VAULT_WORK)
+                .mapToLong(key -> status.getStats(key).getBytes()).sum() + batches.getBytes(),
+            degraded);
+    }
+
+    private static void markDegraded(Set<Column> degraded, Column column, PipelineStatus status, String... keys) {
+        if (Stream.of(keys).anyMatch(key -> status.getStats(key).isDegraded())) {
+            degraded.add(column);
+        }
+    }
+
+    public boolean isDegraded(Column column) {
+        return degraded.contains(column);
+    }
+
+    public SummaryRow plus(SummaryRow other) {
+        var union = EnumSet.noneOf(Column.class);
+        union.addAll(degraded);
+        union.addAll(other.degraded);
+        return new SummaryRow(pipeline,
+            transferInbox + other.transferInbox,
+            extractMetadataInbox + other.extractMetadataInbox,
+            sendToVaultInbox + other.sendToVaultInbox,
+            sendToVaultWork + other.sendToVaultWork,
+            failed + other.failed,
+            dataVaultInboxBatches + other.dataVaultInboxBatches,
+            bytesInProgress + other.bytesInProgress,
+            union);
+    }
+}
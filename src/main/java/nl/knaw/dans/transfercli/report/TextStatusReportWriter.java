@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.report;
+
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.transfercli.scan.BatchStats;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+import org.apache.commons.io.FileUtils;
+
+import java.io.PrintStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes the status report as fixed-width text for human readers.
+ */
+@RequiredArgsConstructor
+public class TextStatusReportWriter implements StatusReportWriter {
+    private final PrintStream out;
+    private boolean firstSection;
+
+    @Override
+    public void startPipeline(String pipeline, ZonedDateTime timestamp) {
+        out.printf("status %s at %s%n", pipeline, timestamp.format(DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss zzz yyyy")));
+        out.println();
+        firstSection = true;
+    }
+
+    @Override
+    public void startSection(String section) {
+        if (!firstSection) {
+            out.println();
+        }
+        firstSection = false;
+        out.println("* " + section + ":");
+    }
+
+    @Override
+    public void line(String key, String label, DirectoryStats stats, boolean zipsOnly) {
+        if (stats.isDegraded()) {
+            out.printf("%-30s: %s%n", label, degraded(stats));
+            out.flush();
+            return;
+        }
+        long count = zipsOnly ? stats.getZips() : stats.getEntries();
+        out.printf("%-30s: %d items (%s)%n", label, count, sizeWithRange(stats));
+        out.flush();
+    }
+
+    private static String degraded(DirectoryStats stats) {
+        return stats.getStatus() == DirectoryStats.Status.TIMED_OUT ? "TIMED OUT" : "ERROR";
+    }
+
+    private static String size(DirectoryStats stats) {
+        return (stats.isEstimated() ? "~" : "") + FileUtils.byteCountToDisplaySize(stats.getBytes());
+    }
+
+    private static String count(DirectoryStats stats) {
+        return stats.isDegraded() ? "?" : Long.toString(stats.getDirectories());
+    }
+
+    private static String sizeOrStatus(DirectoryStats stats) {
+        return stats.isDegraded() ? degraded(stats) : size(stats);
+    }
+
+    private static String sizeWithRange(DirectoryStats stats) {
+        if (!stats.isEstimated()) {
+            return size(stats);
+        }
+        var range = stats.getBytesRange();
+        if (range.getHigh() == DirectoryStats.Range.UNBOUNDED) {
+            return String.format("%s, at least %s", size(stats), FileUtils.byteCountToDisplaySize(range.getLow()));
+        }
+        return String.format("%s, 95%% range %s - %s", size(stats), FileUtils.byteCountToDisplaySize(range.getLow()),
+            FileUtils.byteCountToDisplaySize(range.getHigh()));
+    }
+
+    @Override
+    public void startBatches() {
+        out.printf("%-20s %6s %-12s %10s %-12s %7s %-11s%n", "BATCH", "INBOX", "(SIZE)", "PROCESSED", "(SIZE)", "FAILED", "(SIZE)");
+    }
+
+    @Override
+    public void batch(BatchStats batch) {
+        out.printf("%-20s %6s (%-11s %10s (%-11s %7s (%s%n",
+            batch.getName(),
+            count(batch.getInbox()), sizeOrStatus(batch.getInbox()) + ")",
+            count(batch.getProcessed()), sizeOrStatus(batch.getProcessed()) + ")",
+            count(batch.getFailed()), sizeOrStatus(batch.getFailed()) + ")");
+        out.flush();
+    }
+
+    @Override
+    public void endPipeline() {
+        out.println("---");
+        out.println();
+    }
+
+    @Override
+    public void summary(List<SummaryRow> rows, SummaryRow total) {
+        out.println("* summary:");
+        out.printf("%-20s %8s %8s %8s %8s %8s %8s  %s%n", "PIPELINE", "TRANSFER", "EXTRACT", "SEND", "WORK", "FAILED", "BATCHES", "IN PROGRESS");
+        for (var row : rows) {
+            summaryRow(row);
+        }
+        summaryRow(total);
+        out.println();
+    }
+
+    private void summaryRow(SummaryRow row) {
+        out.printf("%-20s %8s %8s %8s %8s %8s %8s  %s%n", row.getPipeline(),
+            cell(row, SummaryRow.Column.TRANSFER_INBOX, row.getTransferInbox()),
+            cell(row, SummaryRow.Column.EXTRACT_METADATA_INBOX, row.getExtractMetadataInbox()),
+            cell(row, SummaryRow.Column.SEND_TO_VAULT_INBOX, row.getSendToVaultInbox()),
+            cell(row, SummaryRow.Column.SEND_TO_VAULT_WORK, row.getSendToVaultWork()),
+            cell(row, SummaryRow.Column.FAILED, row.getFailed()),
+            cell(row, SummaryRow.Column.DATA_VAULT_INBOX_BATCHES, row.getDataVaultInboxBatches()),
+            lowerBound(row.isDegraded(SummaryRow.Column.BYTES_IN_PROGRESS), row.getBytesInProgress(), FileUtils.byteCountToDisplaySize(row.getBytesInProgress())));
+    }
+
+    private static String cell(SummaryRow row, SummaryRow.Column column, long value) {
+        return lowerBound(row.isDegraded(column), value, Long.toString(value));
+    }
+
+    /**
+     * Renders a degraded value as "?" if nothing was counted, or as a lower bound otherwise, so that it is not mistaken for a complete count.
+     */
+    private static String lowerBound(boolean degraded, long value, String formatted) {
+        if (!degraded) {
+            return formatted;
+        }
+        return value == 0 ? "?" : formatted + "+";
+    }
+
+    @Override
+    public void scanCache(long hits, long misses) {
+        long lookups = hits + misses;
+        out.printf("scan cache: %d of %d directories unchanged (%.1f%%), %d rescanned%n",
+            hits, lookups, lookups == 0 ? 0.0 : 100.0 * hits / lookups, misses);
+    }
+
+    @Override
+    public void layerIndex(int knownLayers, int newLayers) {
+        out.printf("layer index: %d archived layers known, %d new%n", knownLayers, newLayers);
+    }
+
+    @Override
+    public void close() {
+        out.flush();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.requeue;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.latency.StageLatency;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Moves failed items of a pipeline back to the inbox of the step that failed them. Each item appears in the inbox in a single step, so that the service never sees
+ * a partially moved item; the failed directories and the inboxes must therefore be on the same file system. The moves are run on a fixed number of threads.
+ * <p>
+ * An item is not moved if the inbox already contains an item with the same name. Such a conflict is reported and the item stays where it is. A file is moved by
+ * creating a hard link in the inbox, which fails if the name is taken, and then removing it from the failed directory, so that it can never replace an item that
+ * appears in the inbox at the same time. If the inbox already holds a link to the same file, a run that was interrupted between the two steps is finished by
+ * removing the file from the failed directory. A directory, or a file on a file system without hard links, is renamed after checking that the name is free. A
+ * directory that is created in the inbox between that check and the rename is replaced by the rename if it is still empty; a non-empty one makes the rename fail.
+ * <p>
+ * The age of a failed item is measured from when it was moved into the failed directory, as in {@link StageLatency#entered(Path)}: the move keeps the
+ * modification time of the item, which may be much older.
+ */
+@Slf4j
+public class FailedItemRequeuer {
+    public static final String EXTRACT_METADATA = "extract-metadata";
+    public static final String SEND_TO_VAULT = "send-to-vault";
+
+    /**
+     * A failed item, identified by the step that failed it and its file name.
+     */
+    @Value
+    public static class Item {
+        String stage;
+        String name;
+    }
+
+    @Value
+    public static class Route {
+        Path failedDir;
+        Path inbox;
+    }
+
+    @Value
+    public static class Progress {
+        int total;
+        int moved;
+        int missing;
+        int conflicts;
+        int failed;
+        Duration elapsed;
+
+        public int getHandled() {
+            return moved + missing + conflicts + failed;
+        }
+
+        public double getItemsPerSecond() {
+            return elapsed.toMillis() == 0 ? 0 : getHandled() * 1000.0 / elapsed.toMillis();
+        }
+    }
+
+    private final Map<String, Route> routes;
+    private final int parallelism;
+    private final AtomicInteger moved = new AtomicInteger();
+    private final AtomicInteger missing = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * @param layout      the pipeline
+     * @param parallelism the maximum number of concurrent moves
+     */
+    public FailedItemRequeuer(PipelineLayout layout, int parallelism) {
+        this.routes = routes(layout);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param layout the pipeline
+     * @return per step that can fail items, its failed directory and its inbox
+     */
+    public static Map<String, Route> routes(PipelineLayout layout) {
+        Map<String, Route> routes = new LinkedHashMap<>();
+        routes.put(EXTRACT_METADATA, new Route(layout.getExtractMetadataFailedDir(), layout.getExtractMetadataInbox()));
+        routes.put(SEND_TO_VAULT, new Route(layout.getSendToVaultFailedDir(), layout.getSendToVaultInbox()));
+        return routes;
+    }
+
+    /**
+     * Lists the failed items that match the filters, oldest first per step.
+     *
+     * @param stages     the steps whose failed items to list
+     * @param name       matches the file names of the items to list
+     * @param olderThan  only items that entered the failed directory before this time are listed
+     * @return the items
+     * @throws IOException if a failed directory could not be read
+     */
+    public List<Item> list(Collection<String> stages, PathMatcher name, Instant olderThan) throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (String stage : stages) {
+            var route = routes.get(stage);
+            if (route == null) {
+                throw new IllegalArgumentException("Unknown stage: " + stage + ". Expected one of " + routes.keySet());
+            }
+            if (!Files.isDirectory(route.getFailedDir())) {
+                continue;
+            }
+            Map<String, Instant> failedAt = new LinkedHashMap<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(route.getFailedDir(), path -> name.matches(path.getFileName()))) {
+                for (Path path : stream) {
+                    Instant entered;
+                    try {
+                        entered = StageLatency.entered(path);
+                    }
+                    catch (NoSuchFileException e) {
+                        continue;
+                    }
+                    if (entered.isBefore(olderThan)) {
+                        failedAt.put(path.getFileName().toString(), entered);
+                    }
+                }
+            }
+            failedAt.entrySet().stream()
+                .sorted(Map.Entry.<String, Instant> comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(e -> items.add(new Item(stage, e.getKey())));
+        }
+        return items;
+    }
+
+    /**
+     * Moves the items back to their inboxes and waits for all moves to finish.
+     *
+     * @param items            the items to move
+     * @param settled          receives every item that no longer needs to be moved, because it was moved or is gone; called concurrently
+     * @param progressInterval how often to report progress
+     * @param progress         receives the progress; called from the calling thread
+     * @return the final progress
+     * @throws InterruptedException if interrupted while waiting for the moves
+     */
+    public Progress requeue(List<Item> items, Consumer<Item> settled, Duration progressInterval, Consumer<Progress> progress) throws InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            for (var item : items) {
+                executor.execute(() -> move(item, settled));
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(progressInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+                progress.accept(progress(items.size(), start));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return progress(items.size(), start);
+    }
+
+    private void move(Item item, Consumer<Item> settled) {
+        var route = routes.get(item.getStage());
+        Path source = route.getFailedDir().resolve(item.getName());
+        Path target = route.getInbox().resolve(item.getName());
+        try {
+            var attrs = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!(attrs.isRegularFile() ? link(source, target) : rename(source, target))) {
+                log.warn("Not requeueing {}: {} already exists", source, target);
+                conflicts.incrementAndGet();
+                return;
+            }
+            moved.incrementAndGet();
+        }
+        catch (NoSuchFileException e) {
+            if (Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+                // The inbox itself is missing
+                log.error("Could not requeue {}: {}", source, e.toString());
+                failed.incrementAndGet();
+                return;
+            }
+            log.debug("{} is gone; already requeued or removed", source);
+            missing.incrementAndGet();
+        }
+        catch (IOException e) {
+            log.error("Could not requeue {}: {}", source, e.toString());
+            failed.incrementAndGet();
+            return;
+        }
+        settled.accept(item);
+    }
+
+    /**
+     * Moves a file by linking it into the inbox and unlinking it from the failed directory. Falls back to {@link #rename(Path, Path)} if the file system cannot link
+     * it.
+     *
+     * @return <code>true</code> if the file was moved, <code>false</code> if the target exists
+     */
+    private boolean link(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        }
+        catch (FileAlreadyExistsException e) {
+            if (!Files.isSameFile(source, target)) {
+                return false;
+            }
+            // Linked by a run that was interrupted before it could remove the file from the failed directory
+            log.debug("{} is already linked to {}; finishing the move", source, target);
+        }
+        catch (NoSuchFileException e) {
+            throw e;
+        }
+        catch (UnsupportedOperationException | FileSystemException e) {
+            log.debug("Could not link {} to {}; renaming it instead: {}", source, target, e.toString());
+            return rename(source, target);
+        }
+        try {
+            Files.delete(source);
+        }
+        catch (NoSuchFileException e) {
+            // Removed by a concurrent run that requeued it as well; the link in the inbox is the same file
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the item was renamed, <code>false</code> if the target exists
+     */
+    private boolean rename(Path source, Path target) throws IOException {
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private Progress progress(int total, long start) {
+        return new Progress(total, moved.get(), missing.get(), conflicts.get(), failed.get(), Duration.ofNanos(System.nanoTime() - start));
+    }
+}
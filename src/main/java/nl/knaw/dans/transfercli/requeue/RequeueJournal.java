@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.requeue;
+
+import lombok.Value;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Journal of a requeue run, so that an interrupted run can be continued without listing the failed directories again. The journal starts with the options of the
+ * run and the items it selected, and is written to a temporary file that is then moved into place, so that a journal is either complete or absent. After that, a
+ * line is appended for every item that no longer needs to be moved:
+ * <pre>
+ * # stages=extract-metadata,send-to-vault name=*.zip older-than=0
+ * P	send-to-vault	item1.zip
+ * P	send-to-vault	item2.zip
+ * D	send-to-vault	item1.zip
+ * </pre>
+ * Losing the last lines in a crash is harmless: an item that was moved but not recorded is found to be gone from the failed directory when the run is continued.
+ */
+public class RequeueJournal implements Closeable {
+    private static final String PLANNED = "P";
+    private static final String DONE = "D";
+
+    @Value
+    public static class Plan {
+        List<FailedItemRequeuer.Item> remaining;
+        int total;
+    }
+
+    private final Path file;
+    private final BufferedWriter writer;
+
+    private RequeueJournal(Path file) throws IOException {
+        this.file = file;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param cacheDir the cache directory
+     * @param pipeline the pipeline
+     * @return the default journal file of the pipeline
+     */
+    public static Path file(Path cacheDir, String pipeline) {
+        return cacheDir.resolve("requeue-" + pipeline + ".journal");
+    }
+
+    /**
+     * Reads the journal of an interrupted run.
+     *
+     * @param file    the journal file
+     * @param options the options of the current run
+     * @return the items of the interrupted run that remain to be moved, or empty if there is no journal
+     * @throws IOException              if the journal could not be read
+     * @throws IllegalArgumentException if the journal was written by a run with other options
+     */
+    public static Optional<Plan> read(Path file, String options) throws IOException {
+        List<FailedItemRequeuer.Item> planned = new ArrayList<>();
+        Set<FailedItemRequeuer.Item> done = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || !header.equals("# " + options)) {
+                throw new IllegalArgumentException(String.format("Journal %s belongs to a run with other options (%s). Continue it with those options or use --discard-journal.",
+                    file, header == null ? "none" : header.substring(header.startsWith("# ") ? 2 : 0)));
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length < 3) {
+                    // A line cut off by a crash
+                    continue;
+                }
+                var item = new FailedItemRequeuer.Item(fields[1], fields[2]);
+                if (PLANNED.equals(fields[0])) {
+                    planned.add(item);
+                }
+                else if (DONE.equals(fields[0])) {
+                    done.add(item);
+                }
+            }
+        }
+        catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        List<FailedItemRequeuer.Item> remaining = new ArrayList<>(planned.size() - Math.min(done.size(), planned.size()));
+        for (var item : planned) {
+            if (!done.contains(item)) {
+                remaining.add(item);
+            }
+        }
+        return Optional.of(new Plan(remaining, planned.size()));
+    }
+
+    /**
+     * Creates a journal for a new run.
+     *
+     * @param file    the journal file
+     * @param options the options of the run
+     * @param items   the items selected by the run
+     * @return the journal, open for recording moved items
+     * @throws IOException if the journal could not be written
+     */
+    public static RequeueJournal create(Path file, String options, List<FailedItemRequeuer.Item> items) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write("# " + options);
+            writer.newLine();
+            for (var item : items) {
+                writeLine(writer, PLANNED, item);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new RequeueJournal(file);
+    }
+
+    /**
+     * Opens the journal of an interrupted run to continue it.
+     *
+     * @param file the journal file
+     * @return the journal, open for recording moved items
+     * @throws IOException if the journal could not be opened
+     */
+    public static RequeueJournal resume(Path file) throws IOException {
+        return new RequeueJournal(file);
+    }
+
+    /**
+     * Records that an item no longer needs to be moved. The line is flushed in one write, so that concurrent callers do not interleave.
+     *
+     * @param item the item
+     * @throws IOException if the line could not be written
+     */
+    public synchronized void done(FailedItemRequeuer.Item item) throws IOException {
+        writeLine(writer, DONE, item);
+        writer.flush();
+    }
+
+    /**
+     * Closes and removes the journal, after the run has completed.
+     *
+     * @throws IOException if the journal could not be removed
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private static void writeLine(BufferedWriter writer, String type, FailedItemRequeuer.Item item) throws IOException {
+        writer.write(type + "\t" + item.getStage() + "\t" + item.getName());
+        writer.newLine();
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import lombok.Value;
+
+/**
+ * The statistics for one dd-data-vault batch: its inbox directory and the processed and failed directories in its outbox.
+ */
+@Value
+public class BatchStats {
+    String name;
+    DirectoryStats inbox;
+    DirectoryStats processed;
+    DirectoryStats failed;
+}
@@ -0,0 +1,522 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Walks directory trees in a single pass, reading the {@link BasicFileAttributes} of every entry exactly once. Subdirectories are scanned as separate fork-join tasks, so
+ * that large trees are spread over the threads of the pool. Independent trees can be scanned concurrently with the <code>scanAsync</code> methods, which run at most
+ * <code>parallelism</code> scans at the same time.
+ * <p>
+ * Several directories below a common root can be scanned in one walk with {@link #scan(Path, Collection)}. The walk goes straight to the requested directories without
+ * listing the directories in between, and a requested directory that lies inside another one is not walked twice.
+ * <p>
+ * If a {@link ScanCache} is given, directories that have not been modified since they were cached are not listed again.
+ * <p>
+ * File system calls of the fork-join tasks run as managed blocks. While such a call blocks, for instance on a mount that has stopped responding, the pool starts a
+ * spare thread, so that scans of other directories keep running. At most {@value #MAX_SPARE_THREADS} spare threads are started; beyond that, blocked calls do take
+ * threads away from other scans. The threads that run the <code>scanAsync</code> methods wait for the fork-join tasks of their scan, so a stalled scan still
+ * occupies one of the <code>parallelism</code> scan slots until it completes.
+ * <p>
+ * A scan can be given a deadline with {@link #scanAsync(Path, Instant)}. The directory itself is always listed completely, so that its counts are exact, but its
+ * subdirectories are scanned in random order and the scan returns at the deadline with whatever has been read. The size of the subdirectories that were not read is
+ * then estimated from the ones that were.
+ */
+@Slf4j
+public class DirectoryScanner implements AutoCloseable {
+    private static final int MAX_SPARE_THREADS = 64;
+
+    private final ForkJoinPool pool;
+    private final ExecutorService executor;
+    private final ScanCache cache;
+
+    public DirectoryScanner(int parallelism) {
+        this(parallelism, null);
+    }
+
+    public DirectoryScanner(int parallelism, ScanCache cache) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got: " + parallelism);
+        }
+        // Threads blocked in a managed block are replaced by spare threads, up to a limit
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false, 0, parallelism + MAX_SPARE_THREADS, 1,
+            p -> true, 60, TimeUnit.SECONDS);
+        var threadCount = new AtomicInteger();
+        // Daemon threads, so that a scan stuck on an unresponsive mount does not keep the JVM alive
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            var thread = new Thread(r, "directory-scanner-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = cache;
+    }
+
+    /**
+     * Scans the tree rooted at <code>dir</code>. A directory that does not exist yields {@link DirectoryStats#EMPTY}.
+     *
+     * @param dir the directory to scan
+     * @return the statistics for the tree
+     * @throws IOException if the tree could not be read
+     */
+    public DirectoryStats scan(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return DirectoryStats.EMPTY;
+        }
+        return scan(dir, List.of(dir)).get(dir);
+    }
+
+    /**
+     * Scans the given directories below <code>root</code> in a single walk. Directories that do not exist yield {@link DirectoryStats#EMPTY}.
+     *
+     * @param root    the common root of the directories
+     * @param targets the directories to scan; each must be <code>root</code> or lie below it
+     * @return the statistics for each of the targets, keyed by the paths as passed in
+     * @throws IOException if one of the trees could not be read
+     */
+    public Map<Path, DirectoryStats> scan(Path root, Collection<Path> targets) throws IOException {
+        return scan(root, targets, new ConcurrentHashMap<>());
+    }
+
+    private Map<Path, DirectoryStats> scan(Path root, Collection<Path> targets, Map<Path, DirectoryStats> results) throws IOException {
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        var rootTarget = new Target();
+        for (Path target : targets) {
+            Path relative = absoluteRoot.relativize(target.toAbsolutePath().normalize());
+            if (relative.startsWith("..")) {
+                throw new IllegalArgumentException(target + " is not below " + root);
+            }
+            var node = rootTarget;
+            if (!relative.toString().isEmpty()) {
+                for (Path name : relative) {
+                    node = node.children.computeIfAbsent(name.toString(), n -> new Target());
+                }
+            }
+            node.paths.add(target);
+        }
+
+        try {
+            pool.invoke(new ScanTask(root, null, rootTarget, rootTarget.isTarget(), results));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (Path target : targets) {
+            results.putIfAbsent(target, DirectoryStats.EMPTY);
+        }
+        return results;
+    }
+
+    /**
+     * Schedules a scan of the tree rooted at <code>dir</code> on the scanner's bounded executor.
+     *
+     * @param dir the directory to scan
+     * @return a future that completes with the statistics for the tree, or exceptionally if the tree could not be read
+     */
+    public CompletableFuture<DirectoryStats> scanAsync(Path dir) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return scan(dir);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Schedules a single walk over the given directories below <code>root</code> on the scanner's bounded executor.
+     *
+     * @param root    the common root of the directories
+     * @param targets the directories to scan
+     * @return a future that completes with the statistics for each of the targets, or exceptionally if one of the trees could not be read
+     * @see #scan(Path, Collection)
+     */
+    public CompletableFuture<Map<Path, DirectoryStats>> scanAsync(Path root, Collection<Path> targets) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return scan(root, targets);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Schedules a single walk over the given directories below <code>root</code> on the scanner's bounded executor, putting the statistics of each target into
+     * <code>results</code> as soon as that target has been scanned. If the walk is abandoned, for instance because it takes too long, <code>results</code> holds the
+     * targets that were completed so far.
+     *
+     * @param root    the common root of the directories
+     * @param targets the directories to scan
+     * @param results receives the statistics for each of the targets; must be safe for concurrent updates
+     * @return a future that completes with <code>results</code>, or exceptionally if one of the trees could not be read
+     * @see #scan(Path, Collection)
+     */
+    public CompletableFuture<Map<Path, DirectoryStats>> scanAsync(Path root, Collection<Path> targets, ConcurrentHashMap<Path, DirectoryStats> results) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return scan(root, targets, results);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Schedules a scan of the tree rooted at <code>dir</code> that completes no later than <code>deadline</code>. If the subdirectories of <code>dir</code> cannot all
+     * be scanned before the deadline, the file and byte totals are estimated from a random sample of them; see {@link DirectoryStats#getBytesRange()}.
+     *
+     * @param dir      the directory to scan
+     * @param deadline the time at which the result must be available
+     * @return a future that completes with the statistics for the tree, or exceptionally if <code>dir</code> itself could not be read
+     */
+    public CompletableFuture<DirectoryStats> scanAsync(Path dir, Instant deadline) {
+        return CompletableFuture.supplyAsync(() -> {
+            var top = new Totals();
+            List<Path> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    }
+                    catch (NoSuchFileException e) {
+                        continue;
+                    }
+                    top.entries++;
+                    if (entry.getFileName().toString().endsWith(".zip")) {
+                        top.zips++;
+                    }
+                    if (attrs.isDirectory()) {
+                        top.directories++;
+                        subdirectories.add(entry);
+                    }
+                    else if (attrs.isRegularFile()) {
+                        top.files++;
+                        top.bytes += attrs.size();
+                    }
+                }
+            }
+            catch (NoSuchFileException | NotDirectoryException e) {
+                return null;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Collections.shuffle(subdirectories);
+            return new Listing(top, subdirectories);
+        }, executor).thenCompose(listing -> {
+            if (listing == null) {
+                return CompletableFuture.completedFuture(DirectoryStats.EMPTY);
+            }
+            List<CompletableFuture<DirectoryStats>> samples = listing.subdirectories.stream()
+                .map(this::scanAsync)
+                .collect(Collectors.toList());
+            long remaining = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+            return CompletableFuture.allOf(samples.toArray(CompletableFuture[]::new))
+                .exceptionally(e -> null)
+                .completeOnTimeout(null, remaining, TimeUnit.MILLISECONDS)
+                .thenApply(v -> {
+                    // Only an unbroken prefix of the random order counts: small subdirectories finish first and would otherwise be over-represented
+                    List<DirectoryStats> completed = new ArrayList<>();
+                    for (var sample : samples) {
+                        if (!sample.isDone() || sample.isCompletedExceptionally()) {
+                            break;
+                        }
+                        completed.add(sample.join());
+                    }
+                    samples.forEach(sample -> sample.cancel(false));
+                    if (completed.size() < samples.size()) {
+                        log.debug("Scan budget of {} used up after {} of {} subdirectories, estimating", dir, completed.size(), samples.size());
+                    }
+                    return estimate(listing.top.toStats(), completed, samples.size());
+                });
+        });
+    }
+
+    /**
+     * Combines the statistics of a directory's own entries with those of a random sample of its subdirectories into an estimate for the whole tree.
+     *
+     * @param top            the statistics of the directory's direct entries only
+     * @param samples        the statistics of the sampled subdirectories
+     * @param subdirectories the total number of subdirectories
+     * @return the exact statistics if all subdirectories were sampled, otherwise an estimate
+     */
+    static DirectoryStats estimate(DirectoryStats top, List<DirectoryStats> samples, int subdirectories) {
+        long knownFiles = top.getFiles() + samples.stream().mapToLong(DirectoryStats::getFiles).sum();
+        long knownBytes = top.getBytes() + samples.stream().mapToLong(DirectoryStats::getBytes).sum();
+        int n = samples.size();
+        if (n == subdirectories) {
+            return new DirectoryStats(top.getEntries(), top.getZips(), top.getDirectories(), knownFiles, knownBytes);
+        }
+        if (n < 2) {
+            // Not enough to say anything about the spread; report what is known as a lower bound
+            long bytes = n == 0 ? knownBytes : knownBytes + (subdirectories - n) * samples.get(0).getBytes();
+            long files = n == 0 ? knownFiles : knownFiles + (subdirectories - n) * samples.get(0).getFiles();
+            return new DirectoryStats(top.getEntries(), top.getZips(), top.getDirectories(), files, bytes,
+                new DirectoryStats.Range(knownBytes, DirectoryStats.Range.UNBOUNDED));
+        }
+        double meanBytes = samples.stream().mapToLong(DirectoryStats::getBytes).average().orElse(0);
+        double meanFiles = samples.stream().mapToLong(DirectoryStats::getFiles).average().orElse(0);
+        double variance = samples.stream().mapToDouble(sample -> Math.pow(sample.getBytes() - meanBytes, 2)).sum() / (n - 1);
+        int unread = subdirectories - n;
+        long bytes = knownBytes + Math.round(unread * meanBytes);
+        // 95% confidence interval of the estimated total, with finite population correction
+        double halfWidth = 1.96 * subdirectories * Math.sqrt(variance / n) * Math.sqrt((double) unread / subdirectories);
+        return new DirectoryStats(top.getEntries(), top.getZips(), top.getDirectories(), knownFiles + Math.round(unread * meanFiles), bytes,
+            new DirectoryStats.Range(Math.max(knownBytes, Math.round(bytes - halfWidth)), Math.round(bytes + halfWidth)));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * Node in the tree of requested directories.
+     */
+    private static class Target {
+        private final List<Path> paths = new ArrayList<>();
+        private final Map<String, Target> children = new HashMap<>();
+
+        private boolean isTarget() {
+            return !paths.isEmpty();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Listing {
+        private final Totals top;
+        private final List<Path> subdirectories;
+    }
+
+    private static class Totals {
+        private long entries;
+        private long zips;
+        private long directories;
+        private long files;
+        private long bytes;
+        // Of the direct entries only; not part of the statistics
+        private long newestFile = Long.MIN_VALUE;
+
+        private void addTree(Totals other) {
+            files += other.files;
+            bytes += other.bytes;
+        }
+
+        private DirectoryStats toStats() {
+            return new DirectoryStats(entries, zips, directories, files, bytes);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Runs a file system call as a {@link ForkJoinPool.ManagedBlocker}, so that the pool can start a spare thread while the call blocks. A scan stuck on a mount
+     * that has stopped responding then does not keep the scans of other mounts from running.
+     */
+    private static <T> T blocking(IoCall<T> call) throws IOException {
+        var blocker = new ForkJoinPool.ManagedBlocker() {
+            private T result;
+            private IOException error;
+            private boolean done;
+
+            @Override
+            public boolean block() {
+                try {
+                    result = call.call();
+                }
+                catch (IOException e) {
+                    error = e;
+                }
+                done = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return done;
+            }
+        };
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning");
+        }
+        if (blocker.error != null) {
+            throw blocker.error;
+        }
+        return blocker.result;
+    }
+
+    private class ScanTask extends RecursiveTask<Totals> {
+        private final Path dir;
+        private final BasicFileAttributes attributes;
+        private final Target target;
+        private final boolean full;
+        private final Map<Path, DirectoryStats> results;
+
+        /**
+         * @param dir        the directory to scan
+         * @param attributes the attributes of the directory if they were already read while listing its parent, otherwise <code>null</code>
+         * @param target     the node for this directory in the tree of requested directories, or <code>null</code> if there are no requested directories below it
+         * @param full       whether the whole tree must be scanned; if not, only the requested directories below it are visited
+         * @param results    the statistics of the requested directories
+         */
+        private ScanTask(Path dir, BasicFileAttributes attributes, Target target, boolean full, Map<Path, DirectoryStats> results) {
+            this.dir = dir;
+            this.attributes = attributes;
+            this.target = target;
+            this.full = full;
+            this.results = results;
+        }
+
+        @Override
+        protected Totals compute() {
+            var totals = new Totals();
+            if (!full) {
+                ForkJoinTask.invokeAll(target.children.entrySet().stream()
+                    .map(e -> new ScanTask(dir.resolve(e.getKey()), null, e.getValue(), e.getValue().isTarget(), results))
+                    .collect(Collectors.toList()));
+                return totals;
+            }
+
+            List<String> subdirectories = new ArrayList<>();
+            try {
+                long modified = cache == null ? 0 : blocking(this::readAttributes).lastModifiedTime().toMillis();
+                var cached = cache == null ? null : cache.lookup(dir, modified);
+                if (cached != null) {
+                    totals.entries = cached.getEntries();
+                    totals.zips = cached.getZips();
+                    totals.directories = cached.getDirectories();
+                    totals.files = cached.getFiles();
+                    totals.bytes = cached.getBytes();
+                    return addSubtrees(totals, cached.getSubdirectories().stream()
+                        .map(name -> subtask(name, null))
+                        .collect(Collectors.toList()));
+                }
+
+                List<ScanTask> subtasks = new ArrayList<>();
+                blocking(() -> {
+                    list(totals, subdirectories, subtasks);
+                    return null;
+                });
+                if (cache != null) {
+                    cache.store(dir, new ScanCache.Entry(modified, totals.entries, totals.zips, totals.directories, totals.files, totals.bytes, subdirectories),
+                        totals.newestFile);
+                }
+                return addSubtrees(totals, subtasks);
+            }
+            catch (NoSuchFileException e) {
+                log.debug("Directory disappeared during scan: {}", dir);
+                return totals;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ScanTask subtask(String name, BasicFileAttributes attrs) {
+            return new ScanTask(dir.resolve(name), attrs, target == null ? null : target.children.get(name), true, results);
+        }
+
+        private BasicFileAttributes readAttributes() throws IOException {
+            return attributes != null ? attributes : Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+
+        private void list(Totals totals, List<String> subdirectories, List<ScanTask> subtasks) throws IOException {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    }
+                    catch (NoSuchFileException e) {
+                        // Moved away by the pipeline while we were scanning
+                        continue;
+                    }
+                    String name = entry.getFileName().toString();
+                    totals.entries++;
+                    if (name.endsWith(".zip")) {
+                        totals.zips++;
+                    }
+                    if (attrs.isDirectory()) {
+                        totals.directories++;
+                        subdirectories.add(name);
+                        subtasks.add(subtask(name, attrs));
+                    }
+                    else if (attrs.isRegularFile()) {
+                        totals.files++;
+                        totals.bytes += attrs.size();
+                        totals.newestFile = Math.max(totals.newestFile, attrs.lastModifiedTime().toMillis());
+                    }
+                }
+            }
+        }
+
+        private Totals addSubtrees(Totals totals, List<ScanTask> subtasks) {
+            for (ScanTask subtask : ForkJoinTask.invokeAll(subtasks)) {
+                totals.addTree(subtask.join());
+            }
+            if (target != null && target.isTarget()) {
+                var stats = totals.toStats();
+                for (Path path : target.paths) {
+                    results.put(path, stats);
+                }
+            }
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import lombok.Value;
+
+/**
+ * The result of scanning a directory tree. The entry, zip and directory counts refer to the direct children of the scanned directory; the file and byte totals cover the
+ * whole tree.
+ * <p>
+ * The file and byte totals may be estimates, if the scan had to stop before the whole tree was read. In that case {@link #getBytesRange()} gives the range in which the
+ * byte total lies with 95% confidence. The counts of direct children are always exact.
+ * <p>
+ * If the directory could not be read at all, because the scan timed out or failed, the {@link #getStatus() status} says so and all counts are zero. Such a result must
+ * not be reported as an empty directory.
+ */
+@Value
+public class DirectoryStats {
+    public static final DirectoryStats EMPTY = new DirectoryStats(0, 0, 0, 0, 0);
+    public static final DirectoryStats TIMED_OUT = new DirectoryStats(0, 0, 0, 0, 0, null, Status.TIMED_OUT);
+    public static final DirectoryStats ERROR = new DirectoryStats(0, 0, 0, 0, 0, null, Status.ERROR);
+
+    public enum Status {
+        OK,
+        /**
+         * The scan did not finish before its deadline, for instance because the file system stopped responding.
+         */
+        TIMED_OUT,
+        /**
+         * The directory could not be read.
+         */
+        ERROR
+    }
+
+    long entries;
+    long zips;
+    long directories;
+    long files;
+    long bytes;
+    Range bytesRange;
+    Status status;
+
+    @Value
+    public static class Range {
+        public static final long UNBOUNDED = -1;
+
+        long low;
+        /**
+         * The upper bound, or {@link #UNBOUNDED} if too little of the tree was read to give one.
+         */
+        long high;
+    }
+
+    public DirectoryStats(long entries, long zips, long directories, long files, long bytes) {
+        this(entries, zips, directories, files, bytes, null);
+    }
+
+    public DirectoryStats(long entries, long zips, long directories, long files, long bytes, Range bytesRange) {
+        this(entries, zips, directories, files, bytes, bytesRange, Status.OK);
+    }
+
+    private DirectoryStats(long entries, long zips, long directories, long files, long bytes, Range bytesRange, Status status) {
+        this.entries = entries;
+        this.zips = zips;
+        this.directories = directories;
+        this.files = files;
+        this.bytes = bytes;
+        this.bytesRange = bytesRange;
+        this.status = status;
+    }
+
+    public boolean isEstimated() {
+        return bytesRange != null;
+    }
+
+    /**
+     * @return whether the directory could not be read, so that the counts are unknown rather than zero
+     */
+    public boolean isDegraded() {
+        return status != Status.OK;
+    }
+}
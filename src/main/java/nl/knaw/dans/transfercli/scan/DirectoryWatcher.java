@@ -0,0 +1,554 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the statistics of a set of directories up to date from {@link WatchService} events, so that they do not have to be rescanned as a whole. The statistics are
+ * kept per direct entry: a created or modified entry is sized on its own and a deleted entry is simply dropped.
+ * <p>
+ * The subtree of a directory entry is watched as well, so that an item that grows after it was moved in is noticed. Events only mark an entry as changed; changed
+ * entries are sized once per call to {@link #awaitEvents(Duration)}, so that a file that is being written does not cause a scan per event.
+ * <p>
+ * The subtrees of directory entries are sized with the function passed to the constructor, all changed entries at the same time, so that the caller can apply its
+ * scan timeout and limit on scans per mount. An entry whose size is not available, because its scan timed out or failed, makes its directory report
+ * {@link DirectoryStats#TIMED_OUT} or {@link DirectoryStats#ERROR} until it has been sized again, which is tried on the next call to
+ * {@link #awaitEvents(Duration)}.
+ * A directory can also be watched without the subtrees of its entries, if it holds few entries that change, or entries that never change; see
+ * {@link #watch(Path, boolean)}. An entry whose subtree is not watched, or cannot be watched because the limit on the number of watches was reached, is sized
+ * again on every call to {@link #awaitEvents(Duration)}.
+ * <p>
+ * A watched directory may lie inside the subtree of an entry of another one. The file system then hands out a single watch key for it, which is shared by both and
+ * only cancelled when neither needs it any more.
+ * <p>
+ * A directory is rescanned completely if its event queue overflowed, or if its modification time changed without any events having been delivered for it. The latter
+ * happens on file systems that do not support change notification, such as NFS. On such file systems, growth inside an entry that does not change the directory
+ * itself is not noticed. Directories that do not exist yet are picked up as soon as they appear.
+ * <p>
+ * Instances are not thread-safe; events are processed on the thread that calls {@link #awaitEvents(Duration)}.
+ */
+@Slf4j
+public class DirectoryWatcher implements AutoCloseable {
+    private final Function<Path, CompletableFuture<DirectoryStats>> sizer;
+    private final WatchService watchService;
+    private final Map<Path, WatchedDirectory> watched = new LinkedHashMap<>();
+    private final Map<WatchKey, Registration> registrations = new HashMap<>();
+    private long events;
+    private long rescans;
+    private boolean watchFailureReported;
+
+    @Value
+    private static class Entry {
+        boolean directory;
+        long files;
+        long bytes;
+        DirectoryStats.Status status;
+    }
+
+    @Value
+    private static class Subtree {
+        WatchedDirectory owner;
+        String entry;
+        Path dir;
+    }
+
+    /**
+     * The owners of a watch key: the watched directory it was registered for, if any, and the entries of other watched directories in whose subtree it lies.
+     */
+    private static class Registration {
+        private WatchedDirectory watchedDir;
+        private final Set<Subtree> subtrees = new LinkedHashSet<>();
+
+        private boolean isUnused() {
+            return watchedDir == null && subtrees.isEmpty();
+        }
+    }
+
+    private static class WatchedDirectory {
+        private final Path dir;
+        private final boolean recursive;
+        private final Map<String, Entry> entries = new HashMap<>();
+        private final Map<String, Set<WatchKey>> subtreeKeys = new HashMap<>();
+        private final Set<String> changed = new HashSet<>();
+        // Directory entries whose subtree is not watched; these are sized again on every call to awaitEvents
+        private final Set<String> polled = new HashSet<>();
+        private WatchKey key;
+        private FileTime modified;
+        private boolean dirty = true;
+        private boolean eventsSeen;
+        private boolean failed;
+
+        private WatchedDirectory(Path dir, boolean recursive) {
+            this.dir = dir;
+            this.recursive = recursive;
+        }
+    }
+
+    public DirectoryWatcher(DirectoryScanner scanner) throws IOException {
+        this(scanner::scanAsync);
+    }
+
+    /**
+     * @param sizer sizes the subtree of a directory entry; the returned future should complete with {@link DirectoryStats#TIMED_OUT} rather than never
+     * @throws IOException if no watch service could be created
+     */
+    public DirectoryWatcher(Function<Path, CompletableFuture<DirectoryStats>> sizer) throws IOException {
+        this.sizer = sizer;
+        this.watchService = Path.of("").getFileSystem().newWatchService();
+    }
+
+    /**
+     * Adds a directory to watch, together with the subtrees of its entries. It is scanned on the next call to {@link #refresh()}.
+     *
+     * @param dir the directory
+     */
+    public void watch(Path dir) {
+        watch(dir, true);
+    }
+
+    /**
+     * Adds a directory to watch. It is scanned on the next call to {@link #refresh()}. Watching a directory that is already watched has no effect.
+     *
+     * @param dir       the directory
+     * @param recursive whether to watch the subtrees of its directory entries as well; if not, these are sized again on every call to
+     *                  {@link #awaitEvents(Duration)}
+     */
+    public void watch(Path dir, boolean recursive) {
+        watched.computeIfAbsent(dir, d -> new WatchedDirectory(d, recursive));
+    }
+
+    /**
+     * Registers directories that have appeared, and rescans directories that overflowed or that changed without delivering events.
+     */
+    public void refresh() {
+        // Register all directories before watching any subtrees, so that the subtrees cannot use up the watches that the directories themselves need
+        for (var watchedDir : watched.values()) {
+            if (watchedDir.key == null && Files.isDirectory(watchedDir.dir)) {
+                register(watchedDir);
+            }
+        }
+        Map<WatchedDirectory, Set<String>> listed = new LinkedHashMap<>();
+        for (var watchedDir : watched.values()) {
+            FileTime modified = readModified(watchedDir.dir);
+            if (modified != null && !modified.equals(watchedDir.modified) && !watchedDir.eventsSeen) {
+                if (watchedDir.modified != null) {
+                    log.debug("{} changed without delivering events; rescanning", watchedDir.dir);
+                }
+                watchedDir.dirty = true;
+            }
+            watchedDir.modified = modified;
+            watchedDir.eventsSeen = false;
+            if (watchedDir.dirty) {
+                listed.put(watchedDir, rescan(watchedDir));
+            }
+        }
+        sizeEntries(listed);
+    }
+
+    /**
+     * Processes events until <code>timeout</code> has passed.
+     *
+     * @param timeout how long to wait for events
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitEvents(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            WatchKey key;
+            try {
+                key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+            }
+            catch (ClosedWatchServiceException e) {
+                return;
+            }
+            if (key == null) {
+                break;
+            }
+            var registration = registrations.get(key);
+            if (registration == null) {
+                key.cancel();
+                continue;
+            }
+            List<WatchEvent<?>> keyEvents = key.pollEvents();
+            events += keyEvents.size();
+            for (WatchEvent<?> event : keyEvents) {
+                if (registration.watchedDir != null) {
+                    handle(registration.watchedDir, event);
+                }
+                for (var subtree : List.copyOf(registration.subtrees)) {
+                    // Handling an earlier owner may have removed this one
+                    if (registration.subtrees.contains(subtree)) {
+                        handle(subtree, event);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                // The directory itself is gone
+                registrations.remove(key);
+                for (var subtree : registration.subtrees) {
+                    var keys = subtree.getOwner().subtreeKeys.get(subtree.getEntry());
+                    if (keys != null) {
+                        keys.remove(key);
+                    }
+                }
+                var watchedDir = registration.watchedDir;
+                if (watchedDir != null) {
+                    watchedDir.key = null;
+                    unwatchSubtrees(watchedDir);
+                    watchedDir.polled.clear();
+                    watchedDir.entries.clear();
+                    watchedDir.modified = null;
+                }
+            }
+        }
+        sizeChangedEntries();
+    }
+
+    /**
+     * @param dir a watched directory
+     * @return the statistics of the directory, or {@link DirectoryStats#ERROR} if its last rescan failed
+     */
+    public DirectoryStats getStats(Path dir) {
+        var watchedDir = watched.get(dir);
+        if (watchedDir == null) {
+            return DirectoryStats.EMPTY;
+        }
+        if (watchedDir.failed) {
+            return DirectoryStats.ERROR;
+        }
+        long zips = 0, directories = 0, files = 0, bytes = 0;
+        boolean error = false;
+        for (var e : watchedDir.entries.entrySet()) {
+            if (e.getValue().getStatus() == DirectoryStats.Status.TIMED_OUT) {
+                return DirectoryStats.TIMED_OUT;
+            }
+            error |= e.getValue().getStatus() == DirectoryStats.Status.ERROR;
+            if (e.getKey().endsWith(".zip")) {
+                zips++;
+            }
+            if (e.getValue().isDirectory()) {
+                directories++;
+            }
+            files += e.getValue().getFiles();
+            bytes += e.getValue().getBytes();
+        }
+        if (error) {
+            return DirectoryStats.ERROR;
+        }
+        return new DirectoryStats(watchedDir.entries.size(), zips, directories, files, bytes);
+    }
+
+    /**
+     * @param dir a watched directory
+     * @return the names of the subdirectories of <code>dir</code>, sorted
+     */
+    public List<String> getSubdirectories(Path dir) {
+        var watchedDir = watched.get(dir);
+        if (watchedDir == null) {
+            return List.of();
+        }
+        return watchedDir.entries.entrySet().stream()
+            .filter(e -> e.getValue().isDirectory())
+            .map(Map.Entry::getKey)
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    public int getWatchedDirectories() {
+        return watched.size();
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getRescans() {
+        return rescans;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void register(WatchedDirectory watchedDir) {
+        try {
+            watchedDir.key = register(watchedDir.dir);
+            // The directory may already be watched as part of the subtree of another one, in which case the key is shared
+            registrations.computeIfAbsent(watchedDir.key, k -> new Registration()).watchedDir = watchedDir;
+            watchedDir.dirty = true;
+        }
+        catch (IOException e) {
+            log.warn("Could not watch {}; relying on periodic rescans", watchedDir.dir, e);
+        }
+    }
+
+    private WatchKey register(Path dir) throws IOException {
+        return dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    private void handle(WatchedDirectory watchedDir, WatchEvent<?> event) {
+        watchedDir.eventsSeen = true;
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            watchedDir.dirty = true;
+            return;
+        }
+        String name = event.context().toString();
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            unwatchSubtree(watchedDir, name);
+            watchedDir.entries.remove(name);
+            return;
+        }
+        // Watch before sizing, so that nothing written in between is missed
+        watchEntry(watchedDir, watchedDir.dir.resolve(name));
+        watchedDir.changed.add(name);
+    }
+
+    private void handle(Subtree subtree, WatchEvent<?> event) {
+        var owner = subtree.getOwner();
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            // Directories created inside the entry may have been missed as well
+            owner.dirty = true;
+            return;
+        }
+        owner.changed.add(subtree.getEntry());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+            Path created = subtree.getDir().resolve((Path) event.context());
+            if (Files.isDirectory(created, LinkOption.NOFOLLOW_LINKS)) {
+                watchSubtree(owner, subtree.getEntry(), created);
+            }
+        }
+    }
+
+    private void sizeChangedEntries() {
+        Map<WatchedDirectory, Set<String>> names = new LinkedHashMap<>();
+        for (var watchedDir : watched.values()) {
+            Set<String> dirNames = new HashSet<>(watchedDir.changed);
+            dirNames.addAll(watchedDir.polled);
+            watchedDir.changed.clear();
+            names.put(watchedDir, dirNames);
+        }
+        sizeEntries(names);
+    }
+
+    /**
+     * Sizes the given entries of each directory, all at the same time, and waits for the results. Entries that are gone are dropped; entries whose size is not
+     * available are marked as changed, so that they are sized again.
+     */
+    private void sizeEntries(Map<WatchedDirectory, Set<String>> names) {
+        Map<WatchedDirectory, Map<String, CompletableFuture<Entry>>> sizing = new LinkedHashMap<>();
+        names.forEach((watchedDir, dirNames) -> {
+            Map<String, CompletableFuture<Entry>> futures = new HashMap<>();
+            dirNames.forEach(name -> futures.put(name, sizeEntry(watchedDir.dir.resolve(name))));
+            sizing.put(watchedDir, futures);
+        });
+        sizing.forEach((watchedDir, futures) -> futures.forEach((name, future) -> {
+            var entry = future.join();
+            if (entry == null) {
+                unwatchSubtree(watchedDir, name);
+                watchedDir.entries.remove(name);
+                return;
+            }
+            watchedDir.entries.put(name, entry);
+            if (entry.getStatus() != DirectoryStats.Status.OK) {
+                watchedDir.changed.add(name);
+            }
+        }));
+    }
+
+    private void watchEntry(WatchedDirectory watchedDir, Path path) {
+        String name = path.getFileName().toString();
+        if (watchedDir.subtreeKeys.containsKey(name) || watchedDir.polled.contains(name) || !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (watchedDir.recursive) {
+            watchSubtree(watchedDir, name, path);
+        }
+        else {
+            watchedDir.polled.add(name);
+        }
+    }
+
+    private void watchSubtree(WatchedDirectory owner, String name, Path dir) {
+        var keys = owner.subtreeKeys.computeIfAbsent(name, n -> new HashSet<>());
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                    try {
+                        var key = register(d);
+                        registrations.computeIfAbsent(key, k -> new Registration()).subtrees.add(new Subtree(owner, name, d));
+                        keys.add(key);
+                    }
+                    catch (IOException e) {
+                        reportWatchFailure(d, e);
+                        // The rest of the subtree would most likely fail as well
+                        owner.polled.add(name);
+                        return FileVisitResult.TERMINATE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException e) {
+            log.debug("Could not watch the subtree of {}", dir, e);
+            owner.polled.add(name);
+        }
+    }
+
+    private void reportWatchFailure(Path dir, IOException e) {
+        if (watchFailureReported) {
+            log.debug("Could not watch {}", dir, e);
+            return;
+        }
+        // Most likely the limit on the number of watches (fs.inotify.max_user_watches); only the first failure is worth a warning
+        log.warn("Could not watch {}: {}; entries whose subtree cannot be watched are sized again on every refresh", dir, e.toString());
+        watchFailureReported = true;
+    }
+
+    private void unwatchSubtree(WatchedDirectory owner, String name) {
+        owner.changed.remove(name);
+        owner.polled.remove(name);
+        var keys = owner.subtreeKeys.remove(name);
+        if (keys != null) {
+            for (var key : keys) {
+                var registration = registrations.get(key);
+                if (registration != null) {
+                    registration.subtrees.removeIf(subtree -> subtree.getOwner() == owner && subtree.getEntry().equals(name));
+                }
+                // Only cancel keys that no other watched directory or subtree depends on
+                if (registration == null || registration.isUnused()) {
+                    key.cancel();
+                    registrations.remove(key);
+                }
+            }
+        }
+    }
+
+    private void unwatchSubtrees(WatchedDirectory owner) {
+        for (String name : List.copyOf(owner.subtreeKeys.keySet())) {
+            unwatchSubtree(owner, name);
+        }
+    }
+
+    /**
+     * Lists a directory again and watches its entries.
+     *
+     * @return the names of the entries, to be sized
+     */
+    private Set<String> rescan(WatchedDirectory watchedDir) {
+        rescans++;
+        unwatchSubtrees(watchedDir);
+        watchedDir.polled.clear();
+        watchedDir.entries.clear();
+        watchedDir.dirty = false;
+        watchedDir.failed = false;
+        Set<String> names = new HashSet<>();
+        if (!Files.isDirectory(watchedDir.dir)) {
+            return names;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(watchedDir.dir)) {
+            for (Path path : entries) {
+                watchEntry(watchedDir, path);
+                names.add(path.getFileName().toString());
+            }
+        }
+        catch (IOException e) {
+            log.warn("Could not scan {}", watchedDir.dir, e);
+            watchedDir.dirty = true;
+            watchedDir.failed = true;
+        }
+        return names;
+    }
+
+    /**
+     * @return the entry, or <code>null</code> if it is gone
+     */
+    private CompletableFuture<Entry> sizeEntry(Path path) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+        catch (NoSuchFileException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+        catch (IOException e) {
+            log.debug("Could not read the attributes of {}", path, e);
+            return CompletableFuture.completedFuture(new Entry(false, 0, 0, DirectoryStats.Status.ERROR));
+        }
+        if (attrs.isDirectory()) {
+            return sizer.apply(path)
+                .thenApply(stats -> new Entry(true, stats.getFiles(), stats.getBytes(), stats.getStatus()))
+                .exceptionally(e -> {
+                    log.debug("Could not size {}", path, e);
+                    return new Entry(true, 0, 0, DirectoryStats.Status.ERROR);
+                });
+        }
+        var entry = attrs.isRegularFile() ? new Entry(false, 1, attrs.size(), DirectoryStats.Status.OK) : new Entry(false, 0, 0, DirectoryStats.Status.OK);
+        return CompletableFuture.completedFuture(entry);
+    }
+
+    private FileTime readModified(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+}
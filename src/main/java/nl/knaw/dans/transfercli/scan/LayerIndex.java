@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Append-only index of the archived layers of a data vault. Archived layers never change once written, so the size and file count of each layer only have to be
+ * computed the first time it is seen. After that, summarizing the archive only requires listing the archive directory and sizing the layers that are not in the index
+ * yet.
+ * <p>
+ * The index file consists of a magic number followed by fixed-layout records: the length of the UTF-8 encoded layer name, the name, a directory flag, the file count
+ * and the byte total. A record that was only partially written, for instance because the process was killed, or whose name length is impossible, is truncated
+ * together with everything after it when the index is loaded. A file that does not start with the magic number is taken to be corrupt and is emptied, so that
+ * the index is rebuilt. Loading and appending take a lock on the index file, so that concurrent runs neither write the magic number twice nor truncate a record
+ * that another run is writing. Within a process, scans of one instance are serialized, so that a scan that was given up on cannot append at the same time as the
+ * next one.
+ * <p>
+ * A layer that was modified less than the settle margin ago may still be being written. It is sized on every scan, but only added to the index once it has
+ * settled, so that a partial size is never recorded. For a layer directory, only the modification time of the directory itself is looked at.
+ * <p>
+ * An index created with {@link #inMemory()} has no file; it only saves sizing the same layers again within one process.
+ */
+@Slf4j
+public class LayerIndex {
+    private static final int MAGIC = 0x4c494431; // "LID1"
+    private static final int MAX_NAME_LENGTH = 4096;
+    private static final Duration DEFAULT_SETTLE_MARGIN = Duration.ofMinutes(5);
+
+    @Value
+    private static class Layer {
+        boolean directory;
+        long files;
+        long bytes;
+    }
+
+    private final Path file;
+    private final Map<String, Layer> layers;
+    private final Duration settleMargin;
+    private int newLayers;
+
+    private LayerIndex(Path file, Map<String, Layer> layers, Duration settleMargin) {
+        this.file = file;
+        this.layers = layers;
+        this.settleMargin = settleMargin;
+    }
+
+    /**
+     * @param cacheDir the cache directory
+     * @param pipeline the name of the pipeline
+     * @return the index file for the archived layers of the pipeline
+     */
+    public static Path file(Path cacheDir, String pipeline) {
+        return cacheDir.resolve("archive-layers-" + pipeline + ".idx");
+    }
+
+    /**
+     * @return an empty index that is not backed by a file
+     */
+    public static LayerIndex inMemory() {
+        return new LayerIndex(null, new HashMap<>(), DEFAULT_SETTLE_MARGIN);
+    }
+
+    /**
+     * Loads the index from <code>file</code>. A missing file results in an empty index.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file exists but could not be read
+     */
+    public static LayerIndex load(Path file) throws IOException {
+        return load(file, DEFAULT_SETTLE_MARGIN);
+    }
+
+    static LayerIndex load(Path file, Duration settleMargin) throws IOException {
+        Map<String, Layer> layers = new HashMap<>();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        catch (NoSuchFileException e) {
+            return new LayerIndex(file, layers, settleMargin);
+        }
+        catch (AccessDeniedException e) {
+            // Someone else's index; read it as it is, without locking or repairing it
+            log.debug("Layer index {} is read-only", file);
+            try (var readOnly = FileChannel.open(file, StandardOpenOption.READ)) {
+                read(file, readOnly, layers);
+            }
+            return new LayerIndex(file, layers, settleMargin);
+        }
+        try (channel; var lock = channel.lock()) {
+            long validLength = read(file, channel, layers);
+            if (channel.size() > validLength) {
+                log.warn("Truncating invalid data at offset {} of layer index {}", validLength, file);
+                channel.truncate(validLength);
+            }
+        }
+        return new LayerIndex(file, layers, settleMargin);
+    }
+
+    /**
+     * Reads the records of an index file.
+     *
+     * @return the length of the valid part of the file, or 0 if it does not even hold a complete and correct magic number
+     */
+    private static long read(Path file, FileChannel channel, Map<String, Layer> layers) throws IOException {
+        long validLength = 0;
+        var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        try {
+            if (in.readInt() != MAGIC) {
+                log.warn("Layer index {} does not start with the magic number; ignoring its contents, so that it is rebuilt", file);
+                return 0;
+            }
+            validLength = Integer.BYTES;
+            while (true) {
+                int nameLength = in.readInt();
+                if (nameLength < 0 || nameLength > MAX_NAME_LENGTH) {
+                    log.warn("Invalid name length {} in layer index {} at offset {}", nameLength, file, validLength);
+                    break;
+                }
+                byte[] name = in.readNBytes(nameLength);
+                if (name.length < nameLength) {
+                    throw new EOFException();
+                }
+                var layer = new Layer(in.readBoolean(), in.readLong(), in.readLong());
+                layers.put(new String(name, StandardCharsets.UTF_8), layer);
+                validLength += Integer.BYTES + nameLength + 1 + 2 * Long.BYTES;
+            }
+        }
+        catch (EOFException e) {
+            // End of the index, possibly in the middle of a torn record
+        }
+        return validLength;
+    }
+
+    /**
+     * Lists <code>archiveDir</code>, sizes the layers that are not in the index yet and appends them to the index. The returned statistics cover all layers currently
+     * in the archive directory.
+     *
+     * @param archiveDir the archive directory of the data vault
+     * @param scanner    the scanner to size new layers with
+     * @return the statistics for the archive directory
+     * @throws IOException if the archive could not be read or the index could not be written
+     */
+    public synchronized DirectoryStats scan(Path archiveDir, DirectoryScanner scanner) throws IOException {
+        if (!Files.isDirectory(archiveDir)) {
+            return DirectoryStats.EMPTY;
+        }
+
+        List<String> names = new ArrayList<>();
+        Map<String, CompletableFuture<Layer>> unknown = new HashMap<>();
+        Set<String> unsettled = new HashSet<>();
+        Instant settledBefore = Instant.now().minus(settleMargin);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(archiveDir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (layers.containsKey(name)) {
+                    names.add(name);
+                    continue;
+                }
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                }
+                catch (NoSuchFileException e) {
+                    continue;
+                }
+                names.add(name);
+                unknown.put(name, sizeLayer(entry, attrs, scanner));
+                if (!attrs.lastModifiedTime().toInstant().isBefore(settledBefore)) {
+                    unsettled.add(name);
+                }
+            }
+        }
+
+        Map<String, Layer> added = new HashMap<>();
+        Map<String, Layer> current = new HashMap<>();
+        for (var e : unknown.entrySet()) {
+            try {
+                var layer = e.getValue().join();
+                (unsettled.contains(e.getKey()) ? current : added).put(e.getKey(), layer);
+            }
+            catch (CompletionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+        append(added);
+
+        long entries = 0, zips = 0, directories = 0, files = 0, bytes = 0;
+        for (String name : names) {
+            var layer = layers.containsKey(name) ? layers.get(name) : current.get(name);
+            if (layer == null) {
+                continue;
+            }
+            entries++;
+            if (name.endsWith(".zip")) {
+                zips++;
+            }
+            if (layer.isDirectory()) {
+                directories++;
+            }
+            files += layer.getFiles();
+            bytes += layer.getBytes();
+        }
+        return new DirectoryStats(entries, zips, directories, files, bytes);
+    }
+
+    /**
+     * @return the number of layers that were added to the index by this instance
+     */
+    public synchronized int getNewLayers() {
+        return newLayers;
+    }
+
+    /**
+     * @return the number of layers in the index
+     */
+    public synchronized int getKnownLayers() {
+        return layers.size();
+    }
+
+    private CompletableFuture<Layer> sizeLayer(Path layer, BasicFileAttributes attrs, DirectoryScanner scanner) {
+        if (attrs.isDirectory()) {
+            return scanner.scanAsync(layer).thenApply(stats -> new Layer(true, stats.getFiles(), stats.getBytes()));
+        }
+        return CompletableFuture.completedFuture(new Layer(false, attrs.isRegularFile() ? 1 : 0, attrs.isRegularFile() ? attrs.size() : 0));
+    }
+
+    private void append(Map<String, Layer> added) throws IOException {
+        if (added.isEmpty()) {
+            return;
+        }
+        if (file == null) {
+            layers.putAll(added);
+            newLayers += added.size();
+            return;
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE); var lock = channel.lock()) {
+            var buffer = new ByteArrayOutputStream();
+            try (var out = new DataOutputStream(new BufferedOutputStream(buffer))) {
+                // Under the lock, so that only the run that creates the file writes the magic number
+                if (channel.size() < Integer.BYTES) {
+                    channel.truncate(0);
+                    out.writeInt(MAGIC);
+                }
+                for (var e : added.entrySet()) {
+                    byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(name.length);
+                    out.write(name);
+                    out.writeBoolean(e.getValue().isDirectory());
+                    out.writeLong(e.getValue().getFiles());
+                    out.writeLong(e.getValue().getBytes());
+                }
+            }
+            var bytes = ByteBuffer.wrap(buffer.toByteArray());
+            long position = channel.size();
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+        }
+        layers.putAll(added);
+        newLayers += added.size();
+    }
+}
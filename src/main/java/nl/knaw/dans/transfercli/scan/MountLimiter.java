@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Limits the number of scans that run at the same time on each mount. A scan that hangs on a mount that has stopped responding keeps its permit, so at most
+ * <code>permitsPerMount</code> scans can get stuck on one mount. Each of them occupies one of the scan slots of the {@link DirectoryScanner}; the fork-join threads
+ * they block are replaced with spare threads, see there. Scans of the other mounts can therefore still run as long as the stalled mounts hold fewer permits in
+ * total than the scanner has slots.
+ * <p>
+ * Which mount a directory is on is decided from its path alone, by the longest of the given mount directories that contains it; asking the file system would itself hang
+ * on a stalled mount. Directories outside all mount directories share one mount per file system root.
+ * <p>
+ * A scan can be given a timeout. It starts when the scan gets its permit, so time spent waiting behind other scans of a healthy mount does not count. When a
+ * running scan times out, its mount is taken to have stalled: the scans waiting for that mount fail with a {@link TimeoutException} straight away, as do new scans
+ * of it, until one of the scans that hold its permits completes.
+ */
+public class MountLimiter {
+    private final List<Path> mounts;
+    private final int permitsPerMount;
+    private final Map<Path, Integer> running = new HashMap<>();
+    private final Map<Path, Queue<Pending<?>>> waiting = new HashMap<>();
+    private final Set<Path> stalled = new HashSet<>();
+
+    /**
+     * @param mounts          the directories to treat as separate mounts
+     * @param permitsPerMount the maximum number of scans per mount
+     */
+    public MountLimiter(Collection<Path> mounts, int permitsPerMount) {
+        if (permitsPerMount < 1) {
+            throw new IllegalArgumentException("Permits per mount must be at least 1, got: " + permitsPerMount);
+        }
+        this.mounts = mounts.stream()
+            .map(dir -> dir.toAbsolutePath().normalize())
+            .distinct()
+            .sorted(Comparator.comparingInt(Path::getNameCount).reversed())
+            .collect(Collectors.toList());
+        this.permitsPerMount = permitsPerMount;
+    }
+
+    /**
+     * Starts a scan as soon as its mount has a free permit. If the returned future has already completed when the permit becomes free, for instance because the caller
+     * gave up waiting, the scan is not started at all.
+     *
+     * @param dir  the directory that the scan reads
+     * @param scan starts the scan
+     * @param <T>  the result type of the scan
+     * @return a future that completes with the result of the scan
+     */
+    public <T> CompletableFuture<T> submit(Path dir, Supplier<CompletableFuture<T>> scan) {
+        return submit(dir, null, scan);
+    }
+
+    /**
+     * Starts a scan as soon as its mount has a free permit, like {@link #submit(Path, Supplier)}, and gives up on it if it has not completed within
+     * <code>timeout</code> after it was started. The scan itself keeps its permit until it completes.
+     *
+     * @param dir     the directory that the scan reads
+     * @param timeout the time the scan may take once started, or <code>null</code> for no limit
+     * @param scan    starts the scan
+     * @param <T>     the result type of the scan
+     * @return a future that completes with the result of the scan, or with a {@link TimeoutException} if the scan or its mount timed out
+     */
+    public <T> CompletableFuture<T> submit(Path dir, Duration timeout, Supplier<CompletableFuture<T>> scan) {
+        var pending = new Pending<>(mountOf(dir), timeout, scan);
+        if (acquire(pending)) {
+            pending.start();
+        }
+        return pending.result;
+    }
+
+    Path mountOf(Path dir) {
+        Path absolute = dir.toAbsolutePath().normalize();
+        return mounts.stream()
+            .filter(absolute::startsWith)
+            .findFirst()
+            .orElse(absolute.getRoot());
+    }
+
+    private synchronized boolean acquire(Pending<?> pending) {
+        if (stalled.contains(pending.mount)) {
+            pending.result.completeExceptionally(new TimeoutException("Mount " + pending.mount + " is not responding"));
+            return false;
+        }
+        int count = running.getOrDefault(pending.mount, 0);
+        if (count < permitsPerMount) {
+            running.put(pending.mount, count + 1);
+            return true;
+        }
+        waiting.computeIfAbsent(pending.mount, m -> new ArrayDeque<>()).add(pending);
+        return false;
+    }
+
+    /**
+     * Releases a permit of the mount, or passes it on to the next scan of the same mount.
+     *
+     * @return the scan that received the permit, or <code>null</code>
+     */
+    private Pending<?> release(Path mount) {
+        Pending<?> next;
+        synchronized (this) {
+            var queue = waiting.get(mount);
+            do {
+                next = queue == null ? null : queue.poll();
+            }
+            // Scans whose caller has given up are dropped without being started
+            while (next != null && next.result.isDone());
+            if (next == null) {
+                running.merge(mount, -1, Integer::sum);
+            }
+            // A scan on the mount has completed, so it responds again
+            stalled.remove(mount);
+        }
+        return next;
+    }
+
+    /**
+     * Marks a mount as stalled and fails the scans that are waiting for it.
+     */
+    private void stall(Path mount) {
+        List<Pending<?>> abandoned;
+        synchronized (this) {
+            stalled.add(mount);
+            var queue = waiting.remove(mount);
+            abandoned = queue == null ? List.of() : new ArrayList<>(queue);
+        }
+        abandoned.forEach(pending -> pending.result.completeExceptionally(new TimeoutException("Mount " + mount + " is not responding")));
+    }
+
+    private class Pending<T> {
+        private final Path mount;
+        private final Duration timeout;
+        private final Supplier<CompletableFuture<T>> scan;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Pending(Path mount, Duration timeout, Supplier<CompletableFuture<T>> scan) {
+            this.mount = mount;
+            this.timeout = timeout;
+            this.scan = scan;
+        }
+
+        /**
+         * Starts this scan and, as long as the scans complete immediately, the scans that receive the permit after it. Looping instead of starting the next scan from
+         * the completion of the previous one keeps the stack flat when a long queue of scans completes at once.
+         */
+        private void start() {
+            Pending<?> current = this;
+            while (current != null) {
+                current = current.startOne();
+            }
+        }
+
+        private Pending<?> startOne() {
+            CompletableFuture<T> started;
+            try {
+                started = scan.get();
+            }
+            catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return release(mount);
+            }
+            if (started.isDone()) {
+                complete(started);
+                return release(mount);
+            }
+            if (timeout != null) {
+                // Counted from now, not from when the scan was submitted; the permit stays taken until the scan itself completes
+                result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+                    if (error instanceof TimeoutException && !started.isDone()) {
+                        stall(mount);
+                    }
+                });
+            }
+            started.whenComplete((value, error) -> {
+                complete(started);
+                var next = release(mount);
+                if (next != null) {
+                    next.start();
+                }
+            });
+            return null;
+        }
+
+        private void complete(CompletableFuture<T> started) {
+            try {
+                result.complete(started.join());
+            }
+            catch (CompletionException | CancellationException e) {
+                result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            }
+        }
+    }
+}
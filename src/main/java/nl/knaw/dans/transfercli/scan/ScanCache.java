@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of per-directory scan results, keyed by path. Each entry records the modification time of a directory together with the counts and sizes of its
+ * direct entries and the names of its subdirectories. A directory whose modification time has not changed since it was cached does not have to be listed again, nor do
+ * the attributes of its files have to be read; only its subdirectories are visited.
+ * <p>
+ * Note that the modification time of a directory only changes when entries are added, removed or renamed, not when a file in it grows. Files are copied into the
+ * collect inboxes and zips are assembled in the work directory in place, so a directory is only cached once none of its files has been modified for
+ * {@link #SETTLE_MARGIN_MILLIS}. A file that is changed after that is not detected until an entry of its directory is added, removed or renamed.
+ * <p>
+ * Several runs, for instance for different pipelines, may share one cache file. Saving therefore takes a lock on a sibling <code>.lock</code> file, reads the file
+ * again and only replaces the entries that this instance stored or removed, so that the entries saved by other runs in the meantime are kept.
+ */
+@Slf4j
+public class ScanCache {
+    private static final int MAGIC = 0x53434331; // "SCC1"
+
+    // Directories modified this close to the time they were listed may still change within the same timestamp granule, so they are not cached
+    private static final long RACY_MARGIN_MILLIS = 2000;
+
+    // Directories with files modified less than this long ago may have files that are still being written, so they are not cached
+    static final long SETTLE_MARGIN_MILLIS = 5 * 60 * 1000;
+
+    @Value
+    public static class Entry {
+        long modified;
+        long entries;
+        long zips;
+        long directories;
+        long files;
+        long bytes;
+        List<String> subdirectories;
+    }
+
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // The keys stored or removed since the last save
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    private ScanCache(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Creates an empty cache that will be saved to <code>file</code>. Use this to force a full rescan while still refreshing the cache.
+     *
+     * @param file the cache file
+     * @return an empty cache
+     */
+    public static ScanCache empty(Path file) {
+        return new ScanCache(file, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Loads the cache from <code>file</code>. A missing or unreadable file results in an empty cache.
+     *
+     * @param file the cache file
+     * @return the cache
+     */
+    public static ScanCache load(Path file) {
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        try {
+            read(file, entries);
+        }
+        catch (NoSuchFileException e) {
+            log.debug("No scan cache found at {}", file);
+        }
+        catch (IOException e) {
+            log.warn("Ignoring unreadable scan cache {}: {}", file, e.getMessage());
+            entries.clear();
+        }
+        return new ScanCache(file, entries);
+    }
+
+    private static void read(Path file, Map<String, Entry> entries) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unknown format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long modified = in.readLong();
+                long directEntries = in.readLong();
+                long zips = in.readLong();
+                long directories = in.readLong();
+                long files = in.readLong();
+                long bytes = in.readLong();
+                int subdirectoryCount = in.readInt();
+                List<String> subdirectories = new ArrayList<>(subdirectoryCount);
+                for (int j = 0; j < subdirectoryCount; j++) {
+                    subdirectories.add(in.readUTF());
+                }
+                entries.put(path, new Entry(modified, directEntries, zips, directories, files, bytes, subdirectories));
+            }
+        }
+    }
+
+    /**
+     * Returns the cached entry for <code>dir</code> if it was cached with the given modification time. Every call counts as either a hit or a miss.
+     *
+     * @param dir      the directory
+     * @param modified the current modification time of the directory, in milliseconds since the epoch
+     * @return the entry, or <code>null</code> if there is no valid entry
+     */
+    public Entry lookup(Path dir, long modified) {
+        var entry = entries.get(key(dir));
+        if (entry != null && entry.getModified() == modified) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the entry for <code>dir</code>. Entries of subdirectories that no longer exist are removed. Directories that were modified too recently to be sure that
+     * the entry is complete, or that contain a file that may still be growing, are not stored.
+     *
+     * @param dir        the directory
+     * @param entry      the entry
+     * @param newestFile the latest modification time of the files directly in the directory, in milliseconds since the epoch
+     */
+    public void store(Path dir, Entry entry, long newestFile) {
+        var key = key(dir);
+        changed.add(key);
+        long now = System.currentTimeMillis();
+        boolean settled = entry.getModified() < now - RACY_MARGIN_MILLIS && newestFile < now - SETTLE_MARGIN_MILLIS;
+        var previous = settled ? entries.put(key, entry) : entries.remove(key);
+        if (previous != null) {
+            for (var subdirectory : previous.getSubdirectories()) {
+                if (!entry.getSubdirectories().contains(subdirectory)) {
+                    removeTree(dir.resolve(subdirectory));
+                }
+            }
+        }
+    }
+
+    private void removeTree(Path dir) {
+        changed.add(key(dir));
+        var entry = entries.remove(key(dir));
+        if (entry != null) {
+            for (var subdirectory : entry.getSubdirectories()) {
+                removeTree(dir.resolve(subdirectory));
+            }
+        }
+    }
+
+    /**
+     * Writes the cache to its file, merged with the entries that other runs saved in the meantime. The file is replaced atomically, so that concurrent readers never
+     * see a partially written cache.
+     *
+     * @throws IOException if the cache could not be written
+     */
+    public void save() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (var channel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            var lock = channel.lock()) {
+            merge();
+            write();
+        }
+    }
+
+    /**
+     * Takes over the entries of the file that this instance did not store or remove itself. The caller holds the lock.
+     */
+    private void merge() {
+        // Copy first, so that keys changed while merging are kept for the next save
+        var ownChanges = Set.copyOf(changed);
+        changed.removeAll(ownChanges);
+        Map<String, Entry> saved = new HashMap<>();
+        try {
+            read(file, saved);
+        }
+        catch (NoSuchFileException e) {
+            return;
+        }
+        catch (IOException e) {
+            log.warn("Overwriting unreadable scan cache {}: {}", file, e.getMessage());
+            return;
+        }
+        entries.keySet().removeIf(key -> !ownChanges.contains(key) && !saved.containsKey(key));
+        saved.forEach((key, entry) -> {
+            if (!ownChanges.contains(key)) {
+                entries.put(key, entry);
+            }
+        });
+    }
+
+    private void write() throws IOException {
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                // Copy first, so that the count matches the entries written
+                var snapshot = Map.copyOf(entries);
+                out.writeInt(MAGIC);
+                out.writeInt(snapshot.size());
+                for (var e : snapshot.entrySet()) {
+                    var entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.getModified());
+                    out.writeLong(entry.getEntries());
+                    out.writeLong(entry.getZips());
+                    out.writeLong(entry.getDirectories());
+                    out.writeLong(entry.getFiles());
+                    out.writeLong(entry.getBytes());
+                    out.writeInt(entry.getSubdirectories().size());
+                    for (var subdirectory : entry.getSubdirectories()) {
+                        out.writeUTF(subdirectory);
+                    }
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static String key(Path dir) {
+        return dir.toAbsolutePath().normalize().toString();
+    }
+}
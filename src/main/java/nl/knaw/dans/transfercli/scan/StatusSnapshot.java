@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The result of the last status scan of a pipeline, shared between processes through a memory-mapped file. A run of the status report that finds a recent enough
+ * snapshot prints it instead of walking the file system again.
+ * <p>
+ * The file starts with a header holding a sequence number, the time of the scan and the length of the encoded result, followed by the result itself. The
+ * sequence number works as a seqlock: the writer makes it odd before it changes the file and even again when it is done. A reader copies the result and accepts
+ * it only if it saw the same even sequence number before and after copying; otherwise it tries again. Readers therefore never block, and never see a partially
+ * written result.
+ * <p>
+ * There can only be one writer at a time. Writers hold the {@link #lock(Path, Runnable) scan lock}, which also makes runs that want to scan at the same time wait for
+ * each other, so that the second one can use the result of the first instead of scanning again.
+ */
+@Slf4j
+public class StatusSnapshot {
+    private static final long MAGIC = 0x5354415453534e31L; // "STATSSN1"
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int TIMESTAMP_OFFSET = 16;
+    private static final int LENGTH_OFFSET = 24;
+    private static final int HEADER_SIZE = 32;
+    private static final int MIN_CAPACITY = 64 * 1024;
+    private static final int MAX_READ_ATTEMPTS = 1000;
+
+    // Volatile access to the sequence number; the offset is 8-byte aligned in a page-aligned mapping
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    @Value
+    public static class Content {
+        long sequence;
+        Instant timestamp;
+        Map<String, DirectoryStats> stages;
+        List<BatchStats> batches;
+    }
+
+    /**
+     * Held while scanning and publishing. Closing it releases the lock.
+     */
+    public static class ScanLock implements AutoCloseable {
+        private final FileChannel channel;
+
+        private ScanLock(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static Path file(Path cacheDir, String pipeline) {
+        return cacheDir.resolve("status-" + pipeline + ".snapshot");
+    }
+
+    /**
+     * Takes the scan lock of a snapshot file, waiting for it if another process holds it.
+     *
+     * @param file    the snapshot file
+     * @param waiting called once before waiting, if the lock is held by another process
+     * @return the lock
+     * @throws IOException if the lock file could not be opened or locked
+     */
+    public static ScanLock lock(Path file, Runnable waiting) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        var channel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() == null) {
+                waiting.run();
+                channel.lock();
+            }
+            return new ScanLock(channel);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the snapshot. Does not block, not even while another process is publishing a new one.
+     *
+     * @param file the snapshot file
+     * @return the snapshot, or empty if there is none or it could not be read
+     */
+    public static Optional<Content> read(Path file) {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+                log.debug("Ignoring snapshot with unknown format: {}", file);
+                return Optional.empty();
+            }
+            for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+                long sequence = (long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET);
+                if ((sequence & 1) != 0) {
+                    // Being written
+                    Thread.onSpinWait();
+                    continue;
+                }
+                long timestamp = buffer.getLong(TIMESTAMP_OFFSET);
+                int length = buffer.getInt(LENGTH_OFFSET);
+                if (length < 0 || HEADER_SIZE + (long) length > buffer.capacity()) {
+                    if ((long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET) == sequence) {
+                        // The file has grown since it was mapped
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    }
+                    continue;
+                }
+                var payload = new byte[length];
+                buffer.get(HEADER_SIZE, payload);
+                VarHandle.acquireFence();
+                if ((long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET) != sequence) {
+                    continue;
+                }
+                if (sequence == 0) {
+                    return Optional.empty();
+                }
+                return Optional.of(decode(sequence, Instant.ofEpochMilli(timestamp), payload));
+            }
+            log.debug("Gave up reading snapshot {}: it kept changing", file);
+        }
+        catch (NoSuchFileException e) {
+            log.debug("No snapshot found at {}", file);
+        }
+        catch (IOException e) {
+            log.warn("Ignoring unreadable snapshot {}: {}", file, e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Publishes a new snapshot. The caller must hold the {@link #lock(Path, Runnable) scan lock}.
+     *
+     * @param file      the snapshot file
+     * @param timestamp the time of the scan
+     * @param stages    the statistics per stage key
+     * @param batches   the statistics per batch
+     * @return the sequence number of the new snapshot
+     * @throws IOException if the snapshot could not be written
+     */
+    public static long publish(Path file, Instant timestamp, Map<String, DirectoryStats> stages, List<BatchStats> batches) throws IOException {
+        var payload = encode(stages, batches);
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long needed = HEADER_SIZE + (long) payload.length;
+            long size = channel.size();
+            if (size < needed) {
+                // Grow in powers of two, so that readers rarely have to remap
+                size = Math.max(MIN_CAPACITY, Long.highestOneBit(needed - 1) << 1);
+                channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            long sequence = (long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET);
+            if ((sequence & 1) != 0) {
+                // The previous writer died while publishing
+                sequence++;
+            }
+            LONGS.setVolatile(buffer, SEQUENCE_OFFSET, sequence + 1);
+            // The odd sequence number must be visible before any of the plain stores below
+            VarHandle.storeStoreFence();
+            buffer.putLong(0, MAGIC);
+            buffer.putLong(TIMESTAMP_OFFSET, timestamp.toEpochMilli());
+            buffer.putInt(LENGTH_OFFSET, payload.length);
+            buffer.put(HEADER_SIZE, payload);
+            LONGS.setVolatile(buffer, SEQUENCE_OFFSET, sequence + 2);
+            return sequence + 2;
+        }
+    }
+
+    private static byte[] encode(Map<String, DirectoryStats> stages, List<BatchStats> batches) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(stages.size());
+            for (var e : stages.entrySet()) {
+                out.writeUTF(e.getKey());
+                writeStats(out, e.getValue());
+            }
+            out.writeInt(batches.size());
+            for (var batch : batches) {
+                out.writeUTF(batch.getName());
+                writeStats(out, batch.getInbox());
+                writeStats(out, batch.getProcessed());
+                writeStats(out, batch.getFailed());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Content decode(long sequence, Instant timestamp, byte[] payload) throws IOException {
+        try (var in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            Map<String, DirectoryStats> stages = new LinkedHashMap<>();
+            int stageCount = in.readInt();
+            for (int i = 0; i < stageCount; i++) {
+                stages.put(in.readUTF(), readStats(in));
+            }
+            int batchCount = in.readInt();
+            List<BatchStats> batches = new ArrayList<>(batchCount);
+            for (int i = 0; i < batchCount; i++) {
+                batches.add(new BatchStats(in.readUTF(), readStats(in), readStats(in), readStats(in)));
+            }
+            return new Content(sequence, timestamp, Collections.unmodifiableMap(stages), Collections.unmodifiableList(batches));
+        }
+    }
+
+    private static void writeStats(DataOutputStream out, DirectoryStats stats) throws IOException {
+        out.writeByte(stats.getStatus().ordinal());
+        out.writeLong(stats.getEntries());
+        out.writeLong(stats.getZips());
+        out.writeLong(stats.getDirectories());
+        out.writeLong(stats.getFiles());
+        out.writeLong(stats.getBytes());
+        out.writeBoolean(stats.isEstimated());
+        if (stats.isEstimated()) {
+            out.writeLong(stats.getBytesRange().getLow());
+            out.writeLong(stats.getBytesRange().getHigh());
+        }
+    }
+
+    private static DirectoryStats readStats(DataInputStream in) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= DirectoryStats.Status.values().length) {
+            throw new IOException("Invalid status in snapshot: " + ordinal);
+        }
+        var status = DirectoryStats.Status.values()[ordinal];
+        long entries = in.readLong();
+        long zips = in.readLong();
+        long directories = in.readLong();
+        long files = in.readLong();
+        long bytes = in.readLong();
+        var range = in.readBoolean() ? new DirectoryStats.Range(in.readLong(), in.readLong()) : null;
+        switch (status) {
+            case TIMED_OUT:
+                return DirectoryStats.TIMED_OUT;
+            case ERROR:
+                return DirectoryStats.ERROR;
+            default:
+                return new DirectoryStats(entries, zips, directories, files, bytes, range);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.verify;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies the payload files of the bags below a directory against the checksums in their <code>manifest-&lt;algorithm&gt;.txt</code> files. Every directory that
+ * contains a payload manifest is taken to be a bag. A file listed in more than one manifest of a bag is read once, and all its checksums are computed in that one
+ * pass.
+ * <p>
+ * Files are read on a fixed pool of workers. Each worker reads through its own direct buffer of {@link #BUFFER_SIZE} bytes, which is reused for every file, so
+ * hashing does not allocate per read. At most twice as many files as there are workers are queued at a time. All reads go through one {@link RateLimiter}, so
+ * that verification can be throttled while the pipeline is running on the same storage.
+ * <p>
+ * A file that cannot be read is reported as a problem. Any other failure of a worker stops the verification: no more files are queued, and
+ * {@link #verify(Path)} throws once the queued files are done, so that an incomplete verification is never reported as a valid one.
+ */
+public class ChecksumVerifier implements AutoCloseable {
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    private static final Pattern MANIFEST = Pattern.compile("manifest-([a-z0-9]+)\\.txt");
+    private static final Map<String, String> ALGORITHMS = Map.of(
+        "md5", "MD5",
+        "sha1", "SHA-1",
+        "sha256", "SHA-256",
+        "sha512", "SHA-512");
+
+    public enum ProblemType {
+        MISMATCH,
+        MISSING,
+        EXTRA,
+        UNREADABLE
+    }
+
+    @Value
+    public static class Problem {
+        ProblemType type;
+        String file;
+        String algorithm;
+        String expected;
+        String actual;
+        String message;
+    }
+
+    @Value
+    public static class Report {
+        String target;
+        long bags;
+        long files;
+        long bytes;
+        long elapsedMillis;
+        List<Problem> problems;
+
+        public double getMegabytesPerSecond() {
+            return elapsedMillis == 0 ? 0 : bytes / 1e6 / (elapsedMillis / 1000.0);
+        }
+
+        public boolean isValid() {
+            return bags > 0 && problems.isEmpty();
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore queued;
+    private final RateLimiter rateLimiter;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * @param parallelism    the number of files to read at the same time
+     * @param bytesPerSecond the maximum combined read rate, or 0 for no limit
+     */
+    public ChecksumVerifier(int parallelism, long bytesPerSecond) {
+        this(parallelism, new RateLimiter(bytesPerSecond));
+    }
+
+    ChecksumVerifier(int parallelism, RateLimiter rateLimiter) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.executor = Executors.newFixedThreadPool(parallelism);
+        this.queued = new Semaphore(parallelism * 2);
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Verifies all bags below a directory.
+     *
+     * @param target the directory to verify
+     * @return the report
+     * @throws IOException           if the directory could not be walked
+     * @throws InterruptedException  if interrupted while waiting for the workers
+     * @throws IllegalStateException if a worker failed other than by not being able to read a file; the failures of other workers are added as suppressed
+     */
+    public Report verify(Path target) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        var bags = findBags(target);
+        var problems = new ConcurrentLinkedQueue<Problem>();
+        var files = new LongAdder();
+        var bytes = new LongAdder();
+        var pending = new Semaphore(0);
+        var failure = new AtomicReference<IllegalStateException>();
+        int submitted = 0;
+
+        for (var bag : bags) {
+            if (failure.get() != null) {
+                break;
+            }
+            Map<String, Map<String, String>> checksums;
+            List<String> extraFiles;
+            try {
+                checksums = readManifests(bag);
+                extraFiles = findExtraFiles(bag, checksums);
+            }
+            catch (IOException | IllegalArgumentException e) {
+                problems.add(new Problem(ProblemType.UNREADABLE, relative(target, bag), null, null, null, "cannot read bag: " + e.getMessage()));
+                continue;
+            }
+            for (var extra : extraFiles) {
+                problems.add(new Problem(ProblemType.EXTRA, relative(target, bag.resolve(extra)), null, null, null, "not listed in any payload manifest"));
+            }
+            for (var entry : checksums.entrySet()) {
+                if (failure.get() != null) {
+                    break;
+                }
+                var file = bag.resolve(entry.getKey()).normalize();
+                var expected = entry.getValue();
+                queued.acquire();
+                submitted++;
+                executor.execute(() -> {
+                    try {
+                        verifyFile(target, bag, file, expected, problems, files, bytes);
+                    }
+                    catch (RuntimeException e) {
+                        var wrapped = new IllegalStateException("Could not verify " + relative(target, file) + ": " + e.getMessage(), e);
+                        if (!failure.compareAndSet(null, wrapped)) {
+                            failure.get().addSuppressed(e);
+                        }
+                    }
+                    finally {
+                        queued.release();
+                        pending.release();
+                    }
+                });
+            }
+        }
+        pending.acquire(submitted);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        var sorted = new ArrayList<>(problems);
+        sorted.sort((a, b) -> a.getFile().compareTo(b.getFile()));
+        return new Report(target.toString(), bags.size(), files.sum(), bytes.sum(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            Collections.unmodifiableList(sorted));
+    }
+
+    private void verifyFile(Path target, Path bag, Path file, Map<String, String> expected, ConcurrentLinkedQueue<Problem> problems, LongAdder files,
+        LongAdder bytes) {
+        String name = relative(target, file);
+        if (!file.startsWith(bag)) {
+            problems.add(new Problem(ProblemType.UNREADABLE, name, null, null, null, "path is outside the bag"));
+            return;
+        }
+        Map<String, String> actual;
+        try {
+            actual = digest(file, expected.keySet(), bytes);
+        }
+        catch (NoSuchFileException e) {
+            problems.add(new Problem(ProblemType.MISSING, name, null, null, null, "listed in manifest but not found"));
+            return;
+        }
+        catch (IOException e) {
+            problems.add(new Problem(ProblemType.UNREADABLE, name, null, null, null, e.getMessage()));
+            return;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            problems.add(new Problem(ProblemType.UNREADABLE, name, null, null, null, "interrupted"));
+            return;
+        }
+        files.increment();
+        for (var algorithm : expected.keySet()) {
+            if (!expected.get(algorithm).equalsIgnoreCase(actual.get(algorithm))) {
+                problems.add(new Problem(ProblemType.MISMATCH, name, algorithm, expected.get(algorithm), actual.get(algorithm), null));
+            }
+        }
+    }
+
+    private Map<String, String> digest(Path file, Iterable<String> algorithms, LongAdder bytes) throws IOException, InterruptedException {
+        var digests = new LinkedHashMap<String, MessageDigest>();
+        for (var algorithm : algorithms) {
+            digests.put(algorithm, messageDigest(algorithm));
+        }
+        var buffer = buffers.get();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                rateLimiter.acquire(read);
+                bytes.add(read);
+                buffer.flip();
+                for (var digest : digests.values()) {
+                    buffer.rewind();
+                    digest.update(buffer);
+                }
+            }
+        }
+        var result = new LinkedHashMap<String, String>();
+        digests.forEach((algorithm, digest) -> result.put(algorithm, HexFormat.of().formatHex(digest.digest())));
+        return result;
+    }
+
+    private static MessageDigest messageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(ALGORITHMS.get(algorithm));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM does not support " + algorithm, e);
+        }
+    }
+
+    private static List<Path> findBags(Path target) throws IOException {
+        var bags = new TreeSet<Path>();
+        Files.walkFileTree(target, new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                var matcher = MANIFEST.matcher(file.getFileName().toString());
+                if (matcher.matches() && ALGORITHMS.containsKey(matcher.group(1))) {
+                    bags.add(file.getParent());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new ArrayList<>(bags);
+    }
+
+    /**
+     * Reads all payload manifests of a bag with a supported algorithm.
+     *
+     * @param bag the bag directory
+     * @return the expected checksums per algorithm, by path relative to the bag
+     * @throws IOException if a manifest could not be read
+     */
+    static Map<String, Map<String, String>> readManifests(Path bag) throws IOException {
+        var checksums = new LinkedHashMap<String, Map<String, String>>();
+        try (var manifests = Files.list(bag)) {
+            for (var manifest : (Iterable<Path>) manifests.sorted()::iterator) {
+                var matcher = MANIFEST.matcher(manifest.getFileName().toString());
+                if (!matcher.matches() || !ALGORITHMS.containsKey(matcher.group(1))) {
+                    continue;
+                }
+                var algorithm = matcher.group(1);
+                for (var line : Files.readAllLines(manifest)) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    var parts = line.split("\\s+", 2);
+                    if (parts.length < 2) {
+                        throw new IllegalArgumentException(manifest.getFileName() + ": invalid line: " + line);
+                    }
+                    checksums.computeIfAbsent(decode(parts[1].strip()), k -> new LinkedHashMap<>()).put(algorithm, parts[0]);
+                }
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Decodes a path from a manifest line. BagIt encodes carriage returns, line feeds and percent signs in file names.
+     */
+    private static String decode(String path) {
+        return path.replace("%0D", "\r").replace("%0d", "\r").replace("%0A", "\n").replace("%0a", "\n").replace("%25", "%");
+    }
+
+    private static List<String> findExtraFiles(Path bag, Map<String, Map<String, String>> checksums) throws IOException {
+        var data = bag.resolve("data");
+        if (!Files.isDirectory(data)) {
+            return List.of();
+        }
+        var extra = new ArrayList<String>();
+        try (var payload = Files.walk(data)) {
+            payload.filter(Files::isRegularFile)
+                .map(file -> bag.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"))
+                .filter(name -> !checksums.containsKey(name))
+                .sorted()
+                .forEach(extra::add);
+        }
+        return extra;
+    }
+
+    private static String relative(Path target, Path file) {
+        var name = target.relativize(file).toString();
+        return name.isEmpty() ? "." : name;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
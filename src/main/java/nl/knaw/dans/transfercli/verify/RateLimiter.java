@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.verify;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that limits the combined read rate of all workers. The bucket holds at most one second's worth of bytes, so that after an idle period the rate can
+ * only briefly exceed the limit.
+ */
+public class RateLimiter {
+    private final long bytesPerSecond;
+    private double available;
+    private long lastRefill;
+
+    /**
+     * @param bytesPerSecond the maximum rate, or 0 for no limit
+     */
+    public RateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.available = bytesPerSecond;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes <code>bytes</code> from the bucket and waits until the bucket is no longer in debt. Because the bytes are taken before waiting, callers that arrive
+     * while another one waits are queued behind it.
+     *
+     * @param bytes the number of bytes about to be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            available -= bytes;
+            waitNanos = available < 0 ? (long) (-available * 1e9 / bytesPerSecond) : 0;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(bytesPerSecond, available + (now - lastRefill) * bytesPerSecond / 1e9);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+class ApiTimingsTest {
+
+    @Test
+    void print_should_report_calls_and_failures_per_endpoint() {
+        var timings = new ApiTimings();
+        var filter = timings.filterFor("test-pipeline");
+
+        var ok = request("POST", "http://localhost:20305/send-to-vault/flush");
+        filter.filter(ok);
+        filter.filter(ok, response(200));
+        var serverError = request("POST", "http://localhost:20305/send-to-vault/flush");
+        filter.filter(serverError);
+        filter.filter(serverError, response(503));
+        // No response, e.g. because the connection was refused
+        filter.filter(request("POST", "http://localhost:20305/send-to-vault/flush"));
+
+        var out = new ByteArrayOutputStream();
+        timings.print(new PrintStream(out));
+
+        assertThat(out.toString())
+            .containsPattern("test-pipeline POST /send-to-vault/flush +3 +2 +0 ");
+    }
+
+    @Test
+    void print_should_report_the_retries_of_the_http_connector_per_endpoint() {
+        var timings = new ApiTimings();
+        var filter = timings.filterFor("test-pipeline");
+        var retryHandler = timings.retryHandlerFor("test-pipeline", 2);
+
+        filter.filter(request("POST", "http://localhost:20305/send-to-vault/flush"));
+        var context = HttpClientContext.create();
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, new HttpPost("http://localhost:20305/send-to-vault/flush"));
+        var exception = new NoHttpResponseException("localhost:20305 failed to respond");
+        assertThat(retryHandler.retryRequest(exception, 1, context)).isTrue();
+        assertThat(retryHandler.retryRequest(exception, 2, context)).isTrue();
+        // The configured number of retries is used up
+        assertThat(retryHandler.retryRequest(exception, 3, context)).isFalse();
+
+        var out = new ByteArrayOutputStream();
+        timings.print(new PrintStream(out));
+
+        assertThat(out.toString())
+            .contains("RETRIES")
+            .containsPattern("test-pipeline POST /send-to-vault/flush +1 +1 +2 ");
+    }
+
+    @Test
+    void print_should_say_so_when_no_calls_were_made() {
+        var timings = new ApiTimings();
+        timings.filterFor("test-pipeline");
+
+        var out = new ByteArrayOutputStream();
+        timings.print(new PrintStream(out));
+
+        assertThat(out.toString()).contains("no API calls");
+    }
+
+    private static ClientRequestContext request(String method, String uri) {
+        Map<String, Object> properties = new HashMap<>();
+        var request = Mockito.mock(ClientRequestContext.class);
+        Mockito.when(request.getMethod()).thenReturn(method);
+        Mockito.when(request.getUri()).thenReturn(URI.create(uri));
+        Mockito.when(request.getProperty(anyString())).thenAnswer(invocation -> properties.get(invocation.<String> getArgument(0)));
+        Mockito.doAnswer(invocation -> properties.put(invocation.getArgument(0), invocation.getArgument(1))).when(request).setProperty(anyString(), any());
+        return request;
+    }
+
+    private static ClientResponseContext response(int status) {
+        var response = Mockito.mock(ClientResponseContext.class);
+        Mockito.when(response.getStatus()).thenReturn(status);
+        return response;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.cleanup;
+
+import io.dropwizard.util.Duration;
+import nl.knaw.dans.transfercli.config.CleanupConfig;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.RetentionConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetentionCleanerTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private PipelineLayout layout;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        var directories = new DirectoriesConfig();
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+        Mockito.when(config.getPipelines()).thenReturn(Map.of("test-pipeline", Mockito.mock(TransferToVaultConfig.class)));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+        layout = PipelineLayout.of("test-pipeline", config);
+    }
+
+    @Test
+    void select_should_age_entries_from_when_they_entered_the_directory() throws Exception {
+        var processed = new RetentionConfig();
+        processed.setMaxAge(Duration.days(7));
+        var cleanup = new CleanupConfig();
+        cleanup.setSendToVaultProcessed(processed);
+        var zip = layout.getSendToVaultProcessedDir().resolve("a.zip");
+        Files.createDirectories(zip.getParent());
+        Files.write(zip, new byte[10]);
+        Files.setLastModifiedTime(zip, FileTime.from(Instant.now().minus(30, ChronoUnit.DAYS)));
+
+        try (var cleaner = new RetentionCleaner(layout, 1)) {
+            // Modified a month ago, but it only just entered the directory
+            assertThat(cleaner.select(cleanup, Instant.now())).isEmpty();
+            assertThat(cleaner.select(cleanup, Instant.now().plus(8, ChronoUnit.DAYS)))
+                .extracting(RetentionCleaner.Candidate::getPath)
+                .containsExactly(zip);
+        }
+    }
+}
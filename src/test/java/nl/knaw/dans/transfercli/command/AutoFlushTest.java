@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import io.dropwizard.util.Duration;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.api.StatusMessageDto;
+import nl.knaw.dans.transfercli.client.DefaultApi;
+import nl.knaw.dans.transfercli.config.AutoFlushConfig;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import nl.knaw.dans.transfercli.core.AutoFlushPolicy;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import javax.ws.rs.ProcessingException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AutoFlushTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private Context context;
+    private TransferToVaultConfig pipelineConfig;
+    private DefaultApi api;
+    private Path workDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+
+        context = Mockito.mock(Context.class);
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        pipelineConfig = Mockito.mock(TransferToVaultConfig.class);
+        api = Mockito.mock(DefaultApi.class);
+        var directories = new DirectoriesConfig();
+        Mockito.when(context.getConfig()).thenReturn(config);
+        Mockito.when(context.getApi("test-pipeline")).thenReturn(api);
+        Mockito.when(api.sendToVaultFlushPost()).thenReturn(new StatusMessageDto());
+        Mockito.when(config.getPipelines()).thenReturn(Map.of("test-pipeline", pipelineConfig));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+        workDir = directories.getWorkingSpaceBaseDir().resolve("test-pipeline/send-to-vault/work");
+        Files.createDirectories(workDir);
+    }
+
+    @Test
+    void call_should_throw_IllegalArgumentException_when_no_pipeline_has_autoFlush_config() {
+        var command = new AutoFlush(context);
+        new CommandLine(command).parseArgs("--once");
+
+        assertThatThrownBy(command::call)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("autoFlush configuration");
+    }
+
+    @Test
+    void call_should_flush_only_when_threshold_is_reached() throws Exception {
+        var autoFlush = new AutoFlushConfig();
+        autoFlush.setMaxItems(2);
+        Mockito.when(pipelineConfig.getAutoFlush()).thenReturn(autoFlush);
+        Files.createDirectories(workDir.resolve("item1"));
+
+        var command = new AutoFlush(context);
+        new CommandLine(command).parseArgs("--once");
+        assertThat(command.call()).isEqualTo(0);
+        Mockito.verify(api, Mockito.never()).sendToVaultFlushPost();
+
+        Files.createDirectories(workDir.resolve("item2"));
+        assertThat(command.call()).isEqualTo(0);
+        Mockito.verify(api, Mockito.times(1)).sendToVaultFlushPost();
+    }
+
+    @Test
+    void call_should_check_the_other_pipelines_when_a_flush_fails() throws Exception {
+        var autoFlush = new AutoFlushConfig();
+        autoFlush.setMaxItems(1);
+        var failingConfig = Mockito.mock(TransferToVaultConfig.class);
+        var failingApi = Mockito.mock(DefaultApi.class);
+        Mockito.when(pipelineConfig.getAutoFlush()).thenReturn(autoFlush);
+        Mockito.when(failingConfig.getAutoFlush()).thenReturn(autoFlush);
+        Mockito.when(context.getConfig().getPipelines()).thenReturn(Map.of("a-pipeline", failingConfig, "test-pipeline", pipelineConfig));
+        Mockito.when(context.getApi("a-pipeline")).thenReturn(failingApi);
+        Mockito.when(failingApi.sendToVaultFlushPost()).thenThrow(new ProcessingException("Connection refused"));
+        Files.createDirectories(workDir.resolve("item1"));
+        Files.createDirectories(testDir.resolve("working-space/a-pipeline/send-to-vault/work/item1"));
+
+        var command = new AutoFlush(context);
+        new CommandLine(command).parseArgs("--once");
+
+        assertThat(command.call()).isEqualTo(0);
+        Mockito.verify(failingApi).sendToVaultFlushPost();
+        Mockito.verify(api).sendToVaultFlushPost();
+    }
+
+    @Test
+    void policy_should_flush_old_items_but_not_during_cooldown() {
+        var autoFlush = new AutoFlushConfig();
+        autoFlush.setMaxAge(Duration.hours(1));
+        autoFlush.setCooldown(Duration.minutes(10));
+        var policy = new AutoFlushPolicy(autoFlush);
+        var now = Instant.parse("2026-01-01T12:00:00Z");
+
+        assertThat(policy.check(new AutoFlushPolicy.WorkState(1, 10, now.minusSeconds(600)), now)).isEmpty();
+        assertThat(policy.check(new AutoFlushPolicy.WorkState(1, 10, now.minusSeconds(3600)), now)).isPresent();
+
+        policy.flushed(now);
+        assertThat(policy.check(new AutoFlushPolicy.WorkState(1, 10, now.minusSeconds(7200)), now.plusSeconds(300))).isEmpty();
+        assertThat(policy.check(new AutoFlushPolicy.WorkState(1, 10, now.minusSeconds(7200)), now.plusSeconds(600))).isPresent();
+    }
+
+    @Test
+    void workState_should_take_the_age_of_an_item_from_when_it_was_moved_into_the_work_directory() throws Exception {
+        var item = testDir.resolve("item.zip");
+        Files.write(item, new byte[10]);
+        Files.setLastModifiedTime(item, FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+        Instant beforeMove = Instant.now().minusSeconds(60);
+        Files.move(item, workDir.resolve("item.zip"));
+
+        try (var scanner = new DirectoryScanner(1)) {
+            var state = AutoFlushPolicy.WorkState.of(workDir, scanner);
+
+            assertThat(state.getItems()).isEqualTo(1);
+            assertThat(state.getOldest()).isAfter(beforeMove);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchDetailsTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private Context context;
+    private Path batchRoot;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+
+        context = Mockito.mock(Context.class);
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        var directories = new DirectoriesConfig();
+        Mockito.when(context.getConfig()).thenReturn(config);
+        Mockito.when(context.getObjectMapper()).thenReturn(new ObjectMapper());
+        Mockito.when(config.getPipelines()).thenReturn(Map.of("test-pipeline", Mockito.mock(TransferToVaultConfig.class)));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+        batchRoot = directories.getDataVaultBatchRoot().resolve("test-pipeline");
+    }
+
+    @Test
+    void call_should_throw_IllegalArgumentException_when_no_pipeline_specified() {
+        var command = new BatchDetails(context);
+        new CommandLine(command).parseArgs("batch1");
+
+        assertThatThrownBy(command::call)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("No pipeline specified. Use -p or --pipeline option.");
+    }
+
+    @Test
+    void call_should_throw_IllegalArgumentException_when_batch_does_not_exist() {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        var command = new BatchDetails(context);
+        new CommandLine(command).parseArgs("batch1");
+
+        assertThatThrownBy(command::call)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("No batch found: batch1");
+    }
+
+    @Test
+    void call_should_summarize_states_and_list_largest_object_versions_in_json() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        var inbox = batchRoot.resolve("inbox/batch1");
+        write(inbox.resolve("object1/v1/a.txt"), 10);
+        write(inbox.resolve("object1/v2/a.txt"), 300);
+        write(inbox.resolve("object2/v1/a.txt"), 20);
+        write(inbox.resolve("object2/v1/b.txt"), 30);
+        write(batchRoot.resolve("outbox/batch1/processed/object3/v1/a.txt"), 200);
+        write(batchRoot.resolve("outbox/batch1/failed/object4/a.txt"), 5);
+
+        var command = new BatchDetails(context);
+        new CommandLine(command).parseArgs("--top", "2", "--format", "JSON", "batch1");
+
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(0);
+        } finally {
+            System.setOut(oldOut);
+        }
+
+        JsonNode report = new ObjectMapper().readTree(outContent.toString());
+        assertThat(report.get("batch").asText()).isEqualTo("batch1");
+        JsonNode inboxState = report.get("states").get(0);
+        assertThat(inboxState.get("state").asText()).isEqualTo("inbox");
+        assertThat(inboxState.get("objects").asLong()).isEqualTo(2);
+        assertThat(inboxState.get("versions").asLong()).isEqualTo(3);
+        assertThat(inboxState.get("files").asLong()).isEqualTo(4);
+        assertThat(inboxState.get("bytes").asLong()).isEqualTo(360);
+        JsonNode failedState = report.get("states").get(2);
+        assertThat(failedState.get("versions").asLong()).isEqualTo(1);
+        assertThat(failedState.get("bytes").asLong()).isEqualTo(5);
+
+        JsonNode largest = report.get("largest");
+        assertThat(largest.size()).isEqualTo(2);
+        assertThat(largest.get(0).get("object").asText()).isEqualTo("object1");
+        assertThat(largest.get(0).get("version").asText()).isEqualTo("v2");
+        assertThat(largest.get(0).get("bytes").asLong()).isEqualTo(300);
+        assertThat(largest.get(1).get("state").asText()).isEqualTo("processed");
+        assertThat(largest.get(1).get("object").asText()).isEqualTo("object3");
+    }
+
+    @Test
+    void call_should_list_every_object_version_in_ndjson_when_versions_is_given() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        var inbox = batchRoot.resolve("inbox/batch1");
+        for (int i = 0; i < 20; i++) {
+            write(inbox.resolve("object" + i + "/v1/a.txt"), i);
+            write(inbox.resolve("object" + i + "/v2/a.txt"), 100 + i);
+        }
+
+        var command = new BatchDetails(context);
+        new CommandLine(command).parseArgs("--versions", "--parallelism", "1", "--format", "NDJSON", "batch1");
+
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(0);
+        } finally {
+            System.setOut(oldOut);
+        }
+
+        // Plain NDJSON: nothing between the records but the newline
+        assertThat(outContent.toString().split("\n")).allMatch(line -> line.startsWith("{") && line.endsWith("}"));
+        var mapper = new ObjectMapper();
+        long versions = 0;
+        long bytes = 0;
+        for (String line : outContent.toString().split("\n")) {
+            JsonNode record = mapper.readTree(line);
+            if (record.get("type").asText().equals("version")) {
+                versions++;
+                bytes += record.get("bytes").asLong();
+            }
+            else if (record.get("type").asText().equals("state") && record.get("state").asText().equals("inbox")) {
+                assertThat(record.get("versions").asLong()).isEqualTo(40);
+                assertThat(record.get("bytes").asLong()).isEqualTo(2380);
+            }
+        }
+        assertThat(versions).isEqualTo(40);
+        assertThat(bytes).isEqualTo(2380);
+    }
+
+    @Test
+    void call_should_throw_IllegalArgumentException_when_versions_is_combined_with_json() {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        var command = new BatchDetails(context);
+        new CommandLine(command).parseArgs("--versions", "--format", "JSON", "batch1");
+
+        assertThatThrownBy(command::call)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--versions does not support JSON output");
+    }
+
+    private static void write(Path file, int size) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+    }
+}
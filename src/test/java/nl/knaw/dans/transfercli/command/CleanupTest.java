@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import io.dropwizard.util.Duration;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.config.CleanupConfig;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.RetentionConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CleanupTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private Context context;
+    private TransferToVaultConfig pipelineConfig;
+    private Path workingSpace;
+    private Path batchRoot;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+
+        context = Mockito.mock(Context.class);
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        var directories = new DirectoriesConfig();
+        pipelineConfig = Mockito.mock(TransferToVaultConfig.class);
+        Mockito.when(context.getConfig()).thenReturn(config);
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        Mockito.when(config.getPipelines()).thenReturn(Map.of("test-pipeline", pipelineConfig));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+        workingSpace = directories.getWorkingSpaceBaseDir().resolve("test-pipeline");
+        batchRoot = directories.getDataVaultBatchRoot().resolve("test-pipeline");
+    }
+
+    @Test
+    void call_should_throw_IllegalArgumentException_when_pipeline_has_no_cleanup_configuration() {
+        var command = new Cleanup(context);
+        new CommandLine(command).parseArgs();
+
+        assertThatThrownBy(command::call)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("No cleanup configuration for pipeline test-pipeline");
+    }
+
+    @Test
+    void call_should_delete_entries_outside_retention_and_leave_inboxes_alone() throws Exception {
+        var processed = new RetentionConfig();
+        processed.setKeepLast(0);
+        var outbox = new RetentionConfig();
+        outbox.setKeepLast(0);
+        var cleanup = new CleanupConfig();
+        cleanup.setSendToVaultProcessed(processed);
+        cleanup.setDataVaultOutbox(outbox);
+        Mockito.when(pipelineConfig.getCleanup()).thenReturn(cleanup);
+
+        var processedZip = write(workingSpace.resolve("send-to-vault/outbox/processed/old.zip"), 10, 3);
+        var inboxZip = write(workingSpace.resolve("send-to-vault/inbox/old.zip"), 10, 3);
+        write(batchRoot.resolve("outbox/batch1/processed/object1/v1/a.txt"), 100, 5);
+        write(batchRoot.resolve("outbox/batch2/processed/object1/v1/a.txt"), 100, 4);
+        // Still being processed by the data vault
+        write(batchRoot.resolve("outbox/batch0/processed/object1/v1/a.txt"), 100, 6);
+        write(batchRoot.resolve("inbox/batch0/object2/v1/a.txt"), 100, 6);
+
+        var command = new Cleanup(context);
+        new CommandLine(command).parseArgs("--parallelism", "2");
+        assertThat(run(command)).isEqualTo(0);
+
+        assertThat(processedZip).doesNotExist();
+        assertThat(inboxZip).exists();
+        assertThat(batchRoot.resolve("outbox/batch1")).doesNotExist();
+        assertThat(batchRoot.resolve("outbox/batch2")).doesNotExist();
+        assertThat(batchRoot.resolve("outbox/batch0/processed/object1/v1/a.txt")).exists();
+        assertThat(batchRoot.resolve("inbox/batch0/object2/v1/a.txt")).exists();
+    }
+
+    @Test
+    void call_should_keep_entries_that_were_moved_in_recently_although_modified_long_ago() throws Exception {
+        var processed = new RetentionConfig();
+        processed.setMaxAge(Duration.days(7));
+        var cleanup = new CleanupConfig();
+        cleanup.setSendToVaultProcessed(processed);
+        Mockito.when(pipelineConfig.getCleanup()).thenReturn(cleanup);
+        // Built a month ago, but moved into the processed outbox just now
+        var built = write(workingSpace.resolve("send-to-vault/work/old.zip"), 10, 30);
+        var movedIn = workingSpace.resolve("send-to-vault/outbox/processed/old.zip");
+        Files.createDirectories(movedIn.getParent());
+        Files.move(built, movedIn);
+
+        var command = new Cleanup(context);
+        new CommandLine(command).parseArgs();
+        assertThat(run(command)).isEqualTo(0);
+
+        assertThat(movedIn).exists();
+    }
+
+    @Test
+    void call_should_report_bytes_to_free_without_deleting_when_dry_run() throws Exception {
+        var outbox = new RetentionConfig();
+        outbox.setKeepLast(0);
+        var cleanup = new CleanupConfig();
+        cleanup.setDataVaultOutbox(outbox);
+        Mockito.when(pipelineConfig.getCleanup()).thenReturn(cleanup);
+        write(batchRoot.resolve("outbox/batch1/processed/object1/v1/a.txt"), 1000, 0);
+        write(batchRoot.resolve("outbox/batch1/processed/object2/v1/a.txt"), 234, 0);
+        Files.createDirectories(batchRoot.resolve("outbox/batch1/failed"));
+
+        var command = new Cleanup(context);
+        new CommandLine(command).parseArgs("--dry-run");
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(0);
+        } finally {
+            System.setOut(oldOut);
+        }
+
+        assertThat(outContent.toString())
+            .contains("data-vault-outbox: batch1")
+            .contains("1 entries with 2 files and 7 directories would be deleted, freeing 1 KB");
+        assertThat(batchRoot.resolve("outbox/batch1/processed/object1/v1/a.txt")).exists();
+    }
+
+    @Test
+    void call_should_keep_batches_with_failed_items() throws Exception {
+        var outbox = new RetentionConfig();
+        outbox.setKeepLast(0);
+        var cleanup = new CleanupConfig();
+        cleanup.setDataVaultOutbox(outbox);
+        Mockito.when(pipelineConfig.getCleanup()).thenReturn(cleanup);
+        write(batchRoot.resolve("outbox/batch1/processed/object1/v1/a.txt"), 100, 2);
+        write(batchRoot.resolve("outbox/batch1/failed/object2/v1/a.txt"), 100, 2);
+        write(batchRoot.resolve("outbox/batch2/processed/object1/v1/a.txt"), 100, 1);
+
+        var command = new Cleanup(context);
+        new CommandLine(command).parseArgs();
+        assertThat(run(command)).isEqualTo(0);
+
+        assertThat(batchRoot.resolve("outbox/batch1/processed/object1/v1/a.txt")).exists();
+        assertThat(batchRoot.resolve("outbox/batch1/failed/object2/v1/a.txt")).exists();
+        assertThat(batchRoot.resolve("outbox/batch2")).doesNotExist();
+    }
+
+    private static int run(Cleanup command) throws Exception {
+        PrintStream oldOut = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            return command.call();
+        } finally {
+            System.setOut(oldOut);
+        }
+    }
+
+    private static Path write(Path file, int size, int daysOld) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        touch(file, daysOld);
+        return file;
+    }
+
+    private static void touch(Path path, int daysOld) throws Exception {
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(daysOld, ChronoUnit.DAYS)));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.api.StatusMessageDto;
+import nl.knaw.dans.transfercli.client.ApiException;
+import nl.knaw.dans.transfercli.client.DefaultApi;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlushWorkToVaultTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private Context context;
+    private DirectoriesConfig directories;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+
+        context = Mockito.mock(Context.class);
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        directories = new DirectoriesConfig();
+        Mockito.when(context.getConfig()).thenReturn(config);
+        Mockito.when(config.getPipelines()).thenReturn(Map.of(
+            "pipeline-a", Mockito.mock(TransferToVaultConfig.class),
+            "pipeline-b", Mockito.mock(TransferToVaultConfig.class)));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+    }
+
+    @Test
+    void call_should_return_1_when_flush_fails() throws Exception {
+        var api = Mockito.mock(DefaultApi.class);
+        Mockito.when(context.getPipeline()).thenReturn("pipeline-a");
+        Mockito.when(context.getApi()).thenReturn(api);
+        Mockito.when(api.sendToVaultFlushPost()).thenThrow(new ApiException("service unavailable"));
+
+        String err = captureStderr(() -> assertThat(new FlushWorkToVault(context).call()).isEqualTo(1));
+
+        assertThat(err).contains("Error: service unavailable");
+    }
+
+    @Test
+    void call_should_wait_for_new_batches_of_all_pipelines() throws Exception {
+        // An older batch that is still in the inbox must not be mistaken for the new one
+        Files.createDirectories(directories.getDataVaultBatchRoot().resolve("pipeline-a/inbox/old-batch/item"));
+        for (var pipeline : new String[] { "pipeline-a", "pipeline-b" }) {
+            Files.createDirectories(directories.getWorkingSpaceBaseDir().resolve(pipeline).resolve("send-to-vault/work/item1"));
+            var api = Mockito.mock(DefaultApi.class);
+            Mockito.when(context.getApi(pipeline)).thenReturn(api);
+            Mockito.when(api.sendToVaultFlushPost()).thenAnswer(invocation -> {
+                var batchRoot = directories.getDataVaultBatchRoot().resolve(pipeline);
+                if (pipeline.equals("pipeline-a")) {
+                    // An empty inbox that stays behind only counts as done once nothing has moved for a while
+                    Files.createDirectories(batchRoot.resolve("inbox/new-batch"));
+                }
+                Files.createDirectories(batchRoot.resolve("outbox/new-batch/processed/item1"));
+                Files.write(batchRoot.resolve("outbox/new-batch/processed/item1/layer.zip"), new byte[1000]);
+                Files.createDirectories(batchRoot.resolve("outbox/new-batch/processed/item2"));
+                return new StatusMessageDto();
+            });
+        }
+        var command = new FlushWorkToVault(context);
+        new CommandLine(command).parseArgs("--all-pipelines", "--wait", "--timeout", "30");
+
+        String err = captureStderr(() -> assertThat(command.call()).isEqualTo(0));
+
+        assertThat(err)
+            .contains("pipeline-a: batch new-batch completed")
+            .contains("pipeline-b: batch new-batch completed")
+            .contains("2 processed, 0 failed")
+            .contains("items/s")
+            .contains("MB/s");
+    }
+
+    @Test
+    void call_should_report_the_other_pipelines_when_one_fails() throws Exception {
+        var failingApi = Mockito.mock(DefaultApi.class);
+        Mockito.when(context.getApi("pipeline-a")).thenReturn(failingApi);
+        Mockito.when(failingApi.sendToVaultFlushPost()).thenThrow(new IllegalStateException("Connection refused"));
+        Files.createDirectories(directories.getWorkingSpaceBaseDir().resolve("pipeline-b/send-to-vault/work/item1"));
+        var api = Mockito.mock(DefaultApi.class);
+        Mockito.when(context.getApi("pipeline-b")).thenReturn(api);
+        Mockito.when(api.sendToVaultFlushPost()).thenAnswer(invocation -> {
+            Files.createDirectories(directories.getDataVaultBatchRoot().resolve("pipeline-b/outbox/new-batch/processed/item1"));
+            return new StatusMessageDto();
+        });
+        var command = new FlushWorkToVault(context);
+        new CommandLine(command).parseArgs("--all-pipelines", "--wait", "--timeout", "30");
+
+        String err = captureStderr(() -> assertThat(command.call()).isEqualTo(1));
+
+        assertThat(err)
+            .contains("pipeline-a: error: Connection refused")
+            .contains("pipeline-b: batch new-batch completed");
+    }
+
+    @Test
+    void call_should_stop_waiting_when_no_new_batch_appears_within_appear_timeout() throws Exception {
+        Files.createDirectories(directories.getWorkingSpaceBaseDir().resolve("pipeline-a/send-to-vault/work/item1"));
+        var api = Mockito.mock(DefaultApi.class);
+        Mockito.when(context.getPipeline()).thenReturn("pipeline-a");
+        Mockito.when(context.getApi("pipeline-a")).thenReturn(api);
+        Mockito.when(api.sendToVaultFlushPost()).thenReturn(new StatusMessageDto());
+        var command = new FlushWorkToVault(context);
+        new CommandLine(command).parseArgs("--wait", "--appear-timeout", "1", "--timeout", "60");
+
+        long start = System.nanoTime();
+        String err = captureStderr(() -> assertThat(command.call()).isEqualTo(1));
+
+        assertThat(err).contains("pipeline-a: no new batch appeared within 1s");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void call_should_not_wait_when_work_directory_was_empty() throws Exception {
+        Files.createDirectories(directories.getWorkingSpaceBaseDir().resolve("pipeline-a/send-to-vault/work"));
+        var api = Mockito.mock(DefaultApi.class);
+        Mockito.when(context.getPipeline()).thenReturn("pipeline-a");
+        Mockito.when(context.getApi("pipeline-a")).thenReturn(api);
+        Mockito.when(api.sendToVaultFlushPost()).thenReturn(new StatusMessageDto());
+        var command = new FlushWorkToVault(context);
+        new CommandLine(command).parseArgs("--wait");
+
+        long start = System.nanoTime();
+        String err = captureStderr(() -> assertThat(command.call()).isEqualTo(0));
+
+        assertThat(err).contains("pipeline-a: nothing to flush; the work directory was empty");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void call_should_return_1_when_no_pipelines_are_configured() {
+        Mockito.when(context.getConfig().getPipelines()).thenReturn(Map.of());
+        var command = new FlushWorkToVault(context);
+        new CommandLine(command).parseArgs("--all-pipelines");
+
+        String err = captureStderr(() -> assertThat(command.call()).isEqualTo(1));
+
+        assertThat(err).contains("No pipelines configured");
+    }
+
+    private String captureStderr(Runnable runnable) {
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream errContent = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errContent));
+        try {
+            runnable.run();
+        } finally {
+            System.setErr(oldErr);
+        }
+        return errContent.toString();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import nl.knaw.dans.transfercli.requeue.RequeueJournal;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequeueFailedTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private Context context;
+    private Path workingSpace;
+    private Path cacheDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+
+        context = Mockito.mock(Context.class);
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        var directories = new DirectoriesConfig();
+        Mockito.when(context.getConfig()).thenReturn(config);
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        Mockito.when(config.getPipelines()).thenReturn(Map.of("test-pipeline", Mockito.mock(TransferToVaultConfig.class)));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+        cacheDir = testDir.resolve("cache");
+        directories.setCacheDir(cacheDir);
+        workingSpace = directories.getWorkingSpaceBaseDir().resolve("test-pipeline");
+        Files.createDirectories(workingSpace.resolve("extract-metadata/inbox"));
+        Files.createDirectories(workingSpace.resolve("extract-metadata/outbox/failed"));
+        Files.createDirectories(workingSpace.resolve("send-to-vault/inbox"));
+        Files.createDirectories(workingSpace.resolve("send-to-vault/outbox/failed"));
+    }
+
+    @Test
+    void call_should_move_matching_failed_items_back_to_their_inboxes() throws Exception {
+        Files.createFile(workingSpace.resolve("extract-metadata/outbox/failed/a.zip"));
+        Files.createFile(workingSpace.resolve("extract-metadata/outbox/failed/a.zip.log"));
+        Files.createFile(workingSpace.resolve("send-to-vault/outbox/failed/b.zip"));
+        Files.createFile(workingSpace.resolve("send-to-vault/outbox/failed/c.zip"));
+        Files.createFile(workingSpace.resolve("send-to-vault/inbox/c.zip"));
+
+        var command = new RequeueFailed(context);
+        new CommandLine(command).parseArgs("--parallelism", "2");
+
+        assertThat(run(command)).contains("2 items requeued", "1 not requeued");
+        assertThat(workingSpace.resolve("extract-metadata/inbox/a.zip")).exists();
+        assertThat(workingSpace.resolve("extract-metadata/outbox/failed/a.zip.log")).exists();
+        assertThat(workingSpace.resolve("send-to-vault/inbox/b.zip")).exists();
+        assertThat(workingSpace.resolve("send-to-vault/outbox/failed/c.zip")).exists();
+        assertThat(RequeueJournal.file(cacheDir, "test-pipeline")).doesNotExist();
+    }
+
+    @Test
+    void call_should_requeue_directory_items_and_leave_existing_inbox_items_untouched() throws Exception {
+        Files.createDirectories(workingSpace.resolve("send-to-vault/outbox/failed/item1.zip"));
+        Files.writeString(workingSpace.resolve("send-to-vault/outbox/failed/item1.zip/file.txt"), "failed");
+        Files.writeString(workingSpace.resolve("send-to-vault/outbox/failed/b.zip"), "failed");
+        Files.writeString(workingSpace.resolve("send-to-vault/inbox/b.zip"), "new");
+
+        var command = new RequeueFailed(context);
+        new CommandLine(command).parseArgs("--stage", "send-to-vault");
+
+        assertThat(run(command)).contains("1 items requeued", "1 not requeued");
+        assertThat(workingSpace.resolve("send-to-vault/inbox/item1.zip/file.txt")).hasContent("failed");
+        assertThat(workingSpace.resolve("send-to-vault/outbox/failed/item1.zip")).doesNotExist();
+        assertThat(workingSpace.resolve("send-to-vault/inbox/b.zip")).hasContent("new");
+        assertThat(workingSpace.resolve("send-to-vault/outbox/failed/b.zip")).hasContent("failed");
+    }
+
+    @Test
+    void call_should_only_list_items_when_dry_run() throws Exception {
+        Files.createFile(workingSpace.resolve("send-to-vault/outbox/failed/b.zip"));
+
+        var command = new RequeueFailed(context);
+        new CommandLine(command).parseArgs("--dry-run", "--stage", "send-to-vault");
+
+        assertThat(run(command)).contains("send-to-vault: b.zip", "1 items would be requeued");
+        assertThat(workingSpace.resolve("send-to-vault/outbox/failed/b.zip")).exists();
+    }
+
+    @Test
+    void call_should_skip_items_that_failed_recently_even_if_last_modified_long_ago() throws Exception {
+        // Created long ago, but moved into the failed directory just now
+        var item = Files.createFile(workingSpace.resolve("send-to-vault/inbox/old.zip"));
+        Files.setLastModifiedTime(item, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        Files.move(item, workingSpace.resolve("send-to-vault/outbox/failed/old.zip"));
+
+        var command = new RequeueFailed(context);
+        new CommandLine(command).parseArgs("--older-than", "60");
+
+        assertThat(run(command)).contains("no failed items to requeue");
+        assertThat(workingSpace.resolve("send-to-vault/outbox/failed/old.zip")).exists();
+    }
+
+    @Test
+    void call_should_finish_move_that_was_interrupted_after_linking() throws Exception {
+        var failed = Files.createFile(workingSpace.resolve("send-to-vault/outbox/failed/b.zip"));
+        Files.createLink(workingSpace.resolve("send-to-vault/inbox/b.zip"), failed);
+        Files.writeString(RequeueJournal.file(Files.createDirectories(cacheDir), "test-pipeline"),
+            "# stages=extract-metadata,send-to-vault name=*.zip older-than=0\n"
+                + "P\tsend-to-vault\tb.zip\n", StandardCharsets.UTF_8);
+
+        var command = new RequeueFailed(context);
+        new CommandLine(command).parseArgs();
+
+        assertThat(run(command)).contains("1 items requeued", "0 not requeued", "0 failed");
+        assertThat(workingSpace.resolve("send-to-vault/inbox/b.zip")).exists();
+        assertThat(failed).doesNotExist();
+    }
+
+    @Test
+    void call_should_continue_from_journal_without_listing_failed_directories() throws Exception {
+        Files.createFile(workingSpace.resolve("send-to-vault/outbox/failed/b.zip"));
+        Files.createFile(workingSpace.resolve("send-to-vault/outbox/failed/c.zip"));
+        // An item that arrived after the interrupted run started is not part of it
+        Files.createFile(workingSpace.resolve("send-to-vault/outbox/failed/d.zip"));
+        Files.writeString(RequeueJournal.file(Files.createDirectories(cacheDir), "test-pipeline"),
+            "# stages=extract-metadata,send-to-vault name=*.zip older-than=0\n"
+                + "P\tsend-to-vault\ta.zip\n"
+                + "P\tsend-to-vault\tb.zip\n"
+                + "P\tsend-to-vault\tc.zip\n"
+                + "D\tsend-to-vault\ta.zip\n"
+                + "D\tsend-to-vault\tb", StandardCharsets.UTF_8);
+
+        var command = new RequeueFailed(context);
+        new CommandLine(command).parseArgs();
+
+        assertThat(run(command)).contains("2 of 3 items left", "2 items requeued");
+        assertThat(workingSpace.resolve("send-to-vault/inbox/b.zip")).exists();
+        assertThat(workingSpace.resolve("send-to-vault/inbox/c.zip")).exists();
+        assertThat(workingSpace.resolve("send-to-vault/outbox/failed/d.zip")).exists();
+        assertThat(RequeueJournal.file(cacheDir, "test-pipeline")).doesNotExist();
+    }
+
+    @Test
+    void call_should_throw_IllegalArgumentException_when_journal_has_other_options() throws Exception {
+        Files.writeString(RequeueJournal.file(Files.createDirectories(cacheDir), "test-pipeline"),
+            "# stages=send-to-vault name=*.zip older-than=0\n", StandardCharsets.UTF_8);
+
+        var command = new RequeueFailed(context);
+        new CommandLine(command).parseArgs();
+
+        assertThatThrownBy(command::call)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--discard-journal");
+    }
+
+    private static String run(RequeueFailed command) throws Exception {
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            command.call();
+        } finally {
+            System.setOut(oldOut);
+        }
+        return outContent.toString();
+    }
+}
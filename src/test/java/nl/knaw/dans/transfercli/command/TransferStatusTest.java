@@ -15,14 +15,18 @@
  */
 package nl.knaw.dans.transfercli.command;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import nl.knaw.dans.transfercli.Context;
 import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
 import nl.knaw.dans.transfercli.config.DirectoriesConfig;
 import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import nl.knaw.dans.transfercli.scan.StatusSnapshot;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import picocli.CommandLine;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
@@ -127,4 +131,175 @@ class TransferStatusTest {
             System.setOut(oldOut);
         }
     }
+
+    @Test
+    void call_should_print_batches_in_sorted_order_when_scanned_concurrently() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+
+        Path inbox = directories.getDataVaultBatchRoot().resolve("test-pipeline/inbox");
+        for (String batch : new String[] { "batch3", "batch1", "batch4", "batch2" }) {
+            Files.createDirectories(inbox.resolve(batch).resolve("item1"));
+        }
+
+        TransferStatus command = new TransferStatus(context);
+
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(0);
+            String output = outContent.toString();
+            assertThat(output.indexOf("batch1 ")).isLessThan(output.indexOf("batch2 "));
+            assertThat(output.indexOf("batch2 ")).isLessThan(output.indexOf("batch3 "));
+            assertThat(output.indexOf("batch3 ")).isLessThan(output.indexOf("batch4 "));
+        } finally {
+            System.setOut(oldOut);
+        }
+    }
+
+    @Test
+    void call_should_report_on_all_pipelines_with_summary_table() throws Exception {
+        Mockito.when(config.getPipelines()).thenReturn(Map.of("pipeline-b", pipelineConfig, "pipeline-a", pipelineConfig));
+        Mockito.when(context.getPipeline()).thenReturn(null);
+
+        Path collectInboxA = Files.createDirectories(directories.getCollectInboxes().resolve("pipeline-a"));
+        Files.createFile(collectInboxA.resolve("1.zip"));
+        Files.createFile(collectInboxA.resolve("2.zip"));
+        Path workB = Files.createDirectories(directories.getWorkingSpaceBaseDir().resolve("pipeline-b/send-to-vault/work"));
+        Files.writeString(workB.resolve("item.zip"), "12345");
+        Files.createDirectories(directories.getDataVaultBatchRoot().resolve("pipeline-b/inbox/batch1/item1"));
+
+        TransferStatus command = new TransferStatus(context);
+        new CommandLine(command).parseArgs("--all-pipelines");
+
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(0);
+            String output = outContent.toString();
+            assertThat(output.indexOf("status pipeline-a at")).isLessThan(output.indexOf("status pipeline-b at"));
+            assertThat(output).contains("batch1                    1 (0 bytes)             0 (0 bytes)          0 (0 bytes)");
+            assertThat(output).contains("* summary:");
+            assertThat(output).contains("pipeline-a                  2        0        0        0        0        0  0 bytes");
+            assertThat(output).contains("pipeline-b                  0        0        0        1        0        1  5 bytes");
+            assertThat(output).contains("TOTAL                       2        0        0        1        0        1  5 bytes");
+        } finally {
+            System.setOut(oldOut);
+        }
+    }
+
+    @Test
+    void call_should_write_raw_numbers_as_json_when_format_is_json() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        Mockito.when(context.getObjectMapper()).thenReturn(new ObjectMapper());
+
+        Path inbox = Files.createDirectories(directories.getWorkingSpaceBaseDir().resolve("test-pipeline/extract-metadata/inbox"));
+        Files.write(inbox.resolve("test.zip"), new byte[2048]);
+        Files.createDirectories(directories.getDataVaultBatchRoot().resolve("test-pipeline/inbox/batch1/item1"));
+
+        TransferStatus command = new TransferStatus(context);
+        new CommandLine(command).setCaseInsensitiveEnumValuesAllowed(true).parseArgs("--format", "json");
+
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(0);
+            JsonNode report = new ObjectMapper().readTree(outContent.toString());
+            JsonNode pipeline = report.get("pipelines").get(0);
+            assertThat(pipeline.get("pipeline").asText()).isEqualTo("test-pipeline");
+            assertThat(pipeline.at("/dd-transfer-to-vault/extract-metadata-inbox/items").asLong()).isEqualTo(1);
+            assertThat(pipeline.at("/dd-transfer-to-vault/extract-metadata-inbox/bytes").asLong()).isEqualTo(2048);
+            assertThat(pipeline.at("/batches/0/batch").asText()).isEqualTo("batch1");
+            assertThat(pipeline.at("/batches/0/inbox/items").asLong()).isEqualTo(1);
+        } finally {
+            System.setOut(oldOut);
+        }
+    }
+
+    @Test
+    void call_should_write_one_record_per_line_when_format_is_ndjson() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        Mockito.when(context.getObjectMapper()).thenReturn(new ObjectMapper());
+        Files.createDirectories(directories.getDataVaultBatchRoot().resolve("test-pipeline/inbox/batch1/item1"));
+
+        TransferStatus command = new TransferStatus(context);
+        new CommandLine(command).setCaseInsensitiveEnumValuesAllowed(true).parseArgs("--format", "ndjson");
+
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(0);
+            String[] lines = outContent.toString().split("\n");
+            assertThat(lines).hasSize(12).allMatch(line -> line.startsWith("{") && line.endsWith("}"));
+            JsonNode batch = new ObjectMapper().readTree(lines[11]);
+            assertThat(batch.get("type").asText()).isEqualTo("batch");
+            assertThat(batch.get("pipeline").asText()).isEqualTo("test-pipeline");
+            assertThat(batch.at("/inbox/items").asLong()).isEqualTo(1);
+        } finally {
+            System.setOut(oldOut);
+        }
+    }
+
+    @Test
+    void call_should_print_recent_result_of_earlier_run_instead_of_scanning_again() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        directories.setCacheDir(testDir.resolve("cache"));
+        Path extractMetadataInbox = directories.getWorkingSpaceBaseDir().resolve("test-pipeline/extract-metadata/inbox");
+        Files.createDirectories(extractMetadataInbox);
+        Files.createFile(extractMetadataInbox.resolve("test.zip"));
+
+        assertThat(runStatus("--max-age", "30")).contains("extract metadata inbox        : 1 items");
+        assertThat(directories.getCacheDir().resolve("status-test-pipeline.snapshot")).exists();
+        Files.createFile(extractMetadataInbox.resolve("test2.zip"));
+
+        assertThat(runStatus("--max-age", "30")).contains("extract metadata inbox        : 1 items");
+        // Without --max-age, the result of another run is not used
+        assertThat(runStatus()).contains("extract metadata inbox        : 2 items");
+        // and does not publish its result
+        assertThat(runStatus("--max-age", "30")).contains("extract metadata inbox        : 1 items");
+    }
+
+    @Test
+    void call_should_scan_without_sharing_the_result_when_the_scan_lock_cannot_be_taken() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        directories.setCacheDir(testDir.resolve("cache"));
+        // Cannot be opened as a file
+        Files.createDirectories(directories.getCacheDir().resolve("status-test-pipeline.snapshot.lock"));
+        Path extractMetadataInbox = directories.getWorkingSpaceBaseDir().resolve("test-pipeline/extract-metadata/inbox");
+        Files.createDirectories(extractMetadataInbox);
+        Files.createFile(extractMetadataInbox.resolve("test.zip"));
+
+        assertThat(runStatus("--max-age", "30")).contains("extract metadata inbox        : 1 items");
+        assertThat(directories.getCacheDir().resolve("status-test-pipeline.snapshot")).doesNotExist();
+    }
+
+    @Test
+    void call_should_not_wait_for_the_scan_lock_without_max_age() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        directories.setCacheDir(testDir.resolve("cache"));
+        Path extractMetadataInbox = directories.getWorkingSpaceBaseDir().resolve("test-pipeline/extract-metadata/inbox");
+        Files.createDirectories(extractMetadataInbox);
+        Files.createFile(extractMetadataInbox.resolve("test.zip"));
+
+        try (var lock = StatusSnapshot.lock(StatusSnapshot.file(directories.getCacheDir(), "test-pipeline"), () -> { })) {
+            assertThat(runStatus()).contains("extract metadata inbox        : 1 items");
+        }
+    }
+
+    private String runStatus(String... args) throws Exception {
+        TransferStatus command = new TransferStatus(context);
+        new CommandLine(command).parseArgs(args);
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(0);
+        } finally {
+            System.setOut(oldOut);
+        }
+        return outContent.toString();
+    }
 }
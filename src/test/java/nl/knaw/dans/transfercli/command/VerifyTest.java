@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.command;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.transfercli.Context;
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VerifyTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private Context context;
+    private Path batchRoot;
+    private Path dataVaultRoot;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+
+        context = Mockito.mock(Context.class);
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        var directories = new DirectoriesConfig();
+        Mockito.when(context.getConfig()).thenReturn(config);
+        Mockito.when(context.getObjectMapper()).thenReturn(new ObjectMapper());
+        Mockito.when(config.getPipelines()).thenReturn(Map.of("test-pipeline", Mockito.mock(TransferToVaultConfig.class)));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+        batchRoot = directories.getDataVaultBatchRoot().resolve("test-pipeline");
+        dataVaultRoot = directories.getDataVaultRoot().resolve("test-pipeline");
+    }
+
+    @Test
+    void call_should_throw_IllegalArgumentException_when_neither_batch_nor_layer_specified() {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        var command = new Verify(context);
+        new CommandLine(command).parseArgs();
+
+        assertThatThrownBy(command::call)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Specify exactly one of --batch or --layer");
+    }
+
+    @Test
+    void call_should_return_0_when_all_checksums_match() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        var bag = dataVaultRoot.resolve("staging/123456/object1/v1");
+        var content = "x".repeat(3 * 1024 * 1024);
+        write(bag.resolve("data/a.txt"), content);
+        write(bag.resolve("data/b c.txt"), "b");
+        write(bag.resolve("manifest-sha1.txt"), sha1(content) + "  data/a.txt\n" + sha1("b") + "  data/b c.txt\n");
+        write(bag.resolve("manifest-md5.txt"), md5(content) + "  data/a.txt\n" + md5("b") + "  data/b c.txt\n");
+
+        var command = new Verify(context);
+        new CommandLine(command).parseArgs("--layer", "123456", "--format", "JSON", "--max-rate", "100");
+        JsonNode report = run(command, 0);
+
+        assertThat(report.get("bags").asLong()).isEqualTo(1);
+        assertThat(report.get("files").asLong()).isEqualTo(2);
+        assertThat(report.get("bytes").asLong()).isEqualTo(content.length() + 1);
+        assertThat(report.get("problems").size()).isEqualTo(0);
+    }
+
+    @Test
+    void call_should_return_1_and_report_mismatched_missing_and_extra_files() throws Exception {
+        Mockito.when(context.getPipeline()).thenReturn("test-pipeline");
+        var bag = batchRoot.resolve("outbox/batch1/processed/object1/v1");
+        write(bag.resolve("data/a.txt"), "changed");
+        write(bag.resolve("data/extra.txt"), "extra");
+        write(bag.resolve("manifest-sha256.txt"), sha256("original") + "  data/a.txt\n" + sha256("gone") + "  data/missing.txt\n");
+
+        var command = new Verify(context);
+        new CommandLine(command).parseArgs("--batch", "batch1", "--format", "JSON");
+        JsonNode report = run(command, 1);
+
+        JsonNode problems = report.get("problems");
+        assertThat(problems.size()).isEqualTo(3);
+        assertThat(problems.get(0).get("type").asText()).isEqualTo("MISMATCH");
+        assertThat(problems.get(0).get("file").asText()).isEqualTo(Path.of("object1/v1/data/a.txt").toString());
+        assertThat(problems.get(0).get("expected").asText()).isEqualTo(sha256("original"));
+        assertThat(problems.get(0).get("actual").asText()).isEqualTo(sha256("changed"));
+        assertThat(problems.get(1).get("type").asText()).isEqualTo("EXTRA");
+        assertThat(problems.get(2).get("type").asText()).isEqualTo("MISSING");
+    }
+
+    private static JsonNode run(Verify command, int expectedExitCode) throws Exception {
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(outContent));
+        try {
+            assertThat(command.call()).isEqualTo(expectedExitCode);
+        } finally {
+            System.setOut(oldOut);
+        }
+        return new ObjectMapper().readTree(outContent.toString());
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private static String md5(String content) throws Exception {
+        return hex("MD5", content);
+    }
+
+    private static String sha1(String content) throws Exception {
+        return hex("SHA-1", content);
+    }
+
+    private static String sha256(String content) throws Exception {
+        return hex("SHA-256", content);
+    }
+
+    private static String hex(String algorithm, String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.core;
+
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatusCollectorTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private DirectoriesConfig directories;
+    private DirectoryScanner scanner;
+
+    @BeforeEach
+    void setUp() {
+        directories = new DirectoriesConfig();
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+        scanner = Mockito.mock(DirectoryScanner.class);
+    }
+
+    @Test
+    void scan_should_report_timed_out_instead_of_empty_when_the_scan_hangs() {
+        Path stalled = directories.getDataVaultRoot().resolve("p/staging");
+        Path healthy = directories.getWorkingSpaceBaseDir().resolve("p/send-to-vault/inbox");
+        var stats = new DirectoryStats(1, 0, 1, 2, 3);
+        Mockito.when(scanner.scanAsync(stalled)).thenReturn(new CompletableFuture<>());
+        Mockito.when(scanner.scanAsync(healthy)).thenReturn(CompletableFuture.completedFuture(stats));
+        var collector = new StatusCollector(directories, scanner, false, Duration.ofMillis(200), 1);
+
+        var stalledScan = collector.scan(stalled, null);
+        // Waits for the permit of the stalled mount, and is abandoned with it
+        var queuedScan = collector.scan(stalled.resolveSibling("archive"), null);
+        var healthyScan = collector.scan(healthy, null);
+
+        assertThat(healthyScan.join()).isEqualTo(stats);
+        assertThat(stalledScan.join().getStatus()).isEqualTo(DirectoryStats.Status.TIMED_OUT);
+        assertThat(queuedScan.join().getStatus()).isEqualTo(DirectoryStats.Status.TIMED_OUT);
+        Mockito.verify(scanner, Mockito.never()).scanAsync(stalled.resolveSibling("archive"));
+    }
+
+    @Test
+    void scan_should_report_error_instead_of_empty_when_the_directory_cannot_be_read() {
+        Path dir = directories.getWorkingSpaceBaseDir().resolve("p/send-to-vault/inbox");
+        Mockito.when(scanner.scanAsync(dir)).thenReturn(CompletableFuture.failedFuture(new UncheckedIOException(new IOException("Stale file handle"))));
+        var collector = new StatusCollector(directories, scanner, false, Duration.ofSeconds(10), 2);
+
+        var stats = collector.scan(dir, null).join();
+
+        assertThat(stats.isDegraded()).isTrue();
+        assertThat(stats.getStatus()).isEqualTo(DirectoryStats.Status.ERROR);
+    }
+
+    @Test
+    void collect_should_keep_finished_directories_and_report_the_others_as_timed_out_at_the_deadline() {
+        var layout = layout("p");
+        var stats = new DirectoryStats(1, 0, 1, 2, 3);
+        Mockito.when(scanner.scanAsync(Mockito.any(Path.class), Mockito.anyCollection(), Mockito.any())).thenAnswer(invocation -> {
+            Path root = invocation.getArgument(0);
+            Collection<Path> targets = invocation.getArgument(1);
+            ConcurrentHashMap<Path, DirectoryStats> results = invocation.getArgument(2);
+            if (!root.endsWith("working-space")) {
+                targets.forEach(target -> results.put(target, stats));
+                return CompletableFuture.completedFuture(Map.copyOf(results));
+            }
+            // Gets through one stage, then hangs on the next
+            targets.stream().filter(target -> target.endsWith("send-to-vault/inbox")).forEach(target -> results.put(target, stats));
+            return new CompletableFuture<>();
+        });
+        Mockito.when(scanner.scanAsync(Mockito.any(Path.class))).thenReturn(CompletableFuture.completedFuture(DirectoryStats.EMPTY));
+        var collector = new StatusCollector(directories, scanner, false, null, 2);
+
+        long start = System.nanoTime();
+        var status = collector.collect(List.of(layout), Instant.now().plusMillis(300)).get(0);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+        assertThat(status.getStats(PipelineLayout.TRANSFER_INBOX)).isEqualTo(stats);
+        assertThat(status.getStats(PipelineLayout.SEND_TO_VAULT_INBOX)).isEqualTo(stats);
+        assertThat(status.getStats(PipelineLayout.EXTRACT_METADATA_INBOX).getStatus()).isEqualTo(DirectoryStats.Status.TIMED_OUT);
+    }
+
+    @Test
+    void collect_should_report_slow_archive_as_timed_out_instead_of_estimating_it() {
+        var layout = layout("p");
+        Mockito.when(scanner.scanAsync(Mockito.any(Path.class), Mockito.anyCollection(), Mockito.any())).thenAnswer(invocation -> {
+            Collection<Path> targets = invocation.getArgument(1);
+            ConcurrentHashMap<Path, DirectoryStats> results = invocation.getArgument(2);
+            targets.forEach(target -> results.put(target, DirectoryStats.EMPTY));
+            return CompletableFuture.completedFuture(Map.copyOf(results));
+        });
+        Mockito.when(scanner.scanAsync(layout.getArchiveDir())).thenReturn(new CompletableFuture<>());
+        var collector = new StatusCollector(directories, scanner, false, null, 2);
+
+        var status = collector.collect(List.of(layout), Instant.now().plusMillis(300)).get(0);
+
+        assertThat(status.getStats(PipelineLayout.ARCHIVED_LAYERS).getStatus()).isEqualTo(DirectoryStats.Status.TIMED_OUT);
+        Mockito.verify(scanner, Mockito.never()).scanAsync(Mockito.eq(layout.getArchiveDir()), Mockito.any(Instant.class));
+    }
+
+    @Test
+    void listBatches_should_throw_instead_of_returning_no_batches_when_the_inbox_cannot_be_listed() throws Exception {
+        Files.createDirectories(testDir);
+        Path inbox = testDir.resolve("inbox-that-is-a-file");
+        Files.writeString(inbox, "");
+
+        assertThat(StatusCollector.listBatches(testDir.resolve("no-inbox"))).isEmpty();
+        assertThatThrownBy(() -> StatusCollector.listBatches(inbox)).isInstanceOf(IOException.class);
+    }
+
+    private PipelineLayout layout(String name) {
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        Mockito.when(config.getPipelines()).thenReturn(Map.of(name, Mockito.mock(TransferToVaultConfig.class)));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+        return PipelineLayout.of(name, config);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.history;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlowTrendTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private final Instant start = Instant.parse("2026-01-01T00:00:00Z");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+    }
+
+    @Test
+    void read_should_return_appended_snapshots_and_skip_torn_line() throws Exception {
+        var history = new StatusHistory(testDir.resolve("history.ndjson"));
+        history.append(snapshot(0, 10, 0, 0, 0));
+        history.append(snapshot(1, 8, 2, 0, 0));
+        Files.writeString(testDir.resolve("history.ndjson"), "{\"t\":123,\"s\":{\"transfer-in", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<StatusHistory.Snapshot> snapshots = new ArrayList<>();
+        int skipped = history.read(start.plusSeconds(1), snapshots::add);
+
+        assertThat(skipped).isEqualTo(1);
+        assertThat(snapshots).containsExactly(snapshot(1, 8, 2, 0, 0));
+    }
+
+    @Test
+    void trend_should_derive_flows_from_conservation_along_pipeline() {
+        var trend = new FlowTrend();
+        // Per hour: 10 items arrive in the transfer inbox, 20 move on to extract metadata, which passes them straight on to send to vault
+        trend.accept(snapshot(0, 100, 0, 0, 0));
+        trend.accept(snapshot(1, 90, 0, 20, 0));
+        trend.accept(snapshot(2, 80, 0, 40, 0));
+
+        var trends = trend.getTrends();
+        var transferInbox = trends.get(0);
+        assertThat(transferInbox.getStage()).isEqualTo("transfer-inbox");
+        assertThat(transferInbox.getCurrent()).isEqualTo(80);
+        assertThat(transferInbox.getOutflowPerHour()).isEqualTo(20.0);
+        assertThat(transferInbox.getInflowPerHour()).isEqualTo(10.0);
+        assertThat(transferInbox.getTimeToEmpty()).contains(Duration.ofHours(8));
+
+        var sendToVaultInbox = trends.get(2);
+        assertThat(sendToVaultInbox.getStage()).isEqualTo("send-to-vault-inbox");
+        assertThat(sendToVaultInbox.getInflowPerHour()).isEqualTo(20.0);
+        assertThat(sendToVaultInbox.getOutflowPerHour()).isEqualTo(0.0);
+        assertThat(sendToVaultInbox.getTimeToEmpty()).isEmpty();
+    }
+
+    private StatusHistory.Snapshot snapshot(int hour, long transferInbox, long extractMetadataInbox, long sendToVaultInbox, long work) {
+        return new StatusHistory.Snapshot(start.plus(Duration.ofHours(hour)), Map.of(
+            "transfer-inbox", new StatusHistory.StageCount(transferInbox, transferInbox * 100),
+            "extract-metadata-inbox", new StatusHistory.StageCount(extractMetadataInbox, 0),
+            "send-to-vault-inbox", new StatusHistory.StageCount(sendToVaultInbox, 0),
+            "send-to-vault-work", new StatusHistory.StageCount(work, 0)));
+    }
+}
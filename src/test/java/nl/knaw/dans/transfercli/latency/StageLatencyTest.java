@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.latency;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StageLatencyTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private final Instant now = Instant.parse("2026-01-01T12:00:00Z");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+    }
+
+    @Test
+    void add_should_keep_only_the_oldest_items_and_approximate_percentiles() {
+        var latency = new StageLatency(3);
+        // Items that have been in the stage for 1 to 1000 minutes, in scrambled order
+        for (int i = 0; i < 1000; i++) {
+            int minutes = (i * 7919) % 1000 + 1;
+            latency.add("item-" + minutes, now.minus(Duration.ofMinutes(minutes)), now);
+        }
+
+        assertThat(latency.getOldest()).extracting(StageLatency.Item::getName).containsExactly("item-1000", "item-999", "item-998");
+        var histogram = latency.getHistogram();
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMax()).isEqualTo(Duration.ofMinutes(1000));
+        assertThat(histogram.getPercentile(50).toSeconds()).isBetween(500L * 60, 550L * 60);
+        assertThat(histogram.getPercentile(99).toSeconds()).isBetween(990L * 60, 1000L * 60);
+    }
+
+    @Test
+    void scan_should_count_only_zips_in_zip_stages_and_ignore_missing_directory() throws Exception {
+        Files.createFile(testDir.resolve("a.zip"));
+        Files.createFile(testDir.resolve("b.zip"));
+        Files.createFile(testDir.resolve("c.txt"));
+
+        var latency = new StageLatency(5);
+        latency.scan(testDir, true, Instant.now());
+        latency.scan(testDir.resolve("non-existent"), true, Instant.now());
+
+        assertThat(latency.getHistogram().getCount()).isEqualTo(2);
+        assertThat(latency.getOldest()).extracting(StageLatency.Item::getName).containsExactlyInAnyOrder("a.zip", "b.zip");
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.metrics;
+
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.core.StatusCollector;
+import nl.knaw.dans.transfercli.scan.DirectoryScanner;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricsExporterTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private DdTransferToVaultCliConfig config;
+    private DirectoriesConfig directories;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+
+        config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        directories = new DirectoriesConfig();
+        Mockito.when(config.getPipelines()).thenReturn(Map.of("test \"pipeline\"", Mockito.mock(TransferToVaultConfig.class)));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+
+        directories.setCollectInboxes(testDir.resolve("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(testDir.resolve("working-space"));
+        directories.setDataVaultBatchRoot(testDir.resolve("data-vault-batches"));
+        directories.setDataVaultRoot(testDir.resolve("data-vault-root"));
+    }
+
+    @Test
+    void trigger_should_publish_gauges_per_pipeline_and_stage() throws Exception {
+        var layout = PipelineLayout.of("test \"pipeline\"", config);
+        Files.createDirectories(layout.getCollectInbox());
+        Files.write(layout.getCollectInbox().resolve("a.zip"), new byte[10]);
+        Files.write(layout.getCollectInbox().resolve("b.zip"), new byte[5]);
+
+        try (var scanner = new DirectoryScanner(2);
+            var exporter = new MetricsExporter(new StatusCollector(directories, scanner, false), List.of(layout), Duration.ofHours(1), Duration.ofHours(1), () -> {})) {
+            assertThat(new String(exporter.getContent(MetricsFormat.PROMETHEUS), StandardCharsets.UTF_8))
+                .doesNotContain("transfer_stage_items")
+                .contains("transfer_scans_total 0");
+
+            exporter.trigger().join();
+
+            String prometheus = new String(exporter.getContent(MetricsFormat.PROMETHEUS), StandardCharsets.UTF_8);
+            assertThat(prometheus)
+                .contains("transfer_stage_items{pipeline=\"test \\\"pipeline\\\"\",stage=\"transfer-inbox\"} 2\n")
+                .contains("transfer_stage_bytes{pipeline=\"test \\\"pipeline\\\"\",stage=\"transfer-inbox\"} 15\n")
+                .contains("transfer_stage_items{pipeline=\"test \\\"pipeline\\\"\",stage=\"archived-layers\"} 0\n")
+                .contains("# TYPE transfer_scans_total counter\n")
+                .contains("transfer_scans_total 1\n")
+                .doesNotContain("# EOF");
+
+            String openMetrics = new String(exporter.getContent(MetricsFormat.OPENMETRICS), StandardCharsets.UTF_8);
+            assertThat(openMetrics)
+                .contains("# TYPE transfer_scans counter\n")
+                .contains("transfer_scans_total 1\n")
+                .endsWith("# EOF\n");
+        }
+    }
+
+    @Test
+    void scrape_should_negotiate_format_from_accept_header() throws Exception {
+        var layout = PipelineLayout.of("test \"pipeline\"", config);
+        try (var scanner = new DirectoryScanner(2);
+            var exporter = new MetricsExporter(new StatusCollector(directories, scanner, false), List.of(layout), Duration.ofHours(1), Duration.ofHours(1), () -> {})) {
+            exporter.start(new InetSocketAddress("127.0.0.1", 0));
+            exporter.trigger().join();
+            var url = new URL("http://127.0.0.1:" + exporter.getAddress().getPort() + "/metrics");
+
+            var plain = (HttpURLConnection) url.openConnection();
+            assertThat(plain.getResponseCode()).isEqualTo(200);
+            assertThat(plain.getContentType()).startsWith("text/plain; version=0.0.4");
+            plain.disconnect();
+
+            var openMetrics = (HttpURLConnection) url.openConnection();
+            openMetrics.setRequestProperty("Accept", "application/openmetrics-text; version=1.0.0,text/plain;q=0.5");
+            assertThat(openMetrics.getResponseCode()).isEqualTo(200);
+            assertThat(openMetrics.getContentType()).startsWith("application/openmetrics-text");
+            try (var in = openMetrics.getInputStream()) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).endsWith("# EOF\n");
+            }
+            openMetrics.disconnect();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.report;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NdjsonStatusReportWriterTest {
+
+    @Test
+    void line_should_write_each_record_on_a_line_of_its_own_without_separator() throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (var writer = new NdjsonStatusReportWriter(new ObjectMapper().getFactory().createGenerator(out))) {
+            writer.startPipeline("p", ZonedDateTime.of(2026, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC));
+            writer.startSection("s");
+            writer.line("a", "A", new DirectoryStats(1, 0, 0, 1, 5), false);
+            writer.line("b", "B", DirectoryStats.TIMED_OUT, false);
+            writer.endPipeline();
+        }
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+            "{\"type\":\"line\",\"pipeline\":\"p\",\"timestamp\":\"2026-01-01T12:00:00Z\",\"section\":\"s\",\"line\":\"a\",\"items\":1,\"files\":1,\"bytes\":5}\n"
+                + "{\"type\":\"line\",\"pipeline\":\"p\",\"timestamp\":\"2026-01-01T12:00:00Z\",\"section\":\"s\",\"line\":\"b\",\"status\":\"timedOut\"}\n");
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.report;
+
+import nl.knaw.dans.transfercli.config.DdTransferToVaultCliConfig;
+import nl.knaw.dans.transfercli.config.DirectoriesConfig;
+import nl.knaw.dans.transfercli.config.TransferToVaultConfig;
+import nl.knaw.dans.transfercli.core.PipelineLayout;
+import nl.knaw.dans.transfercli.core.PipelineStatus;
+import nl.knaw.dans.transfercli.scan.DirectoryStats;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static nl.knaw.dans.transfercli.core.PipelineLayout.EXTRACT_METADATA_FAILED;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.SEND_TO_VAULT_FAILED;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.SEND_TO_VAULT_WORK;
+import static nl.knaw.dans.transfercli.core.PipelineLayout.TRANSFER_INBOX;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SummaryRowTest {
+
+    @Test
+    void summary_should_not_render_degraded_columns_as_complete_counts() {
+        var row = SummaryRow.of(new PipelineStatus(layout("pipeline-a"), Map.of(
+            TRANSFER_INBOX, DirectoryStats.TIMED_OUT,
+            SEND_TO_VAULT_WORK, new DirectoryStats(1, 1, 0, 1, 5),
+            EXTRACT_METADATA_FAILED, new DirectoryStats(2, 2, 0, 2, 0),
+            SEND_TO_VAULT_FAILED, DirectoryStats.ERROR), List.of()));
+        var other = SummaryRow.of(new PipelineStatus(layout("pipeline-b"), Map.of(
+            TRANSFER_INBOX, new DirectoryStats(3, 3, 0, 3, 0)), List.of()));
+        var total = SummaryRow.empty("TOTAL").plus(row).plus(other);
+
+        assertThat(row.getDegraded()).containsExactlyInAnyOrder(SummaryRow.Column.TRANSFER_INBOX, SummaryRow.Column.FAILED, SummaryRow.Column.BYTES_IN_PROGRESS);
+        assertThat(other.getDegraded()).isEmpty();
+
+        var out = new ByteArrayOutputStream();
+        new TextStatusReportWriter(new PrintStream(out, true)).summary(List.of(row, other), total);
+        assertThat(out.toString())
+            .contains("pipeline-a                  ?        0        0        1       2+        0  5 bytes+")
+            .contains("pipeline-b                  3        0        0        0        0        0  0 bytes")
+            .contains("TOTAL                      3+        0        0        1       2+        0  5 bytes+");
+    }
+
+    private static PipelineLayout layout(String name) {
+        var config = Mockito.mock(DdTransferToVaultCliConfig.class);
+        var directories = new DirectoriesConfig();
+        directories.setCollectInboxes(Path.of("collect-inboxes"));
+        directories.setWorkingSpaceBaseDir(Path.of("working-space"));
+        directories.setDataVaultBatchRoot(Path.of("data-vault-batches"));
+        directories.setDataVaultRoot(Path.of("data-vault-root"));
+        Mockito.when(config.getDirectories()).thenReturn(directories);
+        Mockito.when(config.getPipelines()).thenReturn(Map.of(name, Mockito.mock(TransferToVaultConfig.class)));
+        return PipelineLayout.of(name, config);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryScannerTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private DirectoryScanner scanner;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+        scanner = new DirectoryScanner(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scanner.close();
+    }
+
+    @Test
+    void scan_should_return_empty_stats_when_directory_does_not_exist() throws Exception {
+        assertThat(scanner.scan(testDir.resolve("non-existent"))).isEqualTo(DirectoryStats.EMPTY);
+    }
+
+    @Test
+    void scan_should_count_direct_entries_and_sum_bytes_of_whole_tree() throws Exception {
+        Files.writeString(testDir.resolve("a.zip"), "12345");
+        Files.writeString(testDir.resolve("b.txt"), "123");
+        Path item = Files.createDirectories(testDir.resolve("item1"));
+        Files.writeString(item.resolve("c.zip"), "1234567890");
+        Path nested = Files.createDirectories(item.resolve("nested/deeper"));
+        Files.writeString(nested.resolve("d.txt"), "12");
+        Files.createDirectories(testDir.resolve("item2"));
+
+        DirectoryStats stats = scanner.scan(testDir);
+
+        assertThat(stats.getEntries()).isEqualTo(4);
+        assertThat(stats.getZips()).isEqualTo(1);
+        assertThat(stats.getDirectories()).isEqualTo(2);
+        assertThat(stats.getFiles()).isEqualTo(4);
+        assertThat(stats.getBytes()).isEqualTo(20);
+    }
+
+    @Test
+    void scan_should_return_stats_for_nested_and_missing_targets_in_one_walk() throws Exception {
+        Path inbox = Files.createDirectories(testDir.resolve("p1/inbox"));
+        Files.createDirectories(inbox.resolve("batch1/item1"));
+        Files.writeString(inbox.resolve("batch1/item1/a.txt"), "1234");
+        Files.createDirectories(inbox.resolve("batch2"));
+        Files.writeString(inbox.resolve("batch2/b.txt"), "12");
+        Path missing = testDir.resolve("p2/inbox");
+
+        var results = scanner.scan(testDir, List.of(inbox, inbox.resolve("batch1"), missing));
+
+        assertThat(results.get(inbox)).isEqualTo(new DirectoryStats(2, 0, 2, 2, 6));
+        assertThat(results.get(inbox.resolve("batch1"))).isEqualTo(new DirectoryStats(1, 0, 1, 1, 4));
+        assertThat(results.get(missing)).isEqualTo(DirectoryStats.EMPTY);
+    }
+
+    @Test
+    void scanAsync_should_be_exact_when_deadline_is_not_reached() throws Exception {
+        Files.writeString(testDir.resolve("a.zip"), "12345");
+        Files.writeString(Files.createDirectories(testDir.resolve("item1")).resolve("b.txt"), "123");
+        Files.writeString(Files.createDirectories(testDir.resolve("item2/nested")).resolve("c.txt"), "12");
+
+        DirectoryStats stats = scanner.scanAsync(testDir, Instant.now().plusSeconds(60)).join();
+
+        assertThat(stats).isEqualTo(new DirectoryStats(3, 1, 2, 3, 10));
+        assertThat(stats.isEstimated()).isFalse();
+    }
+
+    @Test
+    void scanAsync_should_keep_counts_exact_when_deadline_has_passed() throws Exception {
+        Files.writeString(testDir.resolve("a.zip"), "12345");
+        for (int i = 0; i < 50; i++) {
+            Files.writeString(Files.createDirectories(testDir.resolve("item" + i)).resolve("b.txt"), "123");
+        }
+
+        DirectoryStats stats = scanner.scanAsync(testDir, Instant.now().minusSeconds(1)).join();
+
+        assertThat(stats.getEntries()).isEqualTo(51);
+        assertThat(stats.getZips()).isEqualTo(1);
+        assertThat(stats.getDirectories()).isEqualTo(50);
+        assertThat(stats.getBytes()).isGreaterThanOrEqualTo(5);
+    }
+
+    @Test
+    void estimate_should_extrapolate_sample_with_confidence_range() {
+        var top = new DirectoryStats(101, 1, 100, 1, 1000);
+        List<DirectoryStats> samples = List.of(
+            new DirectoryStats(1, 0, 0, 10, 900),
+            new DirectoryStats(1, 0, 0, 10, 1000),
+            new DirectoryStats(1, 0, 0, 10, 1100),
+            new DirectoryStats(1, 0, 0, 10, 1000));
+
+        DirectoryStats stats = DirectoryScanner.estimate(top, samples, 100);
+
+        assertThat(stats.getEntries()).isEqualTo(101);
+        assertThat(stats.getFiles()).isEqualTo(1 + 100 * 10);
+        assertThat(stats.getBytes()).isEqualTo(1000 + 100 * 1000);
+        assertThat(stats.isEstimated()).isTrue();
+        assertThat(stats.getBytesRange().getLow()).isBetween(1000L + 4000, stats.getBytes() - 1);
+        assertThat(stats.getBytesRange().getHigh()).isGreaterThan(stats.getBytes());
+    }
+
+    @Test
+    void estimate_should_report_lower_bound_only_when_nothing_was_sampled() {
+        var top = new DirectoryStats(11, 1, 10, 1, 1000);
+
+        DirectoryStats stats = DirectoryScanner.estimate(top, List.of(), 10);
+
+        assertThat(stats.getBytes()).isEqualTo(1000);
+        assertThat(stats.getBytesRange()).isEqualTo(new DirectoryStats.Range(1000, DirectoryStats.Range.UNBOUNDED));
+    }
+}
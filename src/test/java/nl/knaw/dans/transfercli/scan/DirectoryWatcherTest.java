@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryWatcherTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private DirectoryScanner scanner;
+    private DirectoryWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+        scanner = new DirectoryScanner(2);
+        watcher = new DirectoryWatcher(scanner);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        watcher.close();
+        scanner.close();
+    }
+
+    @Test
+    void refresh_should_scan_directory_initially_and_events_should_update_stats() throws Exception {
+        Path inbox = Files.createDirectories(testDir.resolve("inbox"));
+        Files.writeString(inbox.resolve("a.zip"), "12345");
+        watcher.watch(inbox);
+        watcher.refresh();
+        assertThat(watcher.getStats(inbox)).isEqualTo(new DirectoryStats(1, 1, 0, 1, 5));
+
+        Files.createDirectories(testDir.resolve("staging/item1"));
+        Files.writeString(testDir.resolve("staging/item1/b.txt"), "123");
+        Files.move(testDir.resolve("staging/item1"), inbox.resolve("item1"));
+        Files.delete(inbox.resolve("a.zip"));
+
+        var expected = new DirectoryStats(1, 0, 1, 1, 3);
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!watcher.getStats(inbox).equals(expected) && System.nanoTime() < deadline) {
+            watcher.awaitEvents(Duration.ofMillis(200));
+        }
+        assertThat(watcher.getStats(inbox)).isEqualTo(expected);
+        assertThat(watcher.getRescans()).isEqualTo(1);
+    }
+
+    @Test
+    void refresh_should_rescan_directory_that_changed_without_events() throws Exception {
+        Path inbox = Files.createDirectories(testDir.resolve("inbox"));
+        watcher.watch(inbox);
+        watcher.refresh();
+
+        Files.writeString(inbox.resolve("a.zip"), "12345");
+        // Simulate a file system that does not deliver events: refresh without processing them
+        Files.setLastModifiedTime(inbox, FileTime.from(Instant.now().plusSeconds(60)));
+        watcher.refresh();
+
+        assertThat(watcher.getStats(inbox)).isEqualTo(new DirectoryStats(1, 1, 0, 1, 5));
+        assertThat(watcher.getRescans()).isEqualTo(2);
+    }
+
+    @Test
+    void refresh_should_pick_up_directory_that_appears_later() throws Exception {
+        Path inbox = testDir.resolve("inbox");
+        watcher.watch(inbox);
+        watcher.refresh();
+        assertThat(watcher.getStats(inbox)).isEqualTo(DirectoryStats.EMPTY);
+
+        Files.createDirectories(inbox.resolve("batch1"));
+        watcher.refresh();
+
+        assertThat(watcher.getSubdirectories(inbox)).containsExactly("batch1");
+    }
+
+    @Test
+    void events_should_update_stats_when_item_directory_grows() throws Exception {
+        Path inbox = Files.createDirectories(testDir.resolve("inbox"));
+        Files.createDirectories(inbox.resolve("item1/sub"));
+        Files.writeString(inbox.resolve("item1/sub/a.txt"), "12345");
+        watcher.watch(inbox);
+        watcher.refresh();
+        assertThat(watcher.getStats(inbox)).isEqualTo(new DirectoryStats(1, 0, 1, 1, 5));
+
+        // Growth below the direct entries does not change the modification time of the watched directory
+        Files.writeString(inbox.resolve("item1/sub/a.txt"), "1234567890");
+        awaitStats(inbox, new DirectoryStats(1, 0, 1, 1, 10));
+
+        // Directories created inside an item are watched as well
+        Files.createDirectories(inbox.resolve("item1/sub/new"));
+        watcher.awaitEvents(Duration.ofMillis(500));
+        Files.writeString(inbox.resolve("item1/sub/new/b.txt"), "123");
+        awaitStats(inbox, new DirectoryStats(1, 0, 1, 2, 13));
+
+        assertThat(watcher.getRescans()).isEqualTo(1);
+    }
+
+    @Test
+    void events_should_update_watched_directory_that_lies_in_the_subtree_of_another() throws Exception {
+        Path inbox = Files.createDirectories(testDir.resolve("inbox"));
+        Path batch = Files.createDirectories(inbox.resolve("batch1"));
+        watcher.watch(inbox);
+        watcher.watch(batch);
+        watcher.refresh();
+
+        Files.createDirectories(testDir.resolve("staging/object1"));
+        Files.writeString(testDir.resolve("staging/object1/a.txt"), "123");
+        Files.move(testDir.resolve("staging/object1"), batch.resolve("object1"));
+
+        awaitStats(batch, new DirectoryStats(1, 0, 1, 1, 3));
+        awaitStats(inbox, new DirectoryStats(1, 0, 1, 1, 3));
+
+        // Rescanning the inbox drops and renews the watches on its subtrees; the batch must keep the watch key that it shares with them
+        Files.setLastModifiedTime(inbox, FileTime.from(Instant.now().plusSeconds(60)));
+        watcher.refresh();
+        Files.writeString(batch.resolve("b.zip"), "12345");
+        awaitStats(batch, new DirectoryStats(2, 1, 1, 2, 8));
+        awaitStats(inbox, new DirectoryStats(1, 0, 1, 2, 8));
+    }
+
+    @Test
+    void awaitEvents_should_size_entries_of_directory_watched_without_subtrees_again() throws Exception {
+        Path staging = Files.createDirectories(testDir.resolve("staging"));
+        Files.createDirectories(staging.resolve("layer1/sub"));
+        Files.writeString(staging.resolve("layer1/sub/a.txt"), "12345");
+        watcher.watch(staging, false);
+        watcher.refresh();
+        assertThat(watcher.getStats(staging)).isEqualTo(new DirectoryStats(1, 0, 1, 1, 5));
+
+        Files.writeString(staging.resolve("layer1/sub/a.txt"), "1234567890");
+        watcher.awaitEvents(Duration.ofMillis(10));
+
+        assertThat(watcher.getStats(staging)).isEqualTo(new DirectoryStats(1, 0, 1, 1, 10));
+        assertThat(watcher.getRescans()).isEqualTo(1);
+    }
+
+    @Test
+    void awaitEvents_should_size_a_changed_entry_once_however_many_events_it_causes() throws Exception {
+        var sized = new AtomicInteger();
+        try (var countingWatcher = new DirectoryWatcher(dir -> {
+            sized.incrementAndGet();
+            return scanner.scanAsync(dir);
+        })) {
+            Path inbox = Files.createDirectories(testDir.resolve("inbox"));
+            Files.createDirectories(inbox.resolve("item1"));
+            countingWatcher.watch(inbox);
+            countingWatcher.refresh();
+            assertThat(sized.get()).isEqualTo(1);
+
+            for (int i = 0; i < 10; i++) {
+                Files.writeString(inbox.resolve("item1/file" + i + ".txt"), "12345");
+            }
+            countingWatcher.awaitEvents(Duration.ofMillis(500));
+
+            assertThat(countingWatcher.getStats(inbox)).isEqualTo(new DirectoryStats(1, 0, 1, 10, 50));
+            assertThat(sized.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void refresh_should_report_timed_out_when_an_entry_cannot_be_sized_in_time() throws Exception {
+        try (var stalledWatcher = new DirectoryWatcher(dir -> CompletableFuture.completedFuture(DirectoryStats.TIMED_OUT))) {
+            Path inbox = Files.createDirectories(testDir.resolve("inbox"));
+            Files.createDirectories(inbox.resolve("item1"));
+            Files.writeString(inbox.resolve("a.zip"), "12345");
+            stalledWatcher.watch(inbox);
+            stalledWatcher.refresh();
+
+            assertThat(stalledWatcher.getStats(inbox)).isEqualTo(DirectoryStats.TIMED_OUT);
+        }
+    }
+
+    private void awaitStats(Path dir, DirectoryStats expected) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!watcher.getStats(dir).equals(expected) && System.nanoTime() < deadline) {
+            watcher.awaitEvents(Duration.ofMillis(200));
+        }
+        assertThat(watcher.getStats(dir)).isEqualTo(expected);
+    }
+}
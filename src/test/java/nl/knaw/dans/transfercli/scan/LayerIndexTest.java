@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LayerIndexTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private final Path archive = testDir.resolve("archive");
+    private final Path indexFile = testDir.resolve("cache/archive-layers.idx");
+    private DirectoryScanner scanner;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(archive);
+        scanner = new DirectoryScanner(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scanner.close();
+    }
+
+    @Test
+    void scan_should_only_size_layers_not_yet_in_index() throws Exception {
+        Files.createDirectories(archive.resolve("layer1/sub"));
+        Files.writeString(archive.resolve("layer1/sub/a.txt"), "12345");
+        Files.writeString(archive.resolve("layer2.tar"), "123");
+        settle(archive.resolve("layer1"), archive.resolve("layer2.tar"));
+
+        var index = LayerIndex.load(indexFile);
+        assertThat(index.scan(archive, scanner)).isEqualTo(new DirectoryStats(2, 0, 1, 2, 8));
+        assertThat(index.getNewLayers()).isEqualTo(2);
+
+        // Contents of a known layer are not looked at again
+        Files.writeString(archive.resolve("layer1/sub/ignored.txt"), "1234567890");
+        Files.writeString(archive.resolve("layer3.tar"), "1234");
+        settle(archive.resolve("layer3.tar"));
+
+        index = LayerIndex.load(indexFile);
+        assertThat(index.scan(archive, scanner)).isEqualTo(new DirectoryStats(3, 0, 1, 3, 12));
+        assertThat(index.getNewLayers()).isEqualTo(1);
+        assertThat(index.getKnownLayers()).isEqualTo(3);
+    }
+
+    @Test
+    void load_should_truncate_incomplete_last_record() throws Exception {
+        Files.writeString(archive.resolve("layer1.tar"), "123");
+        settle(archive.resolve("layer1.tar"));
+        LayerIndex.load(indexFile).scan(archive, scanner);
+        long validSize = Files.size(indexFile);
+        Files.write(indexFile, new byte[] { 0, 0, 0, 10, 'l', 'a' }, StandardOpenOption.APPEND);
+
+        var index = LayerIndex.load(indexFile);
+
+        assertThat(index.getKnownLayers()).isEqualTo(1);
+        assertThat(Files.size(indexFile)).isEqualTo(validSize);
+    }
+
+    @Test
+    void load_should_truncate_record_with_invalid_name_length() throws Exception {
+        Files.writeString(archive.resolve("layer1.tar"), "123");
+        settle(archive.resolve("layer1.tar"));
+        LayerIndex.load(indexFile).scan(archive, scanner);
+        long validSize = Files.size(indexFile);
+        Files.write(indexFile, new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xf0, 'l', 'a' }, StandardOpenOption.APPEND);
+
+        var index = LayerIndex.load(indexFile);
+
+        assertThat(index.getKnownLayers()).isEqualTo(1);
+        assertThat(Files.size(indexFile)).isEqualTo(validSize);
+    }
+
+    @Test
+    void load_should_rebuild_index_that_does_not_start_with_the_magic_number() throws Exception {
+        Files.createDirectories(indexFile.getParent());
+        Files.write(indexFile, new byte[] { 'g', 'a', 'r', 'b', 'a', 'g', 'e' });
+        Files.writeString(archive.resolve("layer1.tar"), "123");
+        settle(archive.resolve("layer1.tar"));
+
+        var index = LayerIndex.load(indexFile);
+        assertThat(index.getKnownLayers()).isEqualTo(0);
+        assertThat(index.scan(archive, scanner)).isEqualTo(new DirectoryStats(1, 0, 0, 1, 3));
+
+        assertThat(LayerIndex.load(indexFile).getKnownLayers()).isEqualTo(1);
+    }
+
+    @Test
+    void scan_should_count_but_not_index_layers_modified_within_settle_margin() throws Exception {
+        Files.writeString(archive.resolve("settled.tar"), "123");
+        settle(archive.resolve("settled.tar"));
+        Files.writeString(archive.resolve("growing.tar"), "12");
+
+        var index = LayerIndex.load(indexFile, Duration.ofMinutes(5));
+        assertThat(index.scan(archive, scanner)).isEqualTo(new DirectoryStats(2, 0, 0, 2, 5));
+        assertThat(index.getNewLayers()).isEqualTo(1);
+
+        // Still growing on the next run; its current size is counted
+        Files.writeString(archive.resolve("growing.tar"), "1234");
+        index = LayerIndex.load(indexFile, Duration.ofMinutes(5));
+        assertThat(index.getKnownLayers()).isEqualTo(1);
+        assertThat(index.scan(archive, scanner)).isEqualTo(new DirectoryStats(2, 0, 0, 2, 7));
+    }
+
+    private static void settle(Path... layers) throws Exception {
+        var longAgo = FileTime.from(Instant.now().minus(Duration.ofHours(1)));
+        for (Path layer : layers) {
+            Files.setLastModifiedTime(layer, longAgo);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MountLimiterTest {
+
+    @Test
+    void submit_should_not_let_a_stalled_mount_hold_up_other_mounts() {
+        var limiter = new MountLimiter(List.of(Path.of("/mnt/a"), Path.of("/mnt/b")), 1);
+        var stalled = new CompletableFuture<String>();
+        var started = new AtomicInteger();
+
+        var first = limiter.submit(Path.of("/mnt/a/x"), () -> stalled);
+        var second = limiter.submit(Path.of("/mnt/a/y"), () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("a/y");
+        });
+        var other = limiter.submit(Path.of("/mnt/b/z"), () -> CompletableFuture.completedFuture("b/z"));
+
+        assertThat(other).isCompletedWithValue("b/z");
+        assertThat(second).isNotDone();
+        assertThat(started).hasValue(0);
+
+        stalled.complete("a/x");
+        assertThat(first).isCompletedWithValue("a/x");
+        assertThat(second).isCompletedWithValue("a/y");
+    }
+
+    @Test
+    void submit_should_not_start_scans_that_were_abandoned_while_waiting() {
+        var limiter = new MountLimiter(List.of(Path.of("/mnt/a")), 1);
+        var stalled = new CompletableFuture<String>();
+        limiter.submit(Path.of("/mnt/a/x"), () -> stalled);
+        List<CompletableFuture<String>> waiting = new ArrayList<>();
+        var started = new AtomicInteger();
+        for (int i = 0; i < 10_000; i++) {
+            waiting.add(limiter.submit(Path.of("/mnt/a/y" + i), () -> {
+                started.incrementAndGet();
+                return CompletableFuture.completedFuture("y");
+            }));
+        }
+        var last = limiter.submit(Path.of("/mnt/a/z"), () -> CompletableFuture.completedFuture("z"));
+        waiting.forEach(future -> future.cancel(false));
+
+        stalled.complete("x");
+
+        assertThat(started).hasValue(0);
+        assertThat(last).isCompletedWithValue("z");
+    }
+
+    @Test
+    void submit_should_start_the_timeout_when_the_scan_gets_its_permit() throws Exception {
+        var limiter = new MountLimiter(List.of(Path.of("/mnt/a")), 2);
+        var timeout = Duration.ofMillis(300);
+        List<CompletableFuture<String>> scans = new ArrayList<>();
+        // Each scan takes half the timeout, but together they take several times as long
+        for (int i = 0; i < 10; i++) {
+            String name = "scan" + i;
+            scans.add(limiter.submit(Path.of("/mnt/a/" + name), timeout, () ->
+                CompletableFuture.supplyAsync(() -> name, CompletableFuture.delayedExecutor(150, TimeUnit.MILLISECONDS))));
+        }
+
+        for (int i = 0; i < scans.size(); i++) {
+            assertThat(scans.get(i).get(10, TimeUnit.SECONDS)).isEqualTo("scan" + i);
+        }
+    }
+
+    @Test
+    void submit_should_fail_waiting_scans_when_a_running_scan_of_their_mount_times_out() throws Exception {
+        var limiter = new MountLimiter(List.of(Path.of("/mnt/a")), 1);
+        var stalled = new CompletableFuture<String>();
+        var timeout = Duration.ofMillis(100);
+
+        var first = limiter.submit(Path.of("/mnt/a/x"), timeout, () -> stalled);
+        var waiting = limiter.submit(Path.of("/mnt/a/y"), timeout, () -> CompletableFuture.completedFuture("y"));
+
+        assertThatThrownBy(() -> first.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+        assertThatThrownBy(() -> waiting.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(limiter.submit(Path.of("/mnt/a/z"), timeout, () -> CompletableFuture.completedFuture("z"))).isCompletedExceptionally();
+
+        // Once the stalled scan completes, the mount is used again
+        stalled.complete("x");
+        assertThat(limiter.submit(Path.of("/mnt/a/z"), timeout, () -> CompletableFuture.completedFuture("z"))).isCompletedWithValue("z");
+    }
+
+    @Test
+    void mountOf_should_pick_the_innermost_mount() {
+        var limiter = new MountLimiter(List.of(Path.of("/data"), Path.of("/data/vault")), 1);
+
+        assertThat(limiter.mountOf(Path.of("/data/vault/inbox"))).isEqualTo(Path.of("/data/vault"));
+        assertThat(limiter.mountOf(Path.of("/data/work"))).isEqualTo(Path.of("/data"));
+        assertThat(limiter.mountOf(Path.of("/elsewhere"))).isEqualTo(Path.of("/"));
+    }
+}
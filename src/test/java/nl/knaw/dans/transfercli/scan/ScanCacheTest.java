@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanCacheTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private final Path tree = testDir.resolve("tree");
+    private final Path cacheFile = testDir.resolve("cache/scan-cache.bin");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Path nested = Files.createDirectories(tree.resolve("item1/nested"));
+        Files.writeString(tree.resolve("a.zip"), "12345");
+        Files.writeString(nested.resolve("b.txt"), "123");
+        setOldModificationTime(tree.resolve("a.zip"), 3);
+        setOldModificationTime(nested.resolve("b.txt"), 3);
+        setOldModificationTime(tree.resolve("item1/nested"), 3);
+        setOldModificationTime(tree.resolve("item1"), 3);
+        setOldModificationTime(tree, 3);
+    }
+
+    @Test
+    void scan_should_not_list_unchanged_directories_again() throws Exception {
+        var cache = ScanCache.empty(cacheFile);
+        try (var scanner = new DirectoryScanner(2, cache)) {
+            scanner.scan(tree);
+        }
+        cache.save();
+
+        cache = ScanCache.load(cacheFile);
+        try (var scanner = new DirectoryScanner(2, cache)) {
+            DirectoryStats stats = scanner.scan(tree);
+            assertThat(stats).isEqualTo(new DirectoryStats(2, 1, 1, 2, 8));
+            assertThat(cache.getMisses()).isEqualTo(0);
+            assertThat(cache.getHits()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void scan_should_rescan_directories_whose_modification_time_changed() throws Exception {
+        var cache = ScanCache.empty(cacheFile);
+        try (var scanner = new DirectoryScanner(2, cache)) {
+            scanner.scan(tree);
+        }
+        cache.save();
+
+        Files.writeString(tree.resolve("item1/nested/c.txt"), "1234567");
+        setOldModificationTime(tree.resolve("item1/nested/c.txt"), 2);
+        setOldModificationTime(tree.resolve("item1/nested"), 2);
+
+        cache = ScanCache.load(cacheFile);
+        try (var scanner = new DirectoryScanner(2, cache)) {
+            DirectoryStats stats = scanner.scan(tree);
+            assertThat(stats).isEqualTo(new DirectoryStats(2, 1, 1, 3, 15));
+            assertThat(cache.getHits()).isEqualTo(2);
+            assertThat(cache.getMisses()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void scan_should_not_cache_directories_with_files_that_may_still_grow() throws Exception {
+        Files.writeString(tree.resolve("item1/growing.zip"), "12");
+        setOldModificationTime(tree.resolve("item1"), 3);
+        var cache = ScanCache.empty(cacheFile);
+        try (var scanner = new DirectoryScanner(2, cache)) {
+            scanner.scan(tree);
+        }
+        cache.save();
+
+        // Growing in place does not change the modification time of the directory
+        Files.writeString(tree.resolve("item1/growing.zip"), "1234");
+        setOldModificationTime(tree.resolve("item1"), 3);
+
+        cache = ScanCache.load(cacheFile);
+        try (var scanner = new DirectoryScanner(2, cache)) {
+            DirectoryStats stats = scanner.scan(tree);
+            assertThat(stats).isEqualTo(new DirectoryStats(2, 1, 1, 3, 12));
+            assertThat(cache.getHits()).isEqualTo(2);
+            assertThat(cache.getMisses()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void save_should_keep_entries_saved_by_a_concurrent_run_for_other_directories() throws Exception {
+        Path other = Files.createDirectories(testDir.resolve("other/item2"));
+        setOldModificationTime(other, 3);
+        setOldModificationTime(other.getParent(), 3);
+
+        // Both runs start from the same, empty cache file
+        var first = ScanCache.load(cacheFile);
+        var second = ScanCache.load(cacheFile);
+        try (var scanner = new DirectoryScanner(2, first)) {
+            scanner.scan(tree);
+        }
+        try (var scanner = new DirectoryScanner(2, second)) {
+            scanner.scan(other.getParent());
+        }
+        first.save();
+        second.save();
+
+        var cache = ScanCache.load(cacheFile);
+        try (var scanner = new DirectoryScanner(2, cache)) {
+            scanner.scan(tree);
+            scanner.scan(other.getParent());
+        }
+        assertThat(cache.getMisses()).isEqualTo(0);
+        assertThat(cache.getHits()).isEqualTo(5);
+    }
+
+    private void setOldModificationTime(Path dir, int hoursAgo) throws Exception {
+        Files.setLastModifiedTime(dir, FileTime.from(Instant.now().minus(hoursAgo, ChronoUnit.HOURS)));
+    }
+}
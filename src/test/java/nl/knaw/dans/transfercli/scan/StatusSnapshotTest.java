@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.scan;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatusSnapshotTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+        file = StatusSnapshot.file(testDir, "p");
+    }
+
+    @Test
+    void read_should_return_what_was_published_last() throws Exception {
+        assertThat(StatusSnapshot.read(file)).isEmpty();
+
+        Map<String, DirectoryStats> stages = new LinkedHashMap<>();
+        stages.put("transfer-inbox", new DirectoryStats(3, 2, 1, 10, 1000));
+        stages.put("archived-layers", DirectoryStats.TIMED_OUT);
+        var batch = new BatchStats("batch1", new DirectoryStats(1, 0, 1, 2, 20), DirectoryStats.EMPTY, DirectoryStats.ERROR);
+        var timestamp = Instant.ofEpochMilli(1_700_000_000_000L);
+        long first = StatusSnapshot.publish(file, timestamp, stages, List.of(batch));
+        long second = StatusSnapshot.publish(file, timestamp.plusSeconds(1), stages, List.of(batch));
+
+        var content = StatusSnapshot.read(file).orElseThrow();
+        assertThat(second).isGreaterThan(first);
+        assertThat(second % 2).isEqualTo(0);
+        assertThat(content.getSequence()).isEqualTo(second);
+        assertThat(content.getTimestamp()).isEqualTo(timestamp.plusSeconds(1));
+        assertThat(content.getStages()).isEqualTo(stages);
+        assertThat(content.getBatches()).containsExactly(batch);
+    }
+
+    @Test
+    void read_should_never_see_a_partially_written_snapshot_while_the_file_grows() throws Exception {
+        var stop = new AtomicBoolean();
+        var started = new CountDownLatch(1);
+        var executor = Executors.newSingleThreadExecutor();
+        var writer = executor.submit(() -> {
+            List<BatchStats> batches = new ArrayList<>();
+            for (int i = 0; !stop.get() && i < 5000; i++) {
+                // Every batch carries the number of batches, so that a torn read shows
+                batches.add(new BatchStats("batch" + i, DirectoryStats.EMPTY, DirectoryStats.EMPTY, DirectoryStats.EMPTY));
+                var stats = new DirectoryStats(batches.size(), 0, 0, 0, 0);
+                batches.replaceAll(b -> new BatchStats(b.getName(), stats, stats, stats));
+                StatusSnapshot.publish(file, Instant.now(), Map.of("n", stats), batches);
+                started.countDown();
+            }
+            return null;
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        try {
+            for (int i = 0; i < 500; i++) {
+                var content = StatusSnapshot.read(file);
+                if (content.isEmpty()) {
+                    continue;
+                }
+                long n = content.get().getStages().get("n").getEntries();
+                assertThat(content.get().getBatches()).hasSize((int) n);
+                assertThat(content.get().getBatches()).allMatch(b -> b.getInbox().getEntries() == n);
+            }
+        } finally {
+            stop.set(true);
+            writer.get();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2026 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.transfercli.verify;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChecksumVerifierTest {
+    private final Path testDir = Path.of("target/test/" + getClass().getSimpleName());
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir.toFile());
+        Files.createDirectories(testDir);
+    }
+
+    @Test
+    void verify_should_throw_when_a_worker_fails() throws Exception {
+        var bag = testDir.resolve("object1/v1");
+        Files.createDirectories(bag.resolve("data"));
+        Files.writeString(bag.resolve("data/a.txt"), "a");
+        Files.writeString(bag.resolve("data/b.txt"), "b");
+        Files.writeString(bag.resolve("manifest-md5.txt"), "0cc175b9c0f1b6a831c399e269772661  data/a.txt\n92eb5ffee6ae2fec3ad71c777531578f  data/b.txt\n");
+        var failingLimiter = new RateLimiter(0) {
+
+            @Override
+            public void acquire(long bytes) {
+                throw new IllegalStateException("rate limiter broken");
+            }
+        };
+
+        try (var verifier = new ChecksumVerifier(2, failingLimiter)) {
+            assertThatThrownBy(() -> verifier.verify(testDir))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Could not verify")
+                .hasMessageContaining("rate limiter broken");
+        }
+    }
+}